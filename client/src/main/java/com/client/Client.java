@@ -1,35 +1,106 @@
 package com.client;
 
+import com.common.network.Codecs;
+import com.common.network.Frames;
+import com.common.network.Handshake;
+import com.common.network.MessageCodec;
+import com.common.network.OperationType;
 import com.common.network.Request;
 import com.common.network.Response;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Класс, отвечающий за сетевое взаимодействие клиента с сервером.
- * Отправляет запросы и получает ответы.
+ * Отправляет запросы и получает ответы. На одном соединении может быть много запросов в полете:
+ * каждому запросу назначается идентификатор, а отдельный поток чтения сопоставляет
+ * с ним ответ сервера, даже если ответы приходят не по порядку.
+ * На потоковый запрос сервер присылает частичные ответы, которые передаются слушателю запроса,
+ * а итоговый ответ завершает Future.
+ * Запросы отправляются в фоновом потоке записи, поэтому асинхронные методы не блокируют
+ * вызывающий поток (поток JavaFX) даже при переподключении; ненужный больше запрос можно отменить.
+ * Списки с версией (врачи, расписание на день, расписание врача на день) сохраняются вместе
+ * с версией; повторный запрос отправляется с ней, и на ответ NOT_MODIFIED возвращается сохраненный список.
  */
 public class Client {
     private static final String SERVER_ADDRESS = "localhost"; // Адрес сервера
     private static final int SERVER_PORT = 12345; // Порт сервера
+    private static final long REQUEST_TIMEOUT_SECONDS = 30; // Ожидание ответа в синхронном режиме
+    // Желаемый кодек: бинарный по умолчанию, "java" — сериализация Java
+    private static final byte PREFERRED_CODEC = Codecs.fromName(System.getProperty("polyclinic.client.codec"));
+    private static final Set<OperationType> CONDITIONAL_OPERATIONS = EnumSet.of(
+            OperationType.GET_ALL_DOCTORS, OperationType.GET_SCHEDULE, OperationType.GET_APPOINTMENTS_BY_DOCTOR_DATE);
+    private static final int MAX_CACHED_LISTS = 64;
+
+    /**
+     * Список, полученный с версией.
+     */
+    private static class CachedList {
+        final long version;
+        final List<?> items;
+
+        CachedList(long version, List<?> items) {
+            this.version = version;
+            this.items = items;
+        }
+    }
 
     private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private MessageCodec codec; // Выбирается сервером при подключении
+    private DataOutputStream out;
+    private DataInputStream in;
+
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, CompletableFuture<Response>> pendingRequests = new ConcurrentHashMap<>();
+    private final Map<Long, Consumer<Response>> streamListeners = new ConcurrentHashMap<>();
+    // Отправляет запросы по порядку, не задерживая вызывающий поток подключением и записью в сокет
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "client-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Сохраненные списки по операции и данным запроса; давно не запрашивавшиеся вытесняются
+    private final Map<String, CachedList> listCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedList> eldest) {
+            return size() > MAX_CACHED_LISTS;
+        }
+    };
 
     /**
-     * Устанавливает соединение с сервером.
+     * Устанавливает соединение с сервером и запускает поток чтения ответов.
      * @return true, если соединение установлено успешно, иначе false.
      */
-    public boolean connect() {
+    public synchronized boolean connect() {
         try {
             socket = new Socket(SERVER_ADDRESS, SERVER_PORT);
-            // Порядок инициализации потоков важен: сначала OutputStream, потом InputStream
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Handshake.writeHello(out, PREFERRED_CODEC);
+            codec = Codecs.create(Handshake.readReply(in));
+            startReader(socket, in, codec);
             System.out.println("Клиент подключен к серверу.");
             return true;
         } catch (IOException e) {
@@ -40,36 +111,199 @@ public class Client {
     }
 
     /**
-     * Отправляет запрос на сервер и получает ответ.
+     * Запускает фоновый поток, который читает ответы сервера и завершает ожидающие их запросы.
+     */
+    private void startReader(Socket readerSocket, DataInputStream readerIn, MessageCodec readerCodec) {
+        Thread reader = new Thread(() -> {
+            try {
+                while (!readerSocket.isClosed()) {
+                    Response response = readerCodec.decodeResponse(Frames.read(readerIn));
+                    if (response.isPartial()) {
+                        Consumer<Response> listener = streamListeners.get(response.getRequestId());
+                        if (listener != null) {
+                            listener.accept(response); // В потоке чтения: слушатель не должен блокироваться
+                        }
+                        continue;
+                    }
+                    streamListeners.remove(response.getRequestId());
+                    CompletableFuture<Response> pending = pendingRequests.remove(response.getRequestId());
+                    if (pending != null) {
+                        pending.complete(response);
+                    } else {
+                        System.err.println("Получен ответ на неизвестный запрос: " + response.getRequestId());
+                    }
+                }
+            } catch (IOException e) {
+                if (!readerSocket.isClosed()) {
+                    System.err.println("Ошибка при получении ответа: " + e.getMessage());
+                }
+            } finally {
+                connectionLost(readerSocket);
+            }
+        }, "client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Закрывает соединение, если оно все еще текущее, и завершает ожидающие запросы ошибкой.
+     */
+    private synchronized void connectionLost(Socket lostSocket) {
+        if (lostSocket == socket) {
+            close();
+        }
+    }
+
+    /**
+     * Отправляет запрос на сервер и ждет ответа.
      * @param request Объект запроса.
      * @return Объект ответа от сервера.
      */
     public Response sendRequest(Request request) {
-        if (socket == null || socket.isClosed() || out == null || in == null) {
-            System.err.println("Соединение с сервером не установлено или закрыто. Попытка переподключения...");
-            if (!connect()) {
-                return new Response(false, "Не удалось подключиться к серверу.");
+        CompletableFuture<Response> future = sendRequestAsync(request);
+        try {
+            return future.get(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            pendingRequests.remove(request.getRequestId());
+            return new Response(false, "Сервер не ответил вовремя.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pendingRequests.remove(request.getRequestId());
+            return new Response(false, "Ожидание ответа прервано.");
+        } catch (ExecutionException e) {
+            return new Response(false, "Ошибка связи с сервером: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Отправляет запрос на сервер, не дожидаясь ответа.
+     * Несколько запросов могут выполняться параллельно на одном соединении.
+     * @param request Объект запроса (ему будет назначен идентификатор).
+     * @return Future, который завершится ответом сервера. Ошибки связи также возвращаются как неуспешный ответ.
+     */
+    public CompletableFuture<Response> sendRequestAsync(Request request) {
+        if (!CONDITIONAL_OPERATIONS.contains(request.getType())) {
+            return send(request, null);
+        }
+        String key = request.getType() + ":" + (request.getData() instanceof Object[]
+                ? Arrays.toString((Object[]) request.getData()) : String.valueOf(request.getData()));
+        synchronized (listCache) {
+            CachedList cached = listCache.get(key);
+            request.setKnownVersion(cached != null ? cached.version : 0);
+        }
+        return send(request, null).thenCompose(response -> {
+            if (response.isNotModified()) {
+                CachedList cached;
+                synchronized (listCache) {
+                    cached = listCache.get(key);
+                }
+                if (cached == null || cached.version != response.getVersion()) {
+                    // Список вытеснен, пока шел запрос: запрашиваем его полностью
+                    return sendRequestAsync(new Request(request.getType(), request.getData()));
+                }
+                Response restored = new Response(true, response.getMessage(), new ArrayList<>(cached.items));
+                restored.setRequestId(response.getRequestId());
+                restored.setVersion(response.getVersion());
+                return CompletableFuture.completedFuture(restored);
+            }
+            if (response.isSuccess() && response.getVersion() != 0 && response.getData() instanceof List) {
+                synchronized (listCache) {
+                    listCache.put(key, new CachedList(response.getVersion(), new ArrayList<>((List<?>) response.getData())));
+                }
             }
+            return CompletableFuture.completedFuture(response);
+        });
+    }
+
+    /**
+     * Отправляет потоковый запрос (например, GET_ALL_PATIENTS с PatientPageRequest в потоковом режиме).
+     * Части результата передаются слушателю по мере получения, поэтому клиенту не нужно держать
+     * весь результат в памяти.
+     * @param request Объект запроса (ему будет назначен идентификатор).
+     * @param chunkListener Получает частичные ответы в потоке чтения ответов, по порядку.
+     * @return Future, который завершится итоговым ответом сервера.
+     */
+    public CompletableFuture<Response> sendStreamRequest(Request request, Consumer<Response> chunkListener) {
+        return send(request, chunkListener);
+    }
+
+    private CompletableFuture<Response> send(Request request, Consumer<Response> chunkListener) {
+        long requestId = nextRequestId.incrementAndGet();
+        request.setRequestId(requestId); // Назначается сразу: запрос можно отменить, пока он ждет отправки
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        if (chunkListener != null) {
+            streamListeners.put(requestId, chunkListener);
         }
+        pendingRequests.put(requestId, future);
+        writer.execute(() -> write(request, future));
+        return future;
+    }
 
+    /**
+     * Выполняется в потоке записи: при необходимости переподключается и отправляет запрос.
+     */
+    private void write(Request request, CompletableFuture<Response> future) {
+        long requestId = request.getRequestId();
+        if (future.isDone()) {
+            pendingRequests.remove(requestId); // Отменен до отправки: сервер о нем не узнает
+            streamListeners.remove(requestId);
+            return;
+        }
+        DataOutputStream currentOut;
+        MessageCodec currentCodec;
+        synchronized (this) {
+            if (socket == null || socket.isClosed() || out == null || in == null) {
+                System.err.println("Соединение с сервером не установлено или закрыто. Попытка переподключения...");
+                if (!connect()) {
+                    pendingRequests.remove(requestId);
+                    streamListeners.remove(requestId);
+                    future.complete(new Response(false, "Не удалось подключиться к серверу."));
+                    return;
+                }
+            }
+            currentOut = out;
+            currentCodec = codec;
+        }
         try {
-            out.writeObject(request);
-            out.flush(); // Убедиться, что данные отправлены
-            return (Response) in.readObject();
+            byte[] payload = currentCodec.encodeRequest(request);
+            synchronized (currentOut) {
+                Frames.write(currentOut, payload);
+                currentOut.flush(); // Убедиться, что данные отправлены
+            }
         } catch (IOException e) {
-            System.err.println("Ошибка при отправке запроса или получении ответа: " + e.getMessage());
+            System.err.println("Ошибка при отправке запроса: " + e.getMessage());
+            pendingRequests.remove(requestId);
+            streamListeners.remove(requestId);
             close(); // Закрыть соединение при ошибке
-            return new Response(false, "Ошибка связи с сервером: " + e.getMessage());
-        } catch (ClassNotFoundException e) {
-            System.err.println("Ошибка десериализации ответа от сервера: " + e.getMessage());
-            return new Response(false, "Ошибка данных от сервера.");
+            future.complete(new Response(false, "Ошибка связи с сервером: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Отменяет запрос, ответ на который больше не нужен (например, пользователь уже выбрал другую дату).
+     * Future запроса сразу завершается неуспешным ответом, а сервер пропускает запрос,
+     * если еще не начал его выполнять, и прерывает потоковую передачу между частями.
+     * @param request Отправленный запрос.
+     * @return false, если ответ на запрос уже получен.
+     */
+    public boolean cancel(Request request) {
+        long requestId = request.getRequestId();
+        CompletableFuture<Response> pending = pendingRequests.get(requestId);
+        Response cancelled = new Response(false, "Запрос отменен.");
+        cancelled.setRequestId(requestId);
+        if (pending == null || !pending.complete(cancelled)) {
+            return false;
         }
+        streamListeners.remove(requestId);
+        // Запись в pendingRequests остается до ответа сервера (он придет и для отмененного запроса)
+        send(new Request(OperationType.CANCEL_REQUEST, requestId), null);
+        return true;
     }
 
     /**
-     * Закрывает соединение с сервером.
+     * Закрывает соединение с сервером. Запросы, ожидающие ответа, завершаются неуспешным ответом.
      */
-    public void close() {
+    public synchronized void close() {
         try {
             if (in != null) in.close();
             if (out != null) out.close();
@@ -78,5 +312,17 @@ public class Client {
         } catch (IOException e) {
             System.err.println("Ошибка при закрытии соединения: " + e.getMessage());
         }
+        failPendingRequests();
+    }
+
+    private void failPendingRequests() {
+        streamListeners.clear();
+        List<Long> requestIds = new ArrayList<>(pendingRequests.keySet());
+        for (Long requestId : requestIds) {
+            CompletableFuture<Response> pending = pendingRequests.remove(requestId);
+            if (pending != null) {
+                pending.complete(new Response(false, "Соединение с сервером потеряно."));
+            }
+        }
     }
 }
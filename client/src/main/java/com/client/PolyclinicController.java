@@ -2,12 +2,22 @@ package com.client;
 
 import com.common.model.Appointment;
 import com.common.model.Doctor;
+import com.common.model.EarliestSlotsQuery;
+import com.common.model.FreeSlots;
+import com.common.model.FreeSlotsQuery;
 import com.common.model.Patient;
+import com.common.model.ScheduleRange;
+import com.common.model.ScheduleView;
+import com.common.model.ScheduleViewQuery;
+import com.common.model.SlotChange;
+import com.common.model.SlotGrid;
 import com.common.network.OperationType;
 import com.common.network.Request;
 import com.common.network.Response;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.geometry.Bounds;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
@@ -16,14 +26,19 @@ import javafx.scene.layout.VBox;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 /**
  * Контроллер для пользовательского интерфейса JavaFX.
  * Обрабатывает события UI и взаимодействует с сетевым клиентом.
+ * Запросы к серверу выполняются в фоне, а ответы обрабатываются в потоке JavaFX,
+ * поэтому интерфейс не замирает на время запроса. Загрузка расписания, которую
+ * пользователь сменил другой датой или видом, отменяется.
  */
 public class PolyclinicController {
     // UI элементы для логина
@@ -38,17 +53,39 @@ public class PolyclinicController {
     // UI элементы для расписания
     @FXML private VBox schedulePanel;
     @FXML private DatePicker scheduleDatePicker;
+    @FXML private Button weekViewButton;
+    @FXML private Button earliestSlotsButton;
+    @FXML private ScrollPane scheduleScroll;
     @FXML private GridPane scheduleGrid;
     @FXML private Label loggedInUserLabel;
     @FXML private Button logoutButton;
 
     private Client client;
     private UserSession userSession; // Сессия текущего пользователя
+    // Данные пациентов, записанных к врачу на выбранную дату (приходят вместе с расписанием)
+    private final Map<Integer, Patient> patientDetailsById = new HashMap<>();
 
-    // Рабочие часы по умолчанию для врачей (для отображения белых ячеек)
-    private final LocalTime WORK_START_TIME = LocalTime.of(8, 0);
-    private final LocalTime WORK_END_TIME = LocalTime.of(18, 0);
-    private final int SLOT_DURATION_MINUTES = 30;
+    // Показанное расписание на день: ячейки обновляются по событиям сервера без перезагрузки
+    private ScheduleView currentView;
+    private ScheduleGrid dayGrid; // Занимает scheduleGrid, пока не показан недельный обзор
+    private final Map<Integer, Integer> doctorIndexById = new HashMap<>();
+    // Собственные записи смотрящего по врачу и номеру слота
+    private final Map<Integer, Appointment[]> ownAppointmentsByDoctor = new HashMap<>();
+
+    // Загружаемое расписание (день или неделя); ответ на замененный запрос не показывается
+    private Request scheduleLoad;
+
+    // Подписка на изменения занятости слотов показанного дня
+    private Request scheduleSubscription;
+    private Long subscriptionId; // Приходит первым событием подписки
+    private LocalDate subscribedDate;
+    private Runnable pendingDayLoad; // Загрузка дня, ожидающая подтверждения подписки
+    // События, пришедшие во время загрузки: применяются к загруженному расписанию повторно
+    private final List<SlotChange> slotChangesDuringLoad = new ArrayList<>();
+
+    private static final int WEEK_VIEW_DAYS = 7;
+    private static final int EARLIEST_SLOTS_HORIZON_DAYS = 30; // Насколько далеко искать ближайшие слоты
+    private static final int EARLIEST_SLOTS_LIMIT = 10;
 
     /**
      * Устанавливает экземпляр сетевого клиента.
@@ -81,6 +118,12 @@ public class PolyclinicController {
                 displaySchedule();
             }
         });
+
+        // Сетка дня создает узлы только для колонок врачей, видимых в ScrollPane
+        dayGrid = new ScheduleGrid(scheduleGrid, this::cellState, this::handleCellClick);
+        scheduleScroll.hvalueProperty().addListener(obs -> updateScheduleViewport());
+        scheduleScroll.viewportBoundsProperty().addListener(obs -> updateScheduleViewport());
+        scheduleGrid.widthProperty().addListener(obs -> updateScheduleViewport());
     }
 
     /**
@@ -110,7 +153,14 @@ public class PolyclinicController {
             loginType = OperationType.LOGIN_DOCTOR;
             request = new Request(loginType, new Doctor(lastName, firstName, middleName, null, null));
         }
-        Response response = client.sendRequest(request);
+        loginButton.setDisable(true); // До ответа сервера
+        sendInBackground(request, response -> {
+            loginButton.setDisable(false);
+            handleLoginResponse(loginType, response);
+        });
+    }
+
+    private void handleLoginResponse(OperationType loginType, Response response) {
         if (response.isSuccess()) {
             userSession = new UserSession();
             if (loginType == OperationType.LOGIN_PATIENT) {
@@ -143,6 +193,9 @@ public class PolyclinicController {
         loginPanel.setManaged(false);
         schedulePanel.setVisible(true);
         schedulePanel.setManaged(true);
+        // Поиск ближайших слотов нужен только пациенту для записи
+        earliestSlotsButton.setVisible(userSession.isPatient());
+        earliestSlotsButton.setManaged(userSession.isPatient());
     }
 
     /**
@@ -173,6 +226,8 @@ public class PolyclinicController {
      */
     @FXML
     private void handleLogout() {
+        cancelScheduleLoad();
+        unsubscribeFromScheduleChanges();
         showAlert(Alert.AlertType.INFORMATION, "Выход", "Вы успешно вышли из системы.");
         showLoginPanel();
     }
@@ -181,80 +236,343 @@ public class PolyclinicController {
      * Отображает расписание приемов.
      */
     private void displaySchedule() {
-        scheduleGrid.getChildren().clear();
-        scheduleGrid.getRowConstraints().clear();
-        scheduleGrid.getColumnConstraints().clear();
+        cancelScheduleLoad();
         LocalDate selectedDate = scheduleDatePicker.getValue();
         if (selectedDate == null) {
             showAlert(Alert.AlertType.ERROR, "Ошибка", "Пожалуйста, выберите дату.");
             return;
         }
-        List<Doctor> doctorsToDisplay = new ArrayList<>();
-        List<Appointment> appointmentsToDisplay = new ArrayList<>();
+        // Врачи, занятость слотов и собственные записи приходят одним ответом сервера
+        ScheduleViewQuery query;
         if (userSession.isPatient()) {
             // Если вошел пациент, показываем расписание всех врачей
-            Response doctorsResponse = client.sendRequest(new Request(OperationType.GET_ALL_DOCTORS, null));
-            if (doctorsResponse.isSuccess() && doctorsResponse.getData() instanceof List) {
-                doctorsToDisplay.addAll((List<Doctor>) doctorsResponse.getData());
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка загрузки врачей", doctorsResponse.getMessage());
-                return;
-            }
-            Response appointmentsResponse = client.sendRequest(new Request(OperationType.GET_SCHEDULE, selectedDate));
-            if (appointmentsResponse.isSuccess() && appointmentsResponse.getData() instanceof List) {
-                appointmentsToDisplay.addAll((List<Appointment>) appointmentsResponse.getData());
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка загрузки расписания", appointmentsResponse.getMessage());
-                return;
-            }
-        } else if (userSession.isDoctor()) {
+            query = ScheduleViewQuery.forPatient(selectedDate, userSession.getPatient().getId());
+        } else {
             // Если вошел врач, показываем расписание только для этого врача
             Doctor loggedInDoctor = userSession.getDoctor();
             if (loggedInDoctor == null) {
                 showAlert(Alert.AlertType.ERROR, "Ошибка", "Данные врача не найдены.");
                 return;
             }
-            doctorsToDisplay.add(loggedInDoctor);
-            // Запрашиваем записи только для этого врача на выбранную дату
-            Request doctorAppointmentsRequest = new Request(OperationType.GET_APPOINTMENTS_BY_DOCTOR_DATE,
-                    new Object[]{loggedInDoctor.getId(), selectedDate});
-            Response doctorAppointmentsResponse = client.sendRequest(doctorAppointmentsRequest);
-            if (doctorAppointmentsResponse.isSuccess() && doctorAppointmentsResponse.getData() instanceof List) {
-                appointmentsToDisplay.addAll((List<Appointment>) doctorAppointmentsResponse.getData());
+            query = ScheduleViewQuery.forDoctor(selectedDate, loggedInDoctor.getId());
+        }
+        loadScheduleDay(query);
+    }
+
+    /**
+     * Подписывается на изменения дня и только после подтверждения подписки загружает расписание.
+     * Изменение, зафиксированное после того, как сервер прочитал расписание, придет событием;
+     * события, полученные до ответа, применяются к загруженному расписанию повторно.
+     */
+    private void loadScheduleDay(ScheduleViewQuery query) {
+        Request request = new Request(OperationType.GET_SCHEDULE_VIEW, query);
+        subscribeToScheduleChanges(query);
+        slotChangesDuringLoad.clear();
+        if (subscriptionId != null) {
+            loadSchedule(request, this::showScheduleView);
+        } else {
+            scheduleLoad = request;
+            scheduleGrid.setDisable(true);
+            pendingDayLoad = () -> loadSchedule(request, this::showScheduleView);
+        }
+    }
+
+    /**
+     * Показывает загруженное расписание на день.
+     */
+    private void showScheduleView(Response response) {
+        if (!response.isSuccess() || !(response.getData() instanceof ScheduleView)) {
+            dayGrid.detach();
+            showAlert(Alert.AlertType.ERROR, "Ошибка загрузки расписания", response.getMessage());
+            return;
+        }
+        ScheduleView view = (ScheduleView) response.getData();
+        List<Doctor> doctorsToDisplay = view.getDoctors();
+        patientDetailsById.clear();
+        for (Patient patient : view.getPatients()) {
+            patientDetailsById.put(patient.getId(), patient);
+        }
+        ownAppointmentsByDoctor.clear();
+        for (Appointment appointment : view.getAppointments()) {
+            putOwnAppointment(appointment);
+        }
+        currentView = view;
+        doctorIndexById.clear();
+        for (int i = 0; i < doctorsToDisplay.size(); i++) {
+            doctorIndexById.put(doctorsToDisplay.get(i).getId(), i);
+        }
+        // Узлы сетки переиспользуются: меняются только ячейки, состояние которых отличается от показанного
+        dayGrid.show(doctorsToDisplay);
+        if (!slotChangesDuringLoad.isEmpty()) {
+            applySlotChanges(new ArrayList<>(slotChangesDuringLoad));
+            slotChangesDuringLoad.clear();
+        }
+    }
+
+    /**
+     * Загружает расписание в фоне вместо загружаемого сейчас. Пока ответа нет, показанное
+     * расписание остается на экране, но недоступно для нажатий.
+     * @param request Запрос расписания.
+     * @param handler Получает ответ в потоке JavaFX, если запрос не заменен другим.
+     */
+    private void loadSchedule(Request request, Consumer<Response> handler) {
+        scheduleLoad = request;
+        scheduleGrid.setDisable(true);
+        sendInBackground(request, response -> {
+            if (request != scheduleLoad) {
+                return; // Пользователь уже выбрал другую дату или вид
+            }
+            scheduleLoad = null;
+            scheduleGrid.setDisable(false);
+            handler.accept(response);
+        });
+    }
+
+    /**
+     * Отменяет загрузку расписания, если она еще идет.
+     */
+    private void cancelScheduleLoad() {
+        if (scheduleLoad != null) {
+            if (pendingDayLoad != null) {
+                pendingDayLoad = null; // Запрос еще не отправлен
             } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка загрузки расписания врача", doctorAppointmentsResponse.getMessage());
+                client.cancel(scheduleLoad);
+            }
+            scheduleLoad = null;
+            scheduleGrid.setDisable(false);
+        }
+    }
+
+    /**
+     * Отправляет запрос в фоне и передает ответ обработчику в потоке JavaFX.
+     */
+    private void sendInBackground(Request request, Consumer<Response> handler) {
+        client.sendRequestAsync(request).thenAccept(response -> Platform.runLater(() -> handler.accept(response)));
+    }
+
+    private void putOwnAppointment(Appointment appointment) {
+        LocalTime time = appointment.getAppointmentTime();
+        if (SlotGrid.isBoundary(time) && !time.equals(SlotGrid.WORK_END)) { // Только записи на начало слота
+            int slot = SlotGrid.indexOf(time);
+            ownAppointmentsByDoctor.computeIfAbsent(appointment.getDoctorId(), id -> new Appointment[SlotGrid.SLOT_COUNT])[slot] = appointment;
+        }
+    }
+
+    /**
+     * Передает сетке дня видимую область ScrollPane.
+     */
+    private void updateScheduleViewport() {
+        Bounds viewport = scheduleScroll.getViewportBounds();
+        double hidden = Math.max(0, scheduleGrid.getWidth() - viewport.getWidth());
+        double range = scheduleScroll.getHmax() - scheduleScroll.getHmin();
+        double x = range > 0 ? (scheduleScroll.getHvalue() - scheduleScroll.getHmin()) / range * hidden : 0;
+        dayGrid.setViewport(x, viewport.getWidth());
+    }
+
+    /**
+     * Состояние ячейки показанного расписания по занятости и часам приема врача.
+     */
+    private ScheduleGrid.CellState cellState(int doctorIndex, int slot) {
+        long bit = 1L << slot;
+        // Запись, сделанная до изменения часов приема, остается видна и вне их
+        if ((currentView.getOccupiedMasks()[doctorIndex] & bit) != 0) {
+            return userSession.isPatient() && ownAppointment(doctorIndex, slot) != null
+                    ? ScheduleGrid.CellState.OWN : ScheduleGrid.CellState.OCCUPIED;
+        }
+        return (currentView.getWorkingMasks()[doctorIndex] & bit) != 0
+                ? ScheduleGrid.CellState.FREE : ScheduleGrid.CellState.OFF;
+    }
+
+    /**
+     * @return Запись смотрящего к врачу показанного расписания в слоте или null.
+     */
+    private Appointment ownAppointment(int doctorIndex, int slot) {
+        Appointment[] ownAppointments = ownAppointmentsByDoctor.get(currentView.getDoctors().get(doctorIndex).getId());
+        return ownAppointments != null ? ownAppointments[slot] : null;
+    }
+
+    /**
+     * Подписывается на изменения занятости слотов показанного дня, если еще не подписан.
+     * Сервер присылает новые маски занятости врачей частичными ответами на запрос подписки;
+     * они применяются к ячейкам в потоке JavaFX.
+     */
+    private void subscribeToScheduleChanges(ScheduleViewQuery query) {
+        if (scheduleSubscription != null && query.getDate().equals(subscribedDate)) {
+            return;
+        }
+        unsubscribeFromScheduleChanges();
+        Request request = new Request(OperationType.SUBSCRIBE_SCHEDULE,
+                new FreeSlotsQuery(query.getDoctorIds(), query.getDate(), query.getDate()));
+        scheduleSubscription = request;
+        subscribedDate = query.getDate();
+        client.sendStreamRequest(request, event -> Platform.runLater(() -> handleScheduleEvent(request, event)))
+                .thenAccept(end -> Platform.runLater(() -> handleSubscriptionEnd(request, end)));
+    }
+
+    private void unsubscribeFromScheduleChanges() {
+        if (subscriptionId != null) {
+            client.sendRequestAsync(new Request(OperationType.UNSUBSCRIBE_SCHEDULE, subscriptionId));
+        }
+        scheduleSubscription = null;
+        subscriptionId = null;
+        subscribedDate = null;
+    }
+
+    private void handleScheduleEvent(Request subscription, Response event) {
+        if (event.getData() instanceof Long) {
+            if (subscription == scheduleSubscription) {
+                subscriptionId = (Long) event.getData();
+                runPendingDayLoad();
+            } else {
+                // Пользователь уже ушел с этого дня, пока подписка оформлялась
+                client.sendRequestAsync(new Request(OperationType.UNSUBSCRIBE_SCHEDULE, event.getData()));
+            }
+        } else if (subscription == scheduleSubscription && event.getData() instanceof List) {
+            if (scheduleLoad != null) {
+                for (Object item : (List<?>) event.getData()) {
+                    slotChangesDuringLoad.add((SlotChange) item);
+                }
+            } else {
+                applySlotChanges((List<?>) event.getData());
+            }
+        }
+    }
+
+    private void runPendingDayLoad() {
+        if (pendingDayLoad != null) {
+            Runnable load = pendingDayLoad;
+            pendingDayLoad = null;
+            load.run();
+        }
+    }
+
+    private void handleSubscriptionEnd(Request subscription, Response end) {
+        if (subscription != scheduleSubscription) {
+            return;
+        }
+        scheduleSubscription = null;
+        subscriptionId = null;
+        subscribedDate = null;
+        if (pendingDayLoad != null) {
+            runPendingDayLoad(); // Подписка не оформлена: показываем расписание без обновлений
+            return;
+        }
+        // Сервер прервал подписку (события пропущены): перезагружаем расписание и подписываемся снова.
+        // При потере соединения ответ создается клиентом без идентификатора запроса
+        if (!end.isSuccess() && end.getRequestId() == subscription.getRequestId() && dayGrid.isShown()) {
+            displaySchedule();
+        }
+    }
+
+    /**
+     * Применяет к показанному расписанию новые маски занятости врачей:
+     * перерисовываются только ячейки, состояние которых изменилось.
+     */
+    private void applySlotChanges(List<?> changes) {
+        if (!dayGrid.isShown()) {
+            return; // Показан недельный обзор
+        }
+        long[] occupiedMasks = currentView.getOccupiedMasks();
+        for (Object item : changes) {
+            SlotChange change = (SlotChange) item;
+            Integer doctorIndex = doctorIndexById.get(change.getDoctorId());
+            if (doctorIndex == null || !change.getDate().equals(currentView.getDate())) {
+                continue;
+            }
+            long changed = occupiedMasks[doctorIndex] ^ change.getOccupiedMask();
+            if (changed == 0) {
+                continue;
+            }
+            if (userSession.isDoctor()) {
+                displaySchedule(); // Врачу нужны записи и данные пациентов, которых нет в событии
                 return;
             }
+            occupiedMasks[doctorIndex] = change.getOccupiedMask();
+            Appointment[] ownAppointments = ownAppointmentsByDoctor.get(change.getDoctorId());
+            for (long rest = changed; rest != 0; rest &= rest - 1) {
+                int slot = Long.numberOfTrailingZeros(rest);
+                if (slot >= SlotGrid.SLOT_COUNT) {
+                    break;
+                }
+                if (ownAppointments != null && (change.getOccupiedMask() & (1L << slot)) == 0) {
+                    ownAppointments[slot] = null; // Запись отменена в другом окне
+                }
+                dayGrid.refresh(doctorIndex, slot);
+            }
         }
-        // Создаем карту для быстрого доступа к записям по времени и врачу
-        Map<LocalTime, Map<Integer, Appointment>> appointmentsByTimeAndDoctor = appointmentsToDisplay.stream()
-                .collect(Collectors.groupingBy(Appointment::getAppointmentTime,
-                        Collectors.toMap(Appointment::getDoctorId, app -> app)));
-        // Добавляем колонку для времени
-        ColumnConstraints timeColumn = new ColumnConstraints();
-        timeColumn.setPrefWidth(80);
-        scheduleGrid.getColumnConstraints().add(timeColumn);
-        // Добавляем заголовки для врачей
-        for (int i = 0; i < doctorsToDisplay.size(); i++) {
-            Doctor doctor = doctorsToDisplay.get(i);
+    }
+
+    /**
+     * Обработчик кнопки "Неделя".
+     */
+    @FXML
+    private void handleWeekView() {
+        displayWeek();
+    }
+
+    /**
+     * Отображает число свободных слотов врачей на неделю, начиная с выбранной даты.
+     * Вся неделя загружается одним запросом GET_SCHEDULE_RANGE; клик по ячейке открывает этот день.
+     */
+    private void displayWeek() {
+        cancelScheduleLoad();
+        unsubscribeFromScheduleChanges();
+        LocalDate fromDate = scheduleDatePicker.getValue();
+        if (fromDate == null) {
+            showAlert(Alert.AlertType.ERROR, "Ошибка", "Пожалуйста, выберите дату.");
+            return;
+        }
+        List<Integer> doctorIds = new ArrayList<>();
+        if (userSession.isDoctor()) {
+            // Врач видит только свое расписание
+            doctorIds.add(userSession.getDoctor().getId());
+        }
+        FreeSlotsQuery query = new FreeSlotsQuery(doctorIds, fromDate, fromDate.plusDays(WEEK_VIEW_DAYS - 1));
+        loadSchedule(new Request(OperationType.GET_SCHEDULE_RANGE, query), this::showWeek);
+    }
+
+    /**
+     * Показывает загруженный недельный обзор.
+     */
+    private void showWeek(Response response) {
+        dayGrid.detach();
+        if (!response.isSuccess() || !(response.getData() instanceof ScheduleRange)) {
+            showAlert(Alert.AlertType.ERROR, "Ошибка загрузки расписания", response.getMessage());
+            return;
+        }
+        ScheduleRange range = (ScheduleRange) response.getData();
+        List<Doctor> doctors = range.getDoctors();
+        // Колонка для дат
+        ColumnConstraints dateColumn = new ColumnConstraints();
+        dateColumn.setPrefWidth(110);
+        scheduleGrid.getColumnConstraints().add(dateColumn);
+        for (int i = 0; i < doctors.size(); i++) {
+            Doctor doctor = doctors.get(i);
             Label doctorHeader = new Label(doctor.getSpecialty() + "\n" + doctor.getLastName());
             doctorHeader.setStyle("-fx-font-weight: bold; -fx-alignment: center;");
-            scheduleGrid.add(doctorHeader, i + 1, 0); // +1 потому что первая колонка для времени
+            scheduleGrid.add(doctorHeader, i + 1, 0);
             ColumnConstraints doctorColumn = new ColumnConstraints();
             doctorColumn.setPrefWidth(120);
             scheduleGrid.getColumnConstraints().add(doctorColumn);
         }
-        // Добавляем временные слоты и ячейки расписания
-        int row = 1; // Начинаем после заголовков
-        for (LocalTime time = WORK_START_TIME; time.isBefore(WORK_END_TIME); time = time.plusMinutes(SLOT_DURATION_MINUTES)) {
-            // Добавляем временной заголовок
-            Label timeLabel = new Label(time.toString());
-            timeLabel.setStyle("-fx-font-weight: bold; -fx-alignment: center-right; -fx-padding: 0 5 0 0;");
-            scheduleGrid.add(timeLabel, 0, row);
-            // Добавляем ячейки для каждого врача
-            for (int col = 0; col < doctorsToDisplay.size(); col++) {
-                Doctor currentDoctor = doctorsToDisplay.get(col);
-                StackPane cell = createScheduleCell(time, currentDoctor, appointmentsByTimeAndDoctor, selectedDate);
+        int row = 1;
+        for (LocalDate date = range.getFromDate(); !date.isAfter(range.getToDate()); date = date.plusDays(1)) {
+            Label dateLabel = new Label(date.toString());
+            dateLabel.setStyle("-fx-font-weight: bold; -fx-alignment: center-right; -fx-padding: 0 5 0 0;");
+            scheduleGrid.add(dateLabel, 0, row);
+            for (int col = 0; col < doctors.size(); col++) {
+                int freeCount = range.getFreeCount(date, col);
+                boolean working = range.getWorkingMask(date, col) != 0;
+                String color = freeCount > 0 ? "#d4edda" : working ? "#f8d7da" : "#ffffff";
+                StackPane cell = new StackPane();
+                cell.setPrefSize(100, 30);
+                cell.setStyle("-fx-border-color: #ccc; -fx-border-width: 0.5px;" +
+                        String.format("-fx-background-color: %s;", color));
+                Label freeLabel = new Label(freeCount > 0 ? "Свободно: " + freeCount : working ? "Нет мест" : "Не принимает");
+                freeLabel.setStyle("-fx-font-size: 10px;");
+                cell.getChildren().add(freeLabel);
+                final LocalDate cellDate = date;
+                cell.setOnMouseClicked(event -> openDay(cellDate));
                 scheduleGrid.add(cell, col + 1, row);
             }
             row++;
@@ -262,70 +580,150 @@ public class PolyclinicController {
     }
 
     /**
-     * Создает ячейку расписания с соответствующим цветом и обработчиком событий.
-     * @param time Время приема.
-     * @param doctor Врач, к которому относится ячейка.
-     * @param appointmentsByTimeAndDoctor Карта существующих записей.
-     * @param date Дата расписания.
-     * @return StackPane, представляющий ячейку расписания.
+     * Свободный слот, предложенный поиском ближайших слотов.
      */
-    private StackPane createScheduleCell(LocalTime time, Doctor doctor,
-                                         Map<LocalTime, Map<Integer, Appointment>> appointmentsByTimeAndDoctor,
-                                         LocalDate date) {
-        StackPane cell = new StackPane();
-        cell.setPrefSize(100, 30);
-        cell.setStyle("-fx-border-color: #ccc; -fx-border-width: 0.5px;");
-        Appointment appointment = null;
-        if (appointmentsByTimeAndDoctor.containsKey(time) && appointmentsByTimeAndDoctor.get(time).containsKey(doctor.getId())) {
-            appointment = appointmentsByTimeAndDoctor.get(time).get(doctor.getId());
-        }
-        // Определяем цвет ячейки
-        String color = "#ffffff"; // Белый по умолчанию (врач не принимает)
-        String cellText = "";
-        // Проверяем, находится ли время в рабочем диапазоне врача
-        boolean isDoctorAvailableAtTime = !time.isBefore(WORK_START_TIME) && !time.isAfter(WORK_END_TIME.minusMinutes(SLOT_DURATION_MINUTES));
-        if (isDoctorAvailableAtTime) {
-            if (appointment != null) {
-                // Есть запись
-                if (userSession.isPatient() && userSession.getPatient().getId() == appointment.getPatientId()) {
-                    color = "#d1ecf1"; // Голубой - ваша запись
-                    cellText = "Ваша запись";
-                } else {
-                    color = "#f8d7da"; // Красный - занято другим пациентом
-                    cellText = "Занято";
-                }
-            } else {
-                color = "#d4edda"; // Зеленый - свободно
-                cellText = "Свободно";
+    private static class SlotChoice {
+        private final Doctor doctor;
+        private final LocalDate date;
+        private final LocalTime time;
+
+        SlotChoice(Doctor doctor, LocalDate date, LocalTime time) {
+            this.doctor = doctor;
+            this.date = date;
+            this.time = time;
+        }
+
+        @Override
+        public String toString() {
+            return date + " " + time + " — " + doctor.getLastName() + " " + doctor.getFirstName() +
+                    " (каб. " + doctor.getOfficeNumber() + ")";
+        }
+    }
+
+    /**
+     * Обработчик кнопки "Ближайшие свободные": пациент выбирает специальность,
+     * сервер находит ближайшие свободные слоты всех врачей этой специальности,
+     * а выбранный слот открывает обычный диалог записи.
+     */
+    @FXML
+    private void handleFindEarliestSlots() {
+        earliestSlotsButton.setDisable(true); // До ответа сервера
+        sendInBackground(new Request(OperationType.GET_ALL_DOCTORS, null), doctorsResponse -> {
+            earliestSlotsButton.setDisable(false);
+            chooseSpecialty(doctorsResponse);
+        });
+    }
+
+    private void chooseSpecialty(Response doctorsResponse) {
+        if (userSession == null) {
+            return; // Пользователь вышел, пока шел запрос
+        }
+        if (!doctorsResponse.isSuccess() || !(doctorsResponse.getData() instanceof List)) {
+            showAlert(Alert.AlertType.ERROR, "Ошибка загрузки врачей", doctorsResponse.getMessage());
+            return;
+        }
+        Map<Integer, Doctor> doctorsById = new HashMap<>();
+        TreeSet<String> specialties = new TreeSet<>();
+        for (Object item : (List<?>) doctorsResponse.getData()) {
+            Doctor doctor = (Doctor) item;
+            doctorsById.put(doctor.getId(), doctor);
+            specialties.add(doctor.getSpecialty());
+        }
+        if (specialties.isEmpty()) {
+            showAlert(Alert.AlertType.INFORMATION, "Поиск слотов", "В поликлинике нет врачей.");
+            return;
+        }
+        ChoiceDialog<String> specialtyDialog = new ChoiceDialog<>(specialties.first(), specialties);
+        specialtyDialog.setTitle("Ближайшие свободные слоты");
+        specialtyDialog.setHeaderText("Выберите специальность врача");
+        Optional<String> specialty = specialtyDialog.showAndWait();
+        if (specialty.isEmpty()) {
+            return;
+        }
+
+        LocalDate fromDate = scheduleDatePicker.getValue() != null ? scheduleDatePicker.getValue() : LocalDate.now();
+        EarliestSlotsQuery query = new EarliestSlotsQuery(specialty.get(), fromDate, EARLIEST_SLOTS_HORIZON_DAYS, EARLIEST_SLOTS_LIMIT);
+        earliestSlotsButton.setDisable(true);
+        sendInBackground(new Request(OperationType.FIND_EARLIEST_SLOTS, query), response -> {
+            earliestSlotsButton.setDisable(false);
+            chooseEarliestSlot(specialty.get(), doctorsById, response);
+        });
+    }
+
+    private void chooseEarliestSlot(String specialty, Map<Integer, Doctor> doctorsById, Response response) {
+        if (userSession == null) {
+            return;
+        }
+        if (!response.isSuccess() || !(response.getData() instanceof List)) {
+            showAlert(Alert.AlertType.ERROR, "Ошибка поиска слотов", response.getMessage());
+            return;
+        }
+        List<SlotChoice> choices = new ArrayList<>();
+        for (Object item : (List<?>) response.getData()) {
+            FreeSlots slots = (FreeSlots) item;
+            Doctor doctor = doctorsById.get(slots.getDoctorId());
+            if (doctor == null) {
+                continue;
+            }
+            for (int slot : slots.getFreeSlotIndices()) {
+                choices.add(new SlotChoice(doctor, slots.getDate(), SlotGrid.timeOf(slot)));
             }
+        }
+        if (choices.isEmpty()) {
+            showAlert(Alert.AlertType.INFORMATION, "Поиск слотов", "Свободных слотов на ближайшие "
+                    + EARLIEST_SLOTS_HORIZON_DAYS + " дней не найдено.");
+            return;
+        }
+        ChoiceDialog<SlotChoice> slotDialog = new ChoiceDialog<>(choices.get(0), choices);
+        slotDialog.setTitle("Ближайшие свободные слоты");
+        slotDialog.setHeaderText(specialty + ": выберите время приема");
+        Optional<SlotChoice> choice = slotDialog.showAndWait();
+        if (choice.isPresent()) {
+            SlotChoice selected = choice.get();
+            scheduleDatePicker.setValue(selected.date); // Показываем расписание дня выбранного слота
+            showBookAppointmentDialog(selected.time, selected.doctor, selected.date);
+        }
+    }
+
+    /**
+     * Переходит от недельного обзора к расписанию на день.
+     */
+    private void openDay(LocalDate date) {
+        if (date.equals(scheduleDatePicker.getValue())) {
+            displaySchedule(); // Слушатель DatePicker не сработает для той же даты
         } else {
-            color = "#ffffff"; // Белый - врач не принимает
-            cellText = "Не принимает";
+            scheduleDatePicker.setValue(date);
         }
-        cell.setStyle(cell.getStyle() + String.format("-fx-background-color: %s;", color));
-        Label statusLabel = new Label(cellText);
-        statusLabel.setStyle("-fx-font-size: 10px;");
-        cell.getChildren().add(statusLabel);
-        // Добавляем обработчик кликов
-        final Appointment finalAppointment = appointment;
-        cell.setOnMouseClicked(event -> handleCellClick(time, doctor, finalAppointment, date));
-        return cell;
+    }
+
+    /**
+     * Обрабатывает клик по ячейке показанного расписания на день.
+     */
+    private void handleCellClick(int doctorIndex, int slot) {
+        long bit = 1L << slot;
+        handleCellClick(SlotGrid.timeOf(slot), currentView.getDoctors().get(doctorIndex),
+                (currentView.getWorkingMasks()[doctorIndex] & bit) != 0,
+                (currentView.getOccupiedMasks()[doctorIndex] & bit) != 0,
+                ownAppointment(doctorIndex, slot), currentView.getDate());
     }
 
     /**
      * Обрабатывает клики по ячейкам расписания.
      * @param time Время слота.
      * @param doctor Врач, связанный со слотом.
-     * @param appointment Существующая запись (может быть null).
+     * @param working Принимает ли врач в это время.
+     * @param occupied Занят ли слот.
+     * @param appointment Запись смотрящего в этом слоте (может быть null).
      * @param date Дата расписания.
      */
-    private void handleCellClick(LocalTime time, Doctor doctor, Appointment appointment, LocalDate date) {
+    private void handleCellClick(LocalTime time, Doctor doctor, boolean working, boolean occupied,
+                                 Appointment appointment, LocalDate date) {
         if (userSession.isPatient()) {
             // Логика для пациента
             if (appointment != null && userSession.getPatient().getId() == appointment.getPatientId()) {
                 // Голубая ячейка - ваша запись
                 showAppointmentDetails(appointment, doctor, userSession.getPatient());
-            } else if (appointment == null && !time.isBefore(WORK_START_TIME) && !time.isAfter(WORK_END_TIME.minusMinutes(SLOT_DURATION_MINUTES))) {
+            } else if (!occupied && working) {
                 // Зеленая ячейка - свободно
                 showBookAppointmentDialog(time, doctor, date);
             }
@@ -378,17 +776,37 @@ public class PolyclinicController {
                     doctor.getId(),
                     date,
                     time,
-                    "Запланировано"
+                    Appointment.STATUS_SCHEDULED
             );
             Request request = new Request(OperationType.ADD_APPOINTMENT, newAppointment);
-            Response response = client.sendRequest(request);
-            if (response.isSuccess()) {
-                showAlert(Alert.AlertType.INFORMATION, "Успех", response.getMessage());
-                displaySchedule(); // Обновить расписание
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка записи", response.getMessage());
-            }
+            sendInBackground(request, response -> {
+                if (response.isSuccess()) {
+                    showAlert(Alert.AlertType.INFORMATION, "Успех", response.getMessage());
+                    if (userSession != null) {
+                        showBookedAppointment((Appointment) response.getData());
+                    }
+                } else {
+                    showAlert(Alert.AlertType.ERROR, "Ошибка записи", response.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Отмечает новую запись смотрящего в показанном расписании. Остальные клиенты
+     * узнают о ней из события подписки, поэтому расписание не перезагружается.
+     */
+    private void showBookedAppointment(Appointment appointment) {
+        Integer doctorIndex = doctorIndexById.get(appointment.getDoctorId());
+        int slot = SlotGrid.indexOf(appointment.getAppointmentTime());
+        if (!dayGrid.isShown() || doctorIndex == null || slot < 0
+                || !appointment.getAppointmentDate().equals(currentView.getDate())) {
+            displaySchedule();
+            return;
         }
+        putOwnAppointment(appointment);
+        currentView.getOccupiedMasks()[doctorIndex] |= 1L << slot;
+        dayGrid.refresh(doctorIndex, slot);
     }
 
     /**
@@ -396,25 +814,34 @@ public class PolyclinicController {
      * @param appointment Запись, по которой нужно получить данные пациента.
      */
     private void showPatientDetailsForDoctor(Appointment appointment) {
-        // Запрашиваем данные пациента по ID
-        Request request = new Request(OperationType.GET_PATIENT_DETAILS, appointment.getPatientId());
-        Response response = client.sendRequest(request);
-        if (response.isSuccess() && response.getData() instanceof Patient) {
-            Patient patient = (Patient) response.getData();
-            Alert alert = new Alert(Alert.AlertType.INFORMATION);
-            alert.setTitle("Детали пациента");
-            alert.setHeaderText("Информация о пациенте, записанном на прием");
-            String content = String.format(
-                    "Фамилия: %s\nИмя: %s\nОтчество: %s\nДата рождения: %s\nАдрес: %s\nТелефон: %s\nНомер полиса: %s\n\nВремя приема: %s",
-                    patient.getLastName(), patient.getFirstName(), patient.getMiddleName(), patient.getDateOfBirth(),
-                    patient.getAddress(), patient.getPhone(), patient.getPolicyNumber(),
-                    appointment.getAppointmentTime()
-            );
-            alert.setContentText(content);
-            alert.showAndWait();
-        } else {
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось получить данные пациента: " + response.getMessage());
+        Patient patient = patientDetailsById.get(appointment.getPatientId());
+        if (patient != null) {
+            showPatientDetails(appointment, patient);
+            return;
         }
+        // Данных нет в загруженном пакете, запрашиваем пациента по ID
+        Request request = new Request(OperationType.GET_PATIENT_DETAILS, appointment.getPatientId());
+        sendInBackground(request, response -> {
+            if (response.isSuccess() && response.getData() instanceof Patient) {
+                showPatientDetails(appointment, (Patient) response.getData());
+            } else {
+                showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось получить данные пациента: " + response.getMessage());
+            }
+        });
+    }
+
+    private void showPatientDetails(Appointment appointment, Patient patient) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Детали пациента");
+        alert.setHeaderText("Информация о пациенте, записанном на прием");
+        String content = String.format(
+                "Фамилия: %s\nИмя: %s\nОтчество: %s\nДата рождения: %s\nАдрес: %s\nТелефон: %s\nНомер полиса: %s\n\nВремя приема: %s",
+                patient.getLastName(), patient.getFirstName(), patient.getMiddleName(), patient.getDateOfBirth(),
+                patient.getAddress(), patient.getPhone(), patient.getPolicyNumber(),
+                appointment.getAppointmentTime()
+        );
+        alert.setContentText(content);
+        alert.showAndWait();
     }
 
     /**
@@ -0,0 +1,323 @@
+package com.client;
+
+import com.common.model.Doctor;
+import com.common.model.SlotGrid;
+import javafx.geometry.HPos;
+import javafx.geometry.Insets;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.BorderStroke;
+import javafx.scene.layout.BorderStrokeStyle;
+import javafx.scene.layout.BorderWidths;
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Сетка расписания на день (врачи по колонкам, слоты по строкам) с повторным использованием узлов.
+ * Узлы создаются только для колонок, попадающих в видимую область ScrollPane, и переиспользуются:
+ * при прокрутке колонка, ушедшая из видимой области, показывает врача, который в нее вошел,
+ * а при обновлении расписания меняются текст и фон только тех ячеек, состояние которых изменилось.
+ * Оформление ячеек — общие объекты Background, Border и Font, без разбора CSS для каждой ячейки.
+ */
+class ScheduleGrid {
+    static final double TIME_COLUMN_WIDTH = 80;
+    static final double DOCTOR_COLUMN_WIDTH = 120;
+
+    /**
+     * Состояние ячейки; ячейка перерисовывается только при его смене.
+     */
+    enum CellState {
+        OFF("Не принимает", "#ffffff"),
+        FREE("Свободно", "#d4edda"),
+        OCCUPIED("Занято", "#f8d7da"),
+        OWN("Ваша запись", "#d1ecf1");
+
+        private final String text;
+        private final Background background;
+
+        CellState(String text, String color) {
+            this.text = text;
+            this.background = new Background(new BackgroundFill(Color.web(color), CornerRadii.EMPTY, Insets.EMPTY));
+        }
+    }
+
+    /**
+     * Состояние ячейки врача (номер в списке show) и слота.
+     */
+    @FunctionalInterface
+    interface StateSource {
+        CellState stateOf(int doctorIndex, int slot);
+    }
+
+    /**
+     * Обработчик нажатия на ячейку врача и слота.
+     */
+    @FunctionalInterface
+    interface ClickHandler {
+        void cellClicked(int doctorIndex, int slot);
+    }
+
+    private static final Border CELL_BORDER = new Border(new BorderStroke(Color.web("#ccc"),
+            BorderStrokeStyle.SOLID, CornerRadii.EMPTY, new BorderWidths(0.5)));
+    private static final String BOLD_STYLE = "-fx-font-weight: bold;";
+
+    private final GridPane grid;
+    private final StateSource stateSource;
+    private final ClickHandler clickHandler;
+    private final Font cellFont = Font.font(10);
+
+    private final Text[] timeLabels = new Text[SlotGrid.SLOT_COUNT];
+    private final ColumnConstraints timeColumn = fixedColumn(TIME_COLUMN_WIDTH);
+    private final List<ColumnConstraints> doctorColumns = new ArrayList<>();
+    // Колонка узлов pool[i] показывает врача d, для которого d % pool.size() == i
+    private final List<Column> pool = new ArrayList<>();
+
+    private List<Doctor> doctors = Collections.emptyList();
+    private boolean shown;
+    private double viewportX;
+    private double viewportWidth;
+
+    /**
+     * Колонка узлов: заголовок и ячейки всех слотов одного врача.
+     */
+    private class Column {
+        private int doctorIndex = -1; // -1 — колонка никому не назначена и скрыта
+        private final Text header = new Text();
+        private final StackPane[] cells = new StackPane[SlotGrid.SLOT_COUNT];
+        private final Text[] labels = new Text[SlotGrid.SLOT_COUNT];
+        private final CellState[] states = new CellState[SlotGrid.SLOT_COUNT];
+
+        Column() {
+            header.setStyle(BOLD_STYLE);
+            header.setTextAlignment(TextAlignment.CENTER);
+            GridPane.setHalignment(header, HPos.CENTER);
+            for (int slot = 0; slot < SlotGrid.SLOT_COUNT; slot++) {
+                StackPane cell = new StackPane();
+                cell.setPrefSize(100, 30);
+                cell.setBorder(CELL_BORDER);
+                Text label = new Text();
+                label.setFont(cellFont);
+                cell.getChildren().add(label);
+                final int cellSlot = slot;
+                cell.setOnMouseClicked(event -> {
+                    if (doctorIndex >= 0) {
+                        clickHandler.cellClicked(doctorIndex, cellSlot);
+                    }
+                });
+                cells[slot] = cell;
+                labels[slot] = label;
+            }
+            setVisible(false);
+        }
+
+        void addTo(GridPane target) {
+            target.add(header, 0, 0);
+            for (int slot = 0; slot < SlotGrid.SLOT_COUNT; slot++) {
+                target.add(cells[slot], 0, slot + 1);
+            }
+        }
+
+        /**
+         * Назначает колонке врача и обновляет ячейки, состояние которых отличается от показанного.
+         */
+        void bind(int index, boolean refresh) {
+            if (index < 0) {
+                if (doctorIndex >= 0) {
+                    doctorIndex = -1;
+                    setVisible(false);
+                }
+                return;
+            }
+            if (index != doctorIndex) {
+                if (doctorIndex < 0) {
+                    setVisible(true);
+                }
+                doctorIndex = index;
+                GridPane.setColumnIndex(header, index + 1); // +1 потому что первая колонка для времени
+                for (StackPane cell : cells) {
+                    GridPane.setColumnIndex(cell, index + 1);
+                }
+            } else if (!refresh) {
+                return;
+            }
+            Doctor doctor = doctors.get(index);
+            header.setText(doctor.getSpecialty() + "\n" + doctor.getLastName());
+            for (int slot = 0; slot < SlotGrid.SLOT_COUNT; slot++) {
+                refresh(slot);
+            }
+        }
+
+        void refresh(int slot) {
+            CellState state = stateSource.stateOf(doctorIndex, slot);
+            if (state != states[slot]) {
+                states[slot] = state;
+                labels[slot].setText(state.text);
+                cells[slot].setBackground(state.background);
+            }
+        }
+
+        private void setVisible(boolean visible) {
+            // Скрытая колонка не участвует в раскладке GridPane
+            header.setVisible(visible);
+            header.setManaged(visible);
+            for (StackPane cell : cells) {
+                cell.setVisible(visible);
+                cell.setManaged(visible);
+            }
+        }
+    }
+
+    /**
+     * @param grid GridPane внутри ScrollPane; сетка занимает его, пока показан день.
+     * @param stateSource Состояние ячеек показанного дня.
+     * @param clickHandler Обработчик нажатий на ячейки.
+     */
+    ScheduleGrid(GridPane grid, StateSource stateSource, ClickHandler clickHandler) {
+        this.grid = grid;
+        this.stateSource = stateSource;
+        this.clickHandler = clickHandler;
+        for (int slot = 0; slot < SlotGrid.SLOT_COUNT; slot++) {
+            Text timeLabel = new Text(SlotGrid.timeOf(slot).toString());
+            timeLabel.setStyle(BOLD_STYLE);
+            GridPane.setHalignment(timeLabel, HPos.RIGHT);
+            GridPane.setMargin(timeLabel, new Insets(0, 5, 0, 0));
+            timeLabels[slot] = timeLabel;
+        }
+    }
+
+    /**
+     * Показывает расписание врачей на день. Узлы, созданные для предыдущего дня, переиспользуются.
+     * @param doctors Врачи по колонкам; номер врача в списке передается в StateSource.
+     */
+    void show(List<Doctor> doctors) {
+        this.doctors = doctors;
+        if (!shown) {
+            grid.getChildren().clear();
+            grid.getRowConstraints().clear();
+            grid.getColumnConstraints().clear();
+            grid.getColumnConstraints().add(timeColumn);
+            for (int slot = 0; slot < SlotGrid.SLOT_COUNT; slot++) {
+                grid.add(timeLabels[slot], 0, slot + 1);
+            }
+            for (Column column : pool) {
+                column.addTo(grid);
+            }
+            shown = true;
+        }
+        // Ширины колонок заданы заранее: по ним видимые колонки вычисляются без раскладки
+        while (doctorColumns.size() < doctors.size()) {
+            doctorColumns.add(fixedColumn(DOCTOR_COLUMN_WIDTH));
+        }
+        int columnCount = grid.getColumnConstraints().size() - 1;
+        if (columnCount > doctors.size()) {
+            grid.getColumnConstraints().remove(doctors.size() + 1, columnCount + 1);
+        } else if (columnCount < doctors.size()) {
+            grid.getColumnConstraints().addAll(doctorColumns.subList(columnCount, doctors.size()));
+        }
+        bindVisibleColumns(true);
+    }
+
+    /**
+     * Освобождает GridPane для другого вида (недельного обзора). Узлы сохраняются для следующего show.
+     */
+    void detach() {
+        if (shown) {
+            for (Column column : pool) {
+                column.bind(-1, false);
+            }
+            doctors = Collections.emptyList();
+            shown = false;
+        }
+        grid.getChildren().clear();
+        grid.getRowConstraints().clear();
+        grid.getColumnConstraints().clear();
+    }
+
+    /**
+     * @return Показан ли сейчас день (а не другой вид).
+     */
+    boolean isShown() {
+        return shown;
+    }
+
+    /**
+     * Перерисовывает ячейку врача и слота, если ее колонка видна. Невидимая ячейка получит
+     * состояние, когда ее колонка войдет в видимую область.
+     */
+    void refresh(int doctorIndex, int slot) {
+        if (!shown || pool.isEmpty()) {
+            return;
+        }
+        Column column = pool.get(doctorIndex % pool.size());
+        if (column.doctorIndex == doctorIndex) {
+            column.refresh(slot);
+        }
+    }
+
+    /**
+     * Задает видимую область ScrollPane в координатах GridPane.
+     * @param x Смещение прокрутки по горизонтали.
+     * @param width Ширина видимой области.
+     */
+    void setViewport(double x, double width) {
+        viewportX = x;
+        viewportWidth = width;
+        if (shown) {
+            bindVisibleColumns(false);
+        }
+    }
+
+    /**
+     * Назначает колонкам узлов врачей, попадающих в видимую область.
+     * @param refresh Обновить ячейки и колонок, врач которых не сменился (данные дня изменились).
+     */
+    private void bindVisibleColumns(boolean refresh) {
+        double stride = DOCTOR_COLUMN_WIDTH + grid.getHgap();
+        double start = TIME_COLUMN_WIDTH + grid.getHgap();
+        int first = Math.max(0, (int) Math.floor((viewportX - start) / stride));
+        int last = Math.min(doctors.size() - 1, (int) Math.floor((viewportX + viewportWidth - start) / stride));
+        if (viewportWidth <= 0) {
+            last = -1; // Область еще не разложена: колонки назначатся при первой раскладке
+        }
+        int visible = last - first + 1;
+        if (visible > pool.size()) {
+            // Видимая область расширилась: врачи распределяются по колонкам заново
+            while (pool.size() < visible) {
+                Column column = new Column();
+                column.addTo(grid);
+                pool.add(column);
+            }
+            for (Column column : pool) {
+                column.bind(-1, false);
+            }
+        }
+        int size = pool.size();
+        for (int i = 0; i < size; i++) {
+            int doctorIndex = -1;
+            if (visible > 0) {
+                // Врач из [first, last], для которого doctorIndex % size == i
+                doctorIndex = first + Math.floorMod(i - first, size);
+                if (doctorIndex > last) {
+                    doctorIndex = -1;
+                }
+            }
+            pool.get(i).bind(doctorIndex, refresh);
+        }
+    }
+
+    private static ColumnConstraints fixedColumn(double width) {
+        // С минимальной шириной GridPane не сжимает пустые колонки под ширину ScrollPane
+        return new ColumnConstraints(width, width, width);
+    }
+}
@@ -11,6 +11,9 @@ import java.time.LocalTime;
 public class Appointment implements Serializable {
     private static final long serialVersionUID = 1L; // Для сериализации
 
+    public static final String STATUS_SCHEDULED = "Запланировано";
+    public static final String STATUS_CANCELLED = "Отменено"; // Отмененная запись не занимает слот
+
     private int id;
     private int patientId;
     private int doctorId;
@@ -0,0 +1,85 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ответ на GET_CHANGES_SINCE: строки, изменившиеся после версии, которую клиент уже получил.
+ * Добавленные, измененные и отмененные строки передаются в текущем виде (отмененная запись —
+ * со статусом «Отменено»), удаленные — только своими ID. Если изменения восстановить нельзя
+ * (журнал усечен или изменений слишком много), resyncRequired = true: клиент сбрасывает кэш,
+ * загружает нужные данные заново и дальше запрашивает изменения после version.
+ */
+public class ChangeSet implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private long version; // Версия, с которой клиент запрашивает следующие изменения
+    private boolean resyncRequired;
+    private List<Patient> patients;
+    private List<Doctor> doctors;
+    private List<Appointment> appointments;
+    private List<Integer> deletedPatientIds;
+    private List<Integer> deletedAppointmentIds;
+
+    public ChangeSet(long version, boolean resyncRequired, List<Patient> patients, List<Doctor> doctors,
+                     List<Appointment> appointments, List<Integer> deletedPatientIds, List<Integer> deletedAppointmentIds) {
+        this.version = version;
+        this.resyncRequired = resyncRequired;
+        this.patients = patients;
+        this.doctors = doctors;
+        this.appointments = appointments;
+        this.deletedPatientIds = deletedPatientIds;
+        this.deletedAppointmentIds = deletedAppointmentIds;
+    }
+
+    /**
+     * Ответ, требующий полной перезагрузки данных клиента.
+     * @param version Текущая версия: после перезагрузки изменения запрашиваются после нее.
+     */
+    public static ChangeSet resync(long version) {
+        return new ChangeSet(version, true, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>(), new ArrayList<>());
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isResyncRequired() {
+        return resyncRequired;
+    }
+
+    public List<Patient> getPatients() {
+        return patients;
+    }
+
+    public List<Doctor> getDoctors() {
+        return doctors;
+    }
+
+    public List<Appointment> getAppointments() {
+        return appointments;
+    }
+
+    public List<Integer> getDeletedPatientIds() {
+        return deletedPatientIds;
+    }
+
+    public List<Integer> getDeletedAppointmentIds() {
+        return deletedAppointmentIds;
+    }
+
+    @Override
+    public String toString() {
+        return "Изменения{" +
+                "версия=" + version +
+                (resyncRequired ? ", требуется полная загрузка" : "") +
+                ", пациентов=" + patients.size() +
+                ", врачей=" + doctors.size() +
+                ", записей=" + appointments.size() +
+                ", удалено пациентов=" + deletedPatientIds.size() +
+                ", удалено записей=" + deletedAppointmentIds.size() +
+                '}';
+    }
+}
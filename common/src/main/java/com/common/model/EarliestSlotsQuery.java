@@ -0,0 +1,50 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Данные запроса FIND_EARLIEST_SLOTS: ближайшие свободные слоты врачей одной специальности.
+ * Поиск идет с даты fromDate не дальше horizonDays дней и останавливается на limit слотах.
+ */
+public class EarliestSlotsQuery implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private String specialty;
+    private LocalDate fromDate;
+    private int horizonDays;
+    private int limit;
+
+    public EarliestSlotsQuery(String specialty, LocalDate fromDate, int horizonDays, int limit) {
+        this.specialty = specialty;
+        this.fromDate = fromDate;
+        this.horizonDays = horizonDays;
+        this.limit = limit;
+    }
+
+    public String getSpecialty() {
+        return specialty;
+    }
+
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public int getHorizonDays() {
+        return horizonDays;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "Запрос ближайших слотов{" +
+                "специальность='" + specialty + '\'' +
+                ", с=" + fromDate +
+                ", дней=" + horizonDays +
+                ", слотов=" + limit +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Свободные слоты одного врача на один день в виде битовой маски сетки SlotGrid:
+ * бит i установлен, если слот i свободен.
+ */
+public class FreeSlots implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private int doctorId;
+    private LocalDate date;
+    private long freeMask;
+
+    public FreeSlots(int doctorId, LocalDate date, long freeMask) {
+        this.doctorId = doctorId;
+        this.date = date;
+        this.freeMask = freeMask;
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public long getFreeMask() {
+        return freeMask;
+    }
+
+    public boolean isFree(int slotIndex) {
+        return slotIndex >= 0 && slotIndex < 64 && (freeMask & (1L << slotIndex)) != 0;
+    }
+
+    public boolean isFree(LocalTime time) {
+        return isFree(SlotGrid.indexOf(time));
+    }
+
+    /**
+     * @return Номера свободных слотов по возрастанию.
+     */
+    public int[] getFreeSlotIndices() {
+        int[] indices = new int[Long.bitCount(freeMask)];
+        long mask = freeMask;
+        for (int i = 0; mask != 0; i++) {
+            indices[i] = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+        }
+        return indices;
+    }
+
+    @Override
+    public String toString() {
+        return "Свободные слоты{" +
+                "ID Врача=" + doctorId +
+                ", Дата=" + date +
+                ", Слоты=" + Arrays.toString(getFreeSlotIndices()) +
+                '}';
+    }
+}
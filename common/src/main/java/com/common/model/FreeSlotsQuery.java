@@ -0,0 +1,50 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Данные запросов GET_FREE_SLOTS и GET_SCHEDULE_RANGE: врачи и диапазон дат (включительно).
+ * Пустой список врачей означает всех врачей.
+ */
+public class FreeSlotsQuery implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private List<Integer> doctorIds;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+
+    public FreeSlotsQuery(List<Integer> doctorIds, LocalDate fromDate, LocalDate toDate) {
+        this.doctorIds = doctorIds != null ? doctorIds : new ArrayList<>();
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+    }
+
+    // Запрос для всех врачей на один день
+    public FreeSlotsQuery(LocalDate date) {
+        this(new ArrayList<>(), date, date);
+    }
+
+    public List<Integer> getDoctorIds() {
+        return doctorIds;
+    }
+
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    @Override
+    public String toString() {
+        return "Запрос свободных слотов{" +
+                "врачи=" + (doctorIds.isEmpty() ? "все" : doctorIds) +
+                ", с=" + fromDate +
+                ", по=" + toDate +
+                '}';
+    }
+}
@@ -0,0 +1,79 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Данные постраничного запроса GET_PATIENT_HISTORY.
+ * История упорядочена от новых записей к старым по (дата, время, ID); курсор — ключ последней
+ * записи полученной страницы, и следующая страница начинается строго после него.
+ * Стоимость страницы не зависит ни от ее номера, ни от длины истории пациента.
+ */
+public class HistoryPageRequest implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private int patientId;
+    // Курсор: null — первая страница
+    private LocalDate beforeDate;
+    private LocalTime beforeTime;
+    private int beforeId;
+    private int limit;
+
+    public HistoryPageRequest(int patientId, LocalDate beforeDate, LocalTime beforeTime, int beforeId, int limit) {
+        this.patientId = patientId;
+        this.beforeDate = beforeDate;
+        this.beforeTime = beforeTime;
+        this.beforeId = beforeId;
+        this.limit = limit;
+    }
+
+    // Первая страница истории
+    public HistoryPageRequest(int patientId, int limit) {
+        this(patientId, null, null, 0, limit);
+    }
+
+    /**
+     * @param last Последняя запись полученной страницы.
+     * @return Запрос следующей страницы.
+     */
+    public HistoryPageRequest after(Appointment last) {
+        return new HistoryPageRequest(patientId, last.getAppointmentDate(), last.getAppointmentTime(), last.getId(), limit);
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public LocalDate getBeforeDate() {
+        return beforeDate;
+    }
+
+    public LocalTime getBeforeTime() {
+        return beforeTime;
+    }
+
+    public int getBeforeId() {
+        return beforeId;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return true, если это запрос первой страницы.
+     */
+    public boolean isFirstPage() {
+        return beforeDate == null || beforeTime == null;
+    }
+
+    @Override
+    public String toString() {
+        return "Запрос страницы истории{" +
+                "пациент=" + patientId +
+                ", до=" + (isFirstPage() ? "начала" : beforeDate + " " + beforeTime + " #" + beforeId) +
+                ", размер=" + limit +
+                '}';
+    }
+}
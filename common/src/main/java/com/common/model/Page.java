@@ -0,0 +1,44 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Страница результатов постраничного запроса.
+ * Курсор следующей страницы — ключ последнего элемента (например, ID пациента).
+ * @param <T> Тип элементов.
+ */
+public class Page<T> implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private List<T> items;
+    private boolean hasMore; // Есть ли элементы после последнего элемента страницы
+
+    public Page(List<T> items, boolean hasMore) {
+        this.items = items;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * @return Последний элемент страницы или null, если страница пуста.
+     */
+    public T getLast() {
+        return items.isEmpty() ? null : items.get(items.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "Страница{" +
+                "элементов=" + items.size() +
+                ", есть еще=" + hasMore +
+                '}';
+    }
+}
@@ -0,0 +1,65 @@
+package com.common.model;
+
+import java.io.Serializable;
+
+/**
+ * Данные постраничного запроса GET_ALL_PATIENTS или SEARCH_PATIENTS.
+ * Страницы выбираются по ключу (keyset): пациенты упорядочены по ID, и следующая страница
+ * начинается после ID последнего пациента предыдущей, поэтому стоимость страницы не зависит
+ * от ее номера. В потоковом режиме сервер сам отправляет все страницы начиная с afterId
+ * частичными ответами с тем же идентификатором запроса, а затем итоговый ответ.
+ */
+public class PatientPageRequest implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private String query; // Строка поиска; null — все пациенты
+    private int afterId; // 0 — с начала
+    private int pageSize;
+    private boolean stream;
+
+    public PatientPageRequest(String query, int afterId, int pageSize, boolean stream) {
+        this.query = query;
+        this.afterId = afterId;
+        this.pageSize = pageSize;
+        this.stream = stream;
+    }
+
+    // Первая страница всех пациентов
+    public PatientPageRequest(int pageSize) {
+        this(null, 0, pageSize, false);
+    }
+
+    /**
+     * @param afterId ID последнего пациента полученной страницы.
+     * @return Запрос следующей страницы с теми же параметрами.
+     */
+    public PatientPageRequest after(int afterId) {
+        return new PatientPageRequest(query, afterId, pageSize, stream);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    @Override
+    public String toString() {
+        return "Запрос страницы пациентов{" +
+                "поиск=" + (query != null ? "'" + query + "'" : "все") +
+                ", после ID=" + afterId +
+                ", размер=" + pageSize +
+                ", поток=" + stream +
+                '}';
+    }
+}
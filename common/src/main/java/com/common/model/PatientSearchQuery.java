@@ -0,0 +1,50 @@
+package com.common.model;
+
+import java.io.Serializable;
+
+/**
+ * Данные запроса SEARCH_PATIENTS с параметрами поиска.
+ * Обычный режим ищет подстроку во всех полях (как запрос строкой). Нечеткий режим ищет
+ * по фамилии с опечатками: первое слово текста — фамилия, остальные — начала имени и отчества.
+ */
+public class PatientSearchQuery implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    public static final int AUTO_EDITS = -1; // Число правок выбирается сервером по длине фамилии
+
+    private String text;
+    private boolean fuzzy;
+    private int maxEdits;
+
+    public PatientSearchQuery(String text, boolean fuzzy, int maxEdits) {
+        this.text = text;
+        this.fuzzy = fuzzy;
+        this.maxEdits = maxEdits;
+    }
+
+    // Запрос с автоматическим выбором числа правок
+    public PatientSearchQuery(String text, boolean fuzzy) {
+        this(text, fuzzy, AUTO_EDITS);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isFuzzy() {
+        return fuzzy;
+    }
+
+    public int getMaxEdits() {
+        return maxEdits;
+    }
+
+    @Override
+    public String toString() {
+        return "Запрос поиска пациентов{" +
+                "текст='" + text + '\'' +
+                ", нечеткий=" + fuzzy +
+                ", правок=" + (maxEdits == AUTO_EDITS ? "авто" : String.valueOf(maxEdits)) +
+                '}';
+    }
+}
@@ -0,0 +1,104 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Занятость слотов врачей за диапазон дат (ответ GET_SCHEDULE_RANGE).
+ * Для каждого дня и врача хранятся битовые маски сетки SlotGrid: занятые слоты и слоты приема;
+ * маски лежат по дням подряд: маска дня d и врача i — occupiedMasks[d * doctors.size() + i]
+ * (так же в workingMasks).
+ */
+public class ScheduleRange implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private List<Doctor> doctors;
+    private long[] occupiedMasks;
+    private long[] workingMasks;
+
+    public ScheduleRange(LocalDate fromDate, LocalDate toDate, List<Doctor> doctors, long[] occupiedMasks, long[] workingMasks) {
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.doctors = doctors;
+        this.occupiedMasks = occupiedMasks;
+        this.workingMasks = workingMasks;
+    }
+
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    public List<Doctor> getDoctors() {
+        return doctors;
+    }
+
+    public long[] getOccupiedMasks() {
+        return occupiedMasks;
+    }
+
+    public long[] getWorkingMasks() {
+        return workingMasks;
+    }
+
+    /**
+     * @return Число дней в диапазоне (включительно).
+     */
+    public int getDayCount() {
+        return dayCount(fromDate, toDate);
+    }
+
+    /**
+     * @param date Дата внутри диапазона.
+     * @param doctorIndex Номер врача в списке doctors.
+     * @return Маска занятых слотов врача на этот день.
+     */
+    public long getOccupiedMask(LocalDate date, int doctorIndex) {
+        return occupiedMasks[indexOf(date, doctorIndex)];
+    }
+
+    /**
+     * @param date Дата внутри диапазона.
+     * @param doctorIndex Номер врача в списке doctors.
+     * @return Маска слотов, в которые врач принимает в этот день.
+     */
+    public long getWorkingMask(LocalDate date, int doctorIndex) {
+        return workingMasks[indexOf(date, doctorIndex)];
+    }
+
+    /**
+     * @return Число свободных слотов приема врача на этот день.
+     */
+    public int getFreeCount(LocalDate date, int doctorIndex) {
+        int index = indexOf(date, doctorIndex);
+        return Long.bitCount(workingMasks[index] & ~occupiedMasks[index]);
+    }
+
+    private int indexOf(LocalDate date, int doctorIndex) {
+        int day = (int) ChronoUnit.DAYS.between(fromDate, date);
+        return day * doctors.size() + doctorIndex;
+    }
+
+    /**
+     * @return Число дней от from до to включительно.
+     */
+    public static int dayCount(LocalDate from, LocalDate to) {
+        return (int) ChronoUnit.DAYS.between(from, to) + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Расписание за период{" +
+                "с=" + fromDate +
+                ", по=" + toDate +
+                ", врачей=" + doctors.size() +
+                '}';
+    }
+}
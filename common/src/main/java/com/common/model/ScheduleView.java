@@ -0,0 +1,86 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Расписание на день, собранное сервером за один запрос GET_SCHEDULE_VIEW:
+ * врачи, часы их приема, занятость их слотов и записи, которые вправе видеть смотрящий.
+ * Часы приема и занятость передаются битовыми масками сетки SlotGrid на врача
+ * (бит i — слот i), поэтому чужие записи не раскрывают, кто записан.
+ */
+public class ScheduleView implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private LocalDate date;
+    private List<Doctor> doctors;
+    private long[] occupiedMasks; // В порядке doctors
+    private long[] workingMasks; // Слоты, в которые врач принимает, в порядке doctors
+    private List<Appointment> appointments; // Только записи смотрящего
+    private List<Patient> patients; // Пациенты записей к врачу, если смотрит врач
+
+    public ScheduleView(LocalDate date, List<Doctor> doctors, long[] occupiedMasks, long[] workingMasks,
+                        List<Appointment> appointments, List<Patient> patients) {
+        this.date = date;
+        this.doctors = doctors;
+        this.occupiedMasks = occupiedMasks;
+        this.workingMasks = workingMasks;
+        this.appointments = appointments;
+        this.patients = patients;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public List<Doctor> getDoctors() {
+        return doctors;
+    }
+
+    public long[] getOccupiedMasks() {
+        return occupiedMasks;
+    }
+
+    public long[] getWorkingMasks() {
+        return workingMasks;
+    }
+
+    public List<Appointment> getAppointments() {
+        return appointments;
+    }
+
+    public List<Patient> getPatients() {
+        return patients;
+    }
+
+    /**
+     * @param doctorIndex Номер врача в списке doctors.
+     * @param time Время слота.
+     * @return true, если слот занят (в том числе записью смотрящего).
+     */
+    public boolean isOccupied(int doctorIndex, LocalTime time) {
+        int slot = SlotGrid.indexOf(time);
+        return slot >= 0 && (occupiedMasks[doctorIndex] & (1L << slot)) != 0;
+    }
+
+    /**
+     * @param doctorIndex Номер врача в списке doctors.
+     * @param time Время слота.
+     * @return true, если врач принимает в этот слот.
+     */
+    public boolean isWorking(int doctorIndex, LocalTime time) {
+        int slot = SlotGrid.indexOf(time);
+        return slot >= 0 && (workingMasks[doctorIndex] & (1L << slot)) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Расписание{" +
+                "дата=" + date +
+                ", врачей=" + doctors.size() +
+                ", записей смотрящего=" + appointments.size() +
+                '}';
+    }
+}
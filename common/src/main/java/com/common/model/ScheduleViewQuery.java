@@ -0,0 +1,69 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Данные запроса GET_SCHEDULE_VIEW: дата, врачи и тот, кто смотрит расписание.
+ * Пустой список врачей означает всех врачей. Подробности записей (ID пациента) возвращаются
+ * только для записей самого смотрящего: пациента — его собственных, врача — записей к нему.
+ */
+public class ScheduleViewQuery implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private LocalDate date;
+    private List<Integer> doctorIds;
+    private int viewerPatientId; // 0 — смотрит не пациент
+    private int viewerDoctorId; // 0 — смотрит не врач
+
+    public ScheduleViewQuery(LocalDate date, List<Integer> doctorIds, int viewerPatientId, int viewerDoctorId) {
+        this.date = date;
+        this.doctorIds = doctorIds != null ? doctorIds : new ArrayList<>();
+        this.viewerPatientId = viewerPatientId;
+        this.viewerDoctorId = viewerDoctorId;
+    }
+
+    /**
+     * Расписание всех врачей глазами пациента.
+     */
+    public static ScheduleViewQuery forPatient(LocalDate date, int patientId) {
+        return new ScheduleViewQuery(date, new ArrayList<>(), patientId, 0);
+    }
+
+    /**
+     * Собственное расписание врача.
+     */
+    public static ScheduleViewQuery forDoctor(LocalDate date, int doctorId) {
+        List<Integer> doctorIds = new ArrayList<>();
+        doctorIds.add(doctorId);
+        return new ScheduleViewQuery(date, doctorIds, 0, doctorId);
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public List<Integer> getDoctorIds() {
+        return doctorIds;
+    }
+
+    public int getViewerPatientId() {
+        return viewerPatientId;
+    }
+
+    public int getViewerDoctorId() {
+        return viewerDoctorId;
+    }
+
+    @Override
+    public String toString() {
+        return "Запрос расписания{" +
+                "дата=" + date +
+                ", врачи=" + (doctorIds.isEmpty() ? "все" : doctorIds) +
+                ", пациент=" + viewerPatientId +
+                ", врач=" + viewerDoctorId +
+                '}';
+    }
+}
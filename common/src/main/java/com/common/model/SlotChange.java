@@ -0,0 +1,45 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Изменение занятости слотов одного врача на один день, которое сервер рассылает
+ * подписчикам SUBSCRIBE_SCHEDULE. Передается вся новая маска занятых слотов (бит i — слот i
+ * сетки SlotGrid), а не отдельный слот: несколько изменений подряд сводятся к одному
+ * событию, а повторное применение события ничего не меняет.
+ */
+public class SlotChange implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private int doctorId;
+    private LocalDate date;
+    private long occupiedMask;
+
+    public SlotChange(int doctorId, LocalDate date, long occupiedMask) {
+        this.doctorId = doctorId;
+        this.date = date;
+        this.occupiedMask = occupiedMask;
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public long getOccupiedMask() {
+        return occupiedMask;
+    }
+
+    @Override
+    public String toString() {
+        return "Изменение слотов{" +
+                "ID Врача=" + doctorId +
+                ", Дата=" + date +
+                ", занято=" + Long.bitCount(occupiedMask) +
+                '}';
+    }
+}
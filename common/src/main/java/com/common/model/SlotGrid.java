@@ -0,0 +1,77 @@
+package com.common.model;
+
+import java.time.LocalTime;
+
+/**
+ * Сетка слотов приема на один день: общее рабочее время и длительность слота.
+ * Слоты нумеруются с нуля от начала рабочего дня, поэтому занятость врача за день
+ * помещается в одно число long (бит i — слот i).
+ */
+public final class SlotGrid {
+    public static final LocalTime WORK_START = LocalTime.of(8, 0);
+    public static final LocalTime WORK_END = LocalTime.of(18, 0);
+    public static final int SLOT_MINUTES = 30;
+    public static final int SLOT_COUNT = (WORK_END.toSecondOfDay() - WORK_START.toSecondOfDay()) / 60 / SLOT_MINUTES;
+    public static final long ALL_SLOTS = SLOT_COUNT == 64 ? -1L : (1L << SLOT_COUNT) - 1;
+
+    private SlotGrid() {
+    }
+
+    /**
+     * Возвращает номер слота, в который попадает время.
+     * @param time Время приема.
+     * @return Номер слота или -1, если время вне рабочего дня.
+     */
+    public static int indexOf(LocalTime time) {
+        int minutes = (time.toSecondOfDay() - WORK_START.toSecondOfDay()) / 60;
+        if (minutes < 0 || minutes >= SLOT_COUNT * SLOT_MINUTES) {
+            return -1;
+        }
+        return minutes / SLOT_MINUTES;
+    }
+
+    /**
+     * @param index Номер слота.
+     * @return Время начала слота.
+     */
+    public static LocalTime timeOf(int index) {
+        return WORK_START.plusMinutes((long) index * SLOT_MINUTES);
+    }
+
+    /**
+     * @param time Время.
+     * @return Маска слотов, начинающихся строго позже указанного времени.
+     */
+    public static long slotsStartingAfter(LocalTime time) {
+        long mask = 0;
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            if (timeOf(i).isAfter(time)) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @param start Начало интервала.
+     * @param end Конец интервала (не включается).
+     * @return Маска слотов, начинающихся внутри интервала.
+     */
+    public static long rangeMask(LocalTime start, LocalTime end) {
+        long mask = 0;
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            LocalTime time = timeOf(i);
+            if (!time.isBefore(start) && time.isBefore(end)) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return true, если время совпадает с началом слота или с концом рабочего дня.
+     */
+    public static boolean isBoundary(LocalTime time) {
+        return time.equals(WORK_END) || (indexOf(time) >= 0 && timeOf(indexOf(time)).equals(time));
+    }
+}
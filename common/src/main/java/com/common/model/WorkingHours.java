@@ -0,0 +1,95 @@
+package com.common.model;
+
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Часы приема врача: строка недельного шаблона (день недели) или исключение на конкретную дату.
+ * Исключение заменяет шаблон на эту дату; исключение без времени означает, что врач в этот день не принимает.
+ * Время задается по границам слотов сетки SlotGrid. Врач без шаблона принимает весь рабочий день
+ * SlotGrid ежедневно; если шаблон задан, дни недели без строки шаблона — выходные.
+ */
+public class WorkingHours implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private int doctorId;
+    private DayOfWeek dayOfWeek; // Для строки шаблона, иначе null
+    private LocalDate date; // Для исключения, иначе null
+    private LocalTime startTime; // null — врач не принимает
+    private LocalTime endTime;
+
+    public WorkingHours(int doctorId, DayOfWeek dayOfWeek, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        this.doctorId = doctorId;
+        this.dayOfWeek = dayOfWeek;
+        this.date = date;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    /**
+     * Строка недельного шаблона.
+     */
+    public static WorkingHours weekly(int doctorId, DayOfWeek dayOfWeek, LocalTime startTime, LocalTime endTime) {
+        return new WorkingHours(doctorId, dayOfWeek, null, startTime, endTime);
+    }
+
+    /**
+     * Исключение: особые часы приема на дату.
+     */
+    public static WorkingHours onDate(int doctorId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        return new WorkingHours(doctorId, null, date, startTime, endTime);
+    }
+
+    /**
+     * Исключение: врач не принимает в этот день.
+     */
+    public static WorkingHours dayOff(int doctorId, LocalDate date) {
+        return new WorkingHours(doctorId, null, date, null, null);
+    }
+
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public DayOfWeek getDayOfWeek() {
+        return dayOfWeek;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalTime getEndTime() {
+        return endTime;
+    }
+
+    public boolean isException() {
+        return date != null;
+    }
+
+    public boolean isDayOff() {
+        return startTime == null;
+    }
+
+    /**
+     * @return Маска слотов приема (0 — выходной).
+     */
+    public long toSlotMask() {
+        return isDayOff() ? 0L : SlotGrid.rangeMask(startTime, endTime);
+    }
+
+    @Override
+    public String toString() {
+        return "Часы приема{" +
+                "ID Врача=" + doctorId +
+                (isException() ? ", Дата=" + date : ", День недели=" + dayOfWeek) +
+                (isDayOff() ? ", не принимает" : ", с " + startTime + " до " + endTime) +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+package com.common.network;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Данные запроса BATCH: набор подзапросов, выполняемых сервером за один обмен.
+ * В ответ сервер возвращает список ответов (List&lt;Response&gt;) в порядке подзапросов.
+ * Если пакет транзакционный, все подзапросы выполняются в одной транзакции БД
+ * и при первой неудаче изменения откатываются.
+ */
+public class BatchRequest implements Serializable {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private List<Request> requests;
+    private boolean transactional;
+
+    public BatchRequest(List<Request> requests, boolean transactional) {
+        this.requests = requests;
+        this.transactional = transactional;
+    }
+
+    public BatchRequest(boolean transactional) {
+        this(new ArrayList<>(), transactional);
+    }
+
+    /**
+     * Добавляет подзапрос в пакет.
+     * @param request Подзапрос.
+     * @return Этот же пакет (для цепочки вызовов).
+     */
+    public BatchRequest add(Request request) {
+        requests.add(request);
+        return this;
+    }
+
+    public List<Request> getRequests() {
+        return requests;
+    }
+
+    public boolean isTransactional() {
+        return transactional;
+    }
+
+    @Override
+    public String toString() {
+        return "Пакет{" +
+                "подзапросов=" + requests.size() +
+                ", транзакция=" + transactional +
+                '}';
+    }
+}
@@ -0,0 +1,672 @@
+package com.common.network;
+
+import com.common.model.Appointment;
+import com.common.model.ChangeSet;
+import com.common.model.Doctor;
+import com.common.model.EarliestSlotsQuery;
+import com.common.model.FreeSlots;
+import com.common.model.FreeSlotsQuery;
+import com.common.model.HistoryPageRequest;
+import com.common.model.Page;
+import com.common.model.Patient;
+import com.common.model.PatientPageRequest;
+import com.common.model.PatientSearchQuery;
+import com.common.model.ScheduleRange;
+import com.common.model.ScheduleView;
+import com.common.model.ScheduleViewQuery;
+import com.common.model.SlotChange;
+import com.common.model.WorkingHours;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Компактный бинарный кодек сообщений без рефлексии.
+ * Заголовок запроса: версия формата, код операции, идентификатор запроса, известная клиенту версия данных;
+ * ответа: версия формата, флаги, идентификатор запроса, версия данных (если есть), сообщение.
+ * Данные кодируются значением с однобайтовым тегом типа. У каждого типа данных протокола
+ * свой тег и написанный вручную кодировщик; значение другого типа не отправляется, а
+ * неизвестный тег при чтении — ошибка формата, поэтому классы по имени из сообщения не создаются.
+ */
+public class BinaryCodec implements MessageCodec {
+    static final byte FORMAT_VERSION = 3; // Это же и версия протокола в Handshake
+
+    // Теги типов значений
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_INT = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_BOOLEAN = 3;
+    private static final byte TAG_STRING = 4;
+    private static final byte TAG_DATE = 5;
+    private static final byte TAG_TIME = 6;
+    private static final byte TAG_PATIENT = 7;
+    private static final byte TAG_DOCTOR = 8;
+    private static final byte TAG_APPOINTMENT = 9;
+    private static final byte TAG_LIST = 10;
+    private static final byte TAG_OBJECT_ARRAY = 11;
+    private static final byte TAG_PATIENT_LIST = 12;
+    private static final byte TAG_DOCTOR_LIST = 13;
+    private static final byte TAG_APPOINTMENT_LIST = 14;
+    private static final byte TAG_BATCH = 16;
+    private static final byte TAG_RESPONSE = 17;
+    private static final byte TAG_FREE_SLOTS_QUERY = 18;
+    private static final byte TAG_FREE_SLOTS_LIST = 19;
+    private static final byte TAG_PATIENT_SEARCH_QUERY = 20;
+    private static final byte TAG_PATIENT_PAGE_REQUEST = 21;
+    private static final byte TAG_PAGE = 22;
+    private static final byte TAG_HISTORY_PAGE_REQUEST = 23;
+    private static final byte TAG_SCHEDULE_VIEW_QUERY = 24;
+    private static final byte TAG_SCHEDULE_VIEW = 25;
+    private static final byte TAG_SCHEDULE_RANGE = 26;
+    private static final byte TAG_EARLIEST_SLOTS_QUERY = 27;
+    private static final byte TAG_WORKING_HOURS = 28;
+    private static final byte TAG_SLOT_CHANGE_LIST = 29;
+    private static final byte TAG_CHANGE_SET = 30;
+    private static final byte TAG_FREE_SLOTS = 31;
+    private static final byte TAG_SLOT_CHANGE = 32;
+
+    private static final int MAX_DEPTH = 32; // Как maxdepth фильтра десериализации JavaSerializationCodec
+
+    private static final int FLAG_SUCCESS = 1;
+    private static final int FLAG_PARTIAL = 2;
+    private static final int FLAG_NOT_MODIFIED = 4;
+    private static final int FLAG_VERSIONED = 8; // За идентификатором следует версия данных
+
+    @Override
+    public byte getId() {
+        return Codecs.BINARY;
+    }
+
+    @Override
+    public byte[] encodeRequest(Request request) throws IOException {
+        BinaryWriter writer = new BinaryWriter(64);
+        writer.writeByte(FORMAT_VERSION);
+        writer.writeByte(request.getType().getCode());
+        writer.writeLong(request.getRequestId());
+        writer.writeLong(request.getKnownVersion());
+        writeValue(writer, request.getData());
+        return writer.toByteArray();
+    }
+
+    /**
+     * @throws MalformedRequestException Если заголовок прочитан, а код операции или данные некорректны.
+     * @throws IOException Если некорректен заголовок.
+     */
+    @Override
+    public Request decodeRequest(byte[] payload) throws IOException {
+        BinaryReader reader = new BinaryReader(payload);
+        checkVersion(reader);
+        byte code = (byte) reader.readByte();
+        long requestId = reader.readLong();
+        long knownVersion = reader.readLong();
+        OperationType type = OperationType.fromCode(code);
+        if (type == null) {
+            throw new MalformedRequestException("Неизвестный код операции: " + code, requestId, null);
+        }
+        Object data;
+        try {
+            data = readValue(reader, 0);
+        } catch (IOException | RuntimeException e) {
+            throw new MalformedRequestException("Некорректные данные запроса: " + e.getMessage(), requestId, e);
+        }
+        Request request = new Request(type, data);
+        request.setRequestId(requestId);
+        request.setKnownVersion(knownVersion);
+        return request;
+    }
+
+    @Override
+    public byte[] encodeResponse(Response response) throws IOException {
+        BinaryWriter writer = new BinaryWriter(128);
+        writer.writeByte(FORMAT_VERSION);
+        writer.writeByte((response.isSuccess() ? FLAG_SUCCESS : 0) | (response.isPartial() ? FLAG_PARTIAL : 0)
+                | (response.isNotModified() ? FLAG_NOT_MODIFIED : 0) | (response.getVersion() != 0 ? FLAG_VERSIONED : 0));
+        writer.writeLong(response.getRequestId());
+        if (response.getVersion() != 0) {
+            writer.writeLong(response.getVersion());
+        }
+        writer.writeString(response.getMessage());
+        writeValue(writer, response.getData());
+        return writer.toByteArray();
+    }
+
+    @Override
+    public Response decodeResponse(byte[] payload) throws IOException {
+        BinaryReader reader = new BinaryReader(payload);
+        checkVersion(reader);
+        int flags = reader.readByte();
+        long requestId = reader.readLong();
+        long version = (flags & FLAG_VERSIONED) != 0 ? reader.readLong() : 0;
+        String message = reader.readString();
+        Object data;
+        try {
+            data = readValue(reader, 0);
+        } catch (RuntimeException e) {
+            throw new IOException("Некорректные данные ответа: " + e.getMessage(), e);
+        }
+        Response response = new Response((flags & FLAG_SUCCESS) != 0, message, data);
+        response.setRequestId(requestId);
+        response.setPartial((flags & FLAG_PARTIAL) != 0);
+        response.setVersion(version);
+        response.setNotModified((flags & FLAG_NOT_MODIFIED) != 0);
+        return response;
+    }
+
+    private static void checkVersion(BinaryReader reader) throws IOException {
+        int version = reader.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Неподдерживаемая версия бинарного формата: " + version);
+        }
+    }
+
+    private static void writeValue(BinaryWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.writeByte(TAG_NULL);
+        } else if (value instanceof Integer) {
+            writer.writeByte(TAG_INT);
+            writer.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            writer.writeByte(TAG_LONG);
+            writer.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            writer.writeByte(TAG_BOOLEAN);
+            writer.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            writer.writeByte(TAG_STRING);
+            writer.writeString((String) value);
+        } else if (value instanceof LocalDate) {
+            writer.writeByte(TAG_DATE);
+            writer.writeDate((LocalDate) value);
+        } else if (value instanceof LocalTime) {
+            writer.writeByte(TAG_TIME);
+            writer.writeTime((LocalTime) value);
+        } else if (value instanceof Patient) {
+            writer.writeByte(TAG_PATIENT);
+            writePatient(writer, (Patient) value);
+        } else if (value instanceof Doctor) {
+            writer.writeByte(TAG_DOCTOR);
+            writeDoctor(writer, (Doctor) value);
+        } else if (value instanceof Appointment) {
+            writer.writeByte(TAG_APPOINTMENT);
+            writeAppointment(writer, (Appointment) value);
+        } else if (value instanceof FreeSlots) {
+            FreeSlots slots = (FreeSlots) value;
+            writer.writeByte(TAG_FREE_SLOTS);
+            writer.writeInt(slots.getDoctorId());
+            writer.writeDate(slots.getDate());
+            writer.writeLong(slots.getFreeMask());
+        } else if (value instanceof SlotChange) {
+            SlotChange change = (SlotChange) value;
+            writer.writeByte(TAG_SLOT_CHANGE);
+            writer.writeInt(change.getDoctorId());
+            writer.writeDate(change.getDate());
+            writer.writeLong(change.getOccupiedMask());
+        } else if (value instanceof FreeSlotsQuery) {
+            FreeSlotsQuery query = (FreeSlotsQuery) value;
+            writer.writeByte(TAG_FREE_SLOTS_QUERY);
+            writer.writeInt(query.getDoctorIds().size());
+            for (Integer doctorId : query.getDoctorIds()) {
+                writer.writeInt(doctorId);
+            }
+            writer.writeDate(query.getFromDate());
+            writer.writeDate(query.getToDate());
+        } else if (value instanceof PatientSearchQuery) {
+            PatientSearchQuery query = (PatientSearchQuery) value;
+            writer.writeByte(TAG_PATIENT_SEARCH_QUERY);
+            writer.writeString(query.getText());
+            writer.writeBoolean(query.isFuzzy());
+            writer.writeInt(query.getMaxEdits());
+        } else if (value instanceof PatientPageRequest) {
+            PatientPageRequest page = (PatientPageRequest) value;
+            writer.writeByte(TAG_PATIENT_PAGE_REQUEST);
+            writer.writeString(page.getQuery());
+            writer.writeInt(page.getAfterId());
+            writer.writeInt(page.getPageSize());
+            writer.writeBoolean(page.isStream());
+        } else if (value instanceof HistoryPageRequest) {
+            HistoryPageRequest page = (HistoryPageRequest) value;
+            writer.writeByte(TAG_HISTORY_PAGE_REQUEST);
+            writer.writeInt(page.getPatientId());
+            writer.writeDate(page.getBeforeDate());
+            writer.writeTime(page.getBeforeTime());
+            writer.writeInt(page.getBeforeId());
+            writer.writeInt(page.getLimit());
+        } else if (value instanceof ScheduleViewQuery) {
+            ScheduleViewQuery query = (ScheduleViewQuery) value;
+            writer.writeByte(TAG_SCHEDULE_VIEW_QUERY);
+            writer.writeDate(query.getDate());
+            writer.writeInt(query.getDoctorIds().size());
+            for (Integer doctorId : query.getDoctorIds()) {
+                writer.writeInt(doctorId);
+            }
+            writer.writeInt(query.getViewerPatientId());
+            writer.writeInt(query.getViewerDoctorId());
+        } else if (value instanceof ScheduleView) {
+            // Занятость чужих слотов — одна маска на врача, без записей и ID пациентов
+            ScheduleView view = (ScheduleView) value;
+            writer.writeByte(TAG_SCHEDULE_VIEW);
+            writer.writeDate(view.getDate());
+            writeValue(writer, view.getDoctors());
+            for (long mask : view.getOccupiedMasks()) {
+                writer.writeLong(mask);
+            }
+            for (long mask : view.getWorkingMasks()) {
+                writer.writeLong(mask);
+            }
+            writeValue(writer, view.getAppointments());
+            writeValue(writer, view.getPatients());
+        } else if (value instanceof EarliestSlotsQuery) {
+            EarliestSlotsQuery query = (EarliestSlotsQuery) value;
+            writer.writeByte(TAG_EARLIEST_SLOTS_QUERY);
+            writer.writeString(query.getSpecialty());
+            writer.writeDate(query.getFromDate());
+            writer.writeInt(query.getHorizonDays());
+            writer.writeInt(query.getLimit());
+        } else if (value instanceof WorkingHours) {
+            WorkingHours hours = (WorkingHours) value;
+            writer.writeByte(TAG_WORKING_HOURS);
+            writer.writeInt(hours.getDoctorId());
+            writer.writeInt(hours.getDayOfWeek() != null ? hours.getDayOfWeek().getValue() : 0);
+            writer.writeDate(hours.getDate());
+            writer.writeTime(hours.getStartTime());
+            writer.writeTime(hours.getEndTime());
+        } else if (value instanceof ScheduleRange) {
+            // Маски по дням подряд: неделя на 40 врачей — около 2 КБ
+            ScheduleRange range = (ScheduleRange) value;
+            writer.writeByte(TAG_SCHEDULE_RANGE);
+            writer.writeDate(range.getFromDate());
+            writer.writeDate(range.getToDate());
+            writeValue(writer, range.getDoctors());
+            writer.writeInt(range.getOccupiedMasks().length);
+            for (long mask : range.getOccupiedMasks()) {
+                writer.writeLong(mask);
+            }
+            for (long mask : range.getWorkingMasks()) {
+                writer.writeLong(mask);
+            }
+        } else if (value instanceof ChangeSet) {
+            ChangeSet changes = (ChangeSet) value;
+            writer.writeByte(TAG_CHANGE_SET);
+            writer.writeLong(changes.getVersion());
+            writer.writeBoolean(changes.isResyncRequired());
+            writeValue(writer, changes.getPatients());
+            writeValue(writer, changes.getDoctors());
+            writeValue(writer, changes.getAppointments());
+            writeInts(writer, changes.getDeletedPatientIds());
+            writeInts(writer, changes.getDeletedAppointmentIds());
+        } else if (value instanceof Page) {
+            Page<?> page = (Page<?>) value;
+            writer.writeByte(TAG_PAGE);
+            writer.writeBoolean(page.hasMore());
+            writeValue(writer, page.getItems());
+        } else if (value instanceof BatchRequest) {
+            BatchRequest batch = (BatchRequest) value;
+            writer.writeByte(TAG_BATCH);
+            writer.writeBoolean(batch.isTransactional());
+            writer.writeInt(batch.getRequests().size());
+            for (Request request : batch.getRequests()) {
+                writer.writeByte(request.getType().getCode());
+                writeValue(writer, request.getData());
+            }
+        } else if (value instanceof Response) {
+            // Вложенный ответ (элемент ответа на BATCH): без версии и идентификатора запроса
+            Response response = (Response) value;
+            writer.writeByte(TAG_RESPONSE);
+            writer.writeBoolean(response.isSuccess());
+            writer.writeString(response.getMessage());
+            writeValue(writer, response.getData());
+        } else if (value instanceof List) {
+            writeList(writer, (List<?>) value);
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            writer.writeByte(TAG_OBJECT_ARRAY);
+            writer.writeInt(array.length);
+            for (Object element : array) {
+                writeValue(writer, element);
+            }
+        } else {
+            throw new IOException("Тип данных не поддерживается протоколом: " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Списки однородных моделей кодируются без тега у каждого элемента.
+     */
+    private static void writeList(BinaryWriter writer, List<?> list) throws IOException {
+        Class<?> elementType = commonModelType(list);
+        if (elementType == Patient.class) {
+            writer.writeByte(TAG_PATIENT_LIST);
+            writer.writeInt(list.size());
+            for (Object element : list) {
+                writePatient(writer, (Patient) element);
+            }
+        } else if (elementType == Doctor.class) {
+            writer.writeByte(TAG_DOCTOR_LIST);
+            writer.writeInt(list.size());
+            for (Object element : list) {
+                writeDoctor(writer, (Doctor) element);
+            }
+        } else if (elementType == Appointment.class) {
+            writer.writeByte(TAG_APPOINTMENT_LIST);
+            writer.writeInt(list.size());
+            for (Object element : list) {
+                writeAppointment(writer, (Appointment) element);
+            }
+        } else if (elementType == FreeSlots.class) {
+            // Маска слотов — несколько байт на врача и день вместо списка записей
+            writer.writeByte(TAG_FREE_SLOTS_LIST);
+            writer.writeInt(list.size());
+            for (Object element : list) {
+                FreeSlots slots = (FreeSlots) element;
+                writer.writeInt(slots.getDoctorId());
+                writer.writeDate(slots.getDate());
+                writer.writeLong(slots.getFreeMask());
+            }
+        } else if (elementType == SlotChange.class) {
+            writer.writeByte(TAG_SLOT_CHANGE_LIST);
+            writer.writeInt(list.size());
+            for (Object element : list) {
+                SlotChange change = (SlotChange) element;
+                writer.writeInt(change.getDoctorId());
+                writer.writeDate(change.getDate());
+                writer.writeLong(change.getOccupiedMask());
+            }
+        } else {
+            writer.writeByte(TAG_LIST);
+            writer.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(writer, element);
+            }
+        }
+    }
+
+    private static Class<?> commonModelType(List<?> list) {
+        if (list.isEmpty() || list.get(0) == null) {
+            return null;
+        }
+        Class<?> type = list.get(0).getClass();
+        if (type != Patient.class && type != Doctor.class && type != Appointment.class && type != FreeSlots.class
+                && type != SlotChange.class) {
+            return null;
+        }
+        for (Object element : list) {
+            if (element == null || element.getClass() != type) {
+                return null;
+            }
+        }
+        return type;
+    }
+
+    /**
+     * @param depth Глубина вложенности читаемого значения: вложенные списки, массивы, пакеты и ответы
+     *              читаются рекурсивно, и без ограничения кадр из вложенных списков исчерпал бы стек потока.
+     */
+    private static Object readValue(BinaryReader reader, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Превышена допустимая вложенность данных: " + MAX_DEPTH);
+        }
+        byte tag = (byte) reader.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_INT:
+                return reader.readInt();
+            case TAG_LONG:
+                return reader.readLong();
+            case TAG_BOOLEAN:
+                return reader.readBoolean();
+            case TAG_STRING:
+                return reader.readString();
+            case TAG_DATE:
+                return reader.readDate();
+            case TAG_TIME:
+                return reader.readTime();
+            case TAG_PATIENT:
+                return readPatient(reader);
+            case TAG_DOCTOR:
+                return readDoctor(reader);
+            case TAG_APPOINTMENT:
+                return readAppointment(reader);
+            case TAG_LIST: {
+                int count = reader.readCount();
+                List<Object> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    list.add(readValue(reader, depth + 1));
+                }
+                return list;
+            }
+            case TAG_OBJECT_ARRAY: {
+                Object[] array = new Object[reader.readCount()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readValue(reader, depth + 1);
+                }
+                return array;
+            }
+            case TAG_PATIENT_LIST: {
+                int count = reader.readCount();
+                List<Patient> patients = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    patients.add(readPatient(reader));
+                }
+                return patients;
+            }
+            case TAG_DOCTOR_LIST: {
+                int count = reader.readCount();
+                List<Doctor> doctors = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    doctors.add(readDoctor(reader));
+                }
+                return doctors;
+            }
+            case TAG_APPOINTMENT_LIST: {
+                int count = reader.readCount();
+                List<Appointment> appointments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    appointments.add(readAppointment(reader));
+                }
+                return appointments;
+            }
+            case TAG_FREE_SLOTS_LIST: {
+                int count = reader.readCount();
+                List<FreeSlots> slots = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    slots.add(new FreeSlots(reader.readInt(), reader.readDate(), reader.readLong()));
+                }
+                return slots;
+            }
+            case TAG_SLOT_CHANGE_LIST: {
+                int count = reader.readCount();
+                List<SlotChange> changes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    changes.add(new SlotChange(reader.readInt(), reader.readDate(), reader.readLong()));
+                }
+                return changes;
+            }
+            case TAG_FREE_SLOTS:
+                return new FreeSlots(reader.readInt(), reader.readDate(), reader.readLong());
+            case TAG_SLOT_CHANGE:
+                return new SlotChange(reader.readInt(), reader.readDate(), reader.readLong());
+            case TAG_FREE_SLOTS_QUERY: {
+                int count = reader.readCount();
+                List<Integer> doctorIds = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    doctorIds.add(reader.readInt());
+                }
+                return new FreeSlotsQuery(doctorIds, reader.readDate(), reader.readDate());
+            }
+            case TAG_PATIENT_SEARCH_QUERY:
+                return new PatientSearchQuery(reader.readString(), reader.readBoolean(), reader.readInt());
+            case TAG_PATIENT_PAGE_REQUEST:
+                return new PatientPageRequest(reader.readString(), reader.readInt(), reader.readInt(), reader.readBoolean());
+            case TAG_HISTORY_PAGE_REQUEST:
+                return new HistoryPageRequest(reader.readInt(), reader.readDate(), reader.readTime(), reader.readInt(), reader.readInt());
+            case TAG_SCHEDULE_VIEW_QUERY: {
+                LocalDate date = reader.readDate();
+                int count = reader.readCount();
+                List<Integer> doctorIds = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    doctorIds.add(reader.readInt());
+                }
+                return new ScheduleViewQuery(date, doctorIds, reader.readInt(), reader.readInt());
+            }
+            case TAG_SCHEDULE_VIEW: {
+                LocalDate date = reader.readDate();
+                List<Doctor> doctors = readList(reader, Doctor.class, depth + 1);
+                long[] masks = readLongs(reader, doctors.size());
+                long[] working = readLongs(reader, doctors.size());
+                List<Appointment> appointments = readList(reader, Appointment.class, depth + 1);
+                List<Patient> patients = readList(reader, Patient.class, depth + 1);
+                return new ScheduleView(date, doctors, masks, working, appointments, patients);
+            }
+            case TAG_EARLIEST_SLOTS_QUERY:
+                return new EarliestSlotsQuery(reader.readString(), reader.readDate(), reader.readInt(), reader.readInt());
+            case TAG_WORKING_HOURS: {
+                int doctorId = reader.readInt();
+                int dayOfWeek = reader.readInt();
+                if (dayOfWeek < 0 || dayOfWeek > 7) {
+                    throw new IOException("Некорректный день недели: " + dayOfWeek);
+                }
+                return new WorkingHours(doctorId, dayOfWeek > 0 ? DayOfWeek.of(dayOfWeek) : null,
+                        reader.readDate(), reader.readTime(), reader.readTime());
+            }
+            case TAG_SCHEDULE_RANGE: {
+                LocalDate fromDate = reader.readDate();
+                LocalDate toDate = reader.readDate();
+                if (fromDate == null || toDate == null || toDate.isBefore(fromDate)) {
+                    throw new IOException("Некорректный период расписания: " + fromDate + " – " + toDate);
+                }
+                List<Doctor> doctors = readList(reader, Doctor.class, depth + 1);
+                int count = reader.readCount();
+                if ((long) ScheduleRange.dayCount(fromDate, toDate) * doctors.size() != count) {
+                    throw new IOException("Некорректный размер расписания за период: " + count);
+                }
+                long[] masks = readLongs(reader, count);
+                return new ScheduleRange(fromDate, toDate, doctors, masks, readLongs(reader, count));
+            }
+            case TAG_CHANGE_SET: {
+                long version = reader.readLong();
+                boolean resyncRequired = reader.readBoolean();
+                List<Patient> patients = readList(reader, Patient.class, depth + 1);
+                List<Doctor> doctors = readList(reader, Doctor.class, depth + 1);
+                List<Appointment> appointments = readList(reader, Appointment.class, depth + 1);
+                return new ChangeSet(version, resyncRequired, patients, doctors, appointments,
+                        readInts(reader), readInts(reader));
+            }
+            case TAG_PAGE: {
+                boolean hasMore = reader.readBoolean();
+                return new Page<>(readList(reader, Object.class, depth + 1), hasMore);
+            }
+            case TAG_BATCH: {
+                boolean transactional = reader.readBoolean();
+                int count = reader.readCount();
+                List<Request> requests = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    byte code = (byte) reader.readByte();
+                    OperationType type = OperationType.fromCode(code);
+                    if (type == null) {
+                        throw new IOException("Неизвестный код операции в пакете: " + code);
+                    }
+                    requests.add(new Request(type, readValue(reader, depth + 1)));
+                }
+                return new BatchRequest(requests, transactional);
+            }
+            case TAG_RESPONSE: {
+                boolean success = reader.readBoolean();
+                String message = reader.readString();
+                return new Response(success, message, readValue(reader, depth + 1));
+            }
+            default:
+                throw new IOException("Неизвестный тег значения: " + tag);
+        }
+    }
+
+    /**
+     * Читает вложенный список, элементы которого должны иметь указанный тип: значение
+     * другого типа — ошибка формата, а не ClassCastException при использовании списка.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> readList(BinaryReader reader, Class<T> elementType, int depth) throws IOException {
+        Object value = readValue(reader, depth);
+        if (!(value instanceof List)) {
+            throw new IOException("Ожидался список, получено: " + (value == null ? "null" : value.getClass().getSimpleName()));
+        }
+        for (Object element : (List<?>) value) {
+            if (!elementType.isInstance(element)) {
+                throw new IOException("Некорректный элемент списка: " + element);
+            }
+        }
+        return (List<T>) value;
+    }
+
+    private static void writeInts(BinaryWriter writer, List<Integer> values) {
+        writer.writeInt(values.size());
+        for (int value : values) {
+            writer.writeInt(value);
+        }
+    }
+
+    private static List<Integer> readInts(BinaryReader reader) throws IOException {
+        int count = reader.readCount();
+        List<Integer> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(reader.readInt());
+        }
+        return values;
+    }
+
+    private static long[] readLongs(BinaryReader reader, int count) throws IOException {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = reader.readLong();
+        }
+        return values;
+    }
+
+    private static void writePatient(BinaryWriter writer, Patient patient) {
+        writer.writeInt(patient.getId());
+        writer.writeString(patient.getLastName());
+        writer.writeString(patient.getFirstName());
+        writer.writeString(patient.getMiddleName());
+        writer.writeDate(patient.getDateOfBirth());
+        writer.writeString(patient.getAddress());
+        writer.writeString(patient.getPhone());
+        writer.writeString(patient.getPolicyNumber());
+    }
+
+    private static Patient readPatient(BinaryReader reader) throws IOException {
+        return new Patient(reader.readInt(), reader.readString(), reader.readString(), reader.readString(),
+                reader.readDate(), reader.readString(), reader.readString(), reader.readString());
+    }
+
+    private static void writeDoctor(BinaryWriter writer, Doctor doctor) {
+        writer.writeInt(doctor.getId());
+        writer.writeString(doctor.getLastName());
+        writer.writeString(doctor.getFirstName());
+        writer.writeString(doctor.getMiddleName());
+        writer.writeString(doctor.getSpecialty());
+        writer.writeString(doctor.getOfficeNumber());
+    }
+
+    private static Doctor readDoctor(BinaryReader reader) throws IOException {
+        return new Doctor(reader.readInt(), reader.readString(), reader.readString(), reader.readString(),
+                reader.readString(), reader.readString());
+    }
+
+    private static void writeAppointment(BinaryWriter writer, Appointment appointment) {
+        writer.writeInt(appointment.getId());
+        writer.writeInt(appointment.getPatientId());
+        writer.writeInt(appointment.getDoctorId());
+        writer.writeDate(appointment.getAppointmentDate());
+        writer.writeTime(appointment.getAppointmentTime());
+        writer.writeString(appointment.getStatus());
+    }
+
+    private static Appointment readAppointment(BinaryReader reader) throws IOException {
+        return new Appointment(reader.readInt(), reader.readInt(), reader.readInt(), reader.readDate(),
+                reader.readTime(), reader.readString());
+    }
+}
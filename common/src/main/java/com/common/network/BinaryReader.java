@@ -0,0 +1,107 @@
+package com.common.network;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Чтение примитивов бинарного протокола из массива байтов (формат см. BinaryWriter).
+ * Поврежденные данные (в том числе дата или время вне допустимого диапазона) приводят к IOException.
+ */
+class BinaryReader {
+    private static final long MIN_EPOCH_DAY = LocalDate.MIN.toEpochDay();
+    private static final long MAX_EPOCH_DAY = LocalDate.MAX.toEpochDay();
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final byte[] buffer;
+    private int position;
+
+    BinaryReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    int readByte() throws IOException {
+        if (position >= buffer.length) {
+            throw new IOException("Неожиданный конец сообщения.");
+        }
+        return buffer[position++];
+    }
+
+    boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    int readInt() throws IOException {
+        long raw = readUnsignedVarLong();
+        return (int) (raw >>> 1) ^ -(int) (raw & 1);
+    }
+
+    long readLong() throws IOException {
+        long raw = readUnsignedVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    private long readUnsignedVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Некорректное число в сообщении.");
+    }
+
+    String readString() throws IOException {
+        int length = readInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        checkRemaining(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    LocalDate readDate() throws IOException {
+        if (!readBoolean()) {
+            return null;
+        }
+        long epochDay = readLong();
+        if (epochDay < MIN_EPOCH_DAY || epochDay > MAX_EPOCH_DAY) {
+            throw new IOException("Некорректная дата в сообщении: " + epochDay);
+        }
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    LocalTime readTime() throws IOException {
+        int seconds = readInt();
+        if (seconds == -1) {
+            return null;
+        }
+        if (seconds < 0 || seconds >= SECONDS_PER_DAY) {
+            throw new IOException("Некорректное время в сообщении: " + seconds);
+        }
+        return LocalTime.ofSecondOfDay(seconds);
+    }
+
+    /**
+     * Проверяет длину коллекции, прочитанную из сообщения, чтобы поврежденные данные
+     * не приводили к выделению огромных массивов.
+     */
+    int readCount() throws IOException {
+        int count = readInt();
+        if (count < 0 || count > buffer.length - position) {
+            throw new IOException("Некорректный размер коллекции: " + count);
+        }
+        return count;
+    }
+
+    private void checkRemaining(int length) throws IOException {
+        if (length < 0 || length > buffer.length - position) {
+            throw new IOException("Неожиданный конец сообщения.");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.common.network;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Запись примитивов бинарного протокола в расширяемый массив байтов.
+ * Целые числа записываются в формате varint (zigzag), строки — в UTF-8 с длиной.
+ */
+class BinaryWriter {
+    private byte[] buffer;
+    private int position;
+
+    BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    void writeInt(int value) {
+        writeUnsignedVarLong((value << 1) ^ (value >> 31));
+    }
+
+    void writeLong(long value) {
+        writeUnsignedVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeUnsignedVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Записывает строку; null кодируется длиной 0, остальные строки — длиной + 1.
+     */
+    void writeString(String value) {
+        if (value == null) {
+            writeInt(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length + 1);
+        writeBytes(bytes);
+    }
+
+    void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Записывает дату как номер дня от эпохи; null кодируется отдельным флагом.
+     */
+    void writeDate(LocalDate date) {
+        writeBoolean(date != null);
+        if (date != null) {
+            writeLong(date.toEpochDay());
+        }
+    }
+
+    /**
+     * Записывает время как номер секунды в сутках; null кодируется значением -1.
+     */
+    void writeTime(LocalTime time) {
+        writeInt(time != null ? time.toSecondOfDay() : -1);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+}
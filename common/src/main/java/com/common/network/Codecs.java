@@ -0,0 +1,49 @@
+package com.common.network;
+
+/**
+ * Реестр кодеков сообщений и их идентификаторов, согласуемых при подключении.
+ */
+public final class Codecs {
+    public static final byte JAVA_SERIALIZATION = 1;
+    public static final byte BINARY = 2;
+
+    private Codecs() {
+    }
+
+    /**
+     * @param id Идентификатор кодека.
+     * @return true, если кодек поддерживается этой версией протокола.
+     */
+    public static boolean isSupported(byte id) {
+        return id == JAVA_SERIALIZATION || id == BINARY;
+    }
+
+    /**
+     * Создает кодек по идентификатору.
+     * @param id Идентификатор кодека.
+     * @return Экземпляр кодека.
+     * @throws IllegalArgumentException Если кодек не поддерживается.
+     */
+    public static MessageCodec create(byte id) {
+        switch (id) {
+            case JAVA_SERIALIZATION:
+                return new JavaSerializationCodec();
+            case BINARY:
+                return new BinaryCodec();
+            default:
+                throw new IllegalArgumentException("Неизвестный кодек: " + id);
+        }
+    }
+
+    /**
+     * Разбирает название кодека из настроек ("binary" или "java").
+     * @param name Название кодека (может быть null).
+     * @return Идентификатор кодека; по умолчанию бинарный.
+     */
+    public static byte fromName(String name) {
+        if (name != null && name.trim().equalsIgnoreCase("java")) {
+            return JAVA_SERIALIZATION;
+        }
+        return BINARY;
+    }
+}
@@ -0,0 +1,52 @@
+package com.common.network;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Кадрирование сообщений в потоке: каждый кадр состоит из длины (4 байта, big-endian) и содержимого.
+ */
+public final class Frames {
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024; // Защита от некорректной длины кадра
+
+    private Frames() {
+    }
+
+    /**
+     * Записывает кадр в поток. Сброс буфера (flush) выполняет вызывающий код.
+     * @param out Поток вывода.
+     * @param payload Содержимое кадра.
+     * @throws IOException Если произошла ошибка ввода/вывода.
+     */
+    public static void write(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Читает очередной кадр из потока, блокируясь до его полного получения.
+     * @param in Поток ввода.
+     * @return Содержимое кадра.
+     * @throws IOException Если соединение закрыто или длина кадра некорректна.
+     */
+    public static byte[] read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        checkLength(length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * Проверяет длину кадра, прочитанную из заголовка.
+     * @param length Длина содержимого кадра.
+     * @throws IOException Если длина выходит за допустимые пределы.
+     */
+    public static void checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Недопустимая длина кадра: " + length);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.common.network;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Согласование протокола при подключении.
+ * Клиент отправляет приветствие: сигнатура (4 байта), версия протокола, желаемый кодек.
+ * Сервер отвечает версией протокола и выбранным кодеком, после чего обе стороны обмениваются кадрами.
+ * Версия протокола совпадает с версией бинарного формата и меняется вместе с ним: клиент
+ * с другим форматом кадров получает отказ при подключении, а не ошибки декодирования ответов.
+ */
+public final class Handshake {
+    public static final int MAGIC = 0x50434C52; // "PCLR"
+    public static final byte PROTOCOL_VERSION = BinaryCodec.FORMAT_VERSION;
+    public static final int HELLO_SIZE = 6;
+    public static final int REPLY_SIZE = 2;
+
+    private Handshake() {
+    }
+
+    /**
+     * Отправляет приветствие клиента.
+     * @param out Поток вывода.
+     * @param codecId Желаемый кодек.
+     * @throws IOException Если произошла ошибка ввода/вывода.
+     */
+    public static void writeHello(DataOutputStream out, byte codecId) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(PROTOCOL_VERSION);
+        out.writeByte(codecId);
+        out.flush();
+    }
+
+    /**
+     * Читает приветствие клиента на стороне сервера.
+     * @param in Поток ввода.
+     * @return Кодек, запрошенный клиентом.
+     * @throws IOException Если приветствие некорректно.
+     */
+    public static byte readHello(DataInputStream in) throws IOException {
+        byte[] hello = new byte[HELLO_SIZE];
+        in.readFully(hello);
+        return parseHello(hello);
+    }
+
+    /**
+     * Разбирает приветствие клиента.
+     * @param hello Байты приветствия (HELLO_SIZE байт).
+     * @return Кодек, запрошенный клиентом.
+     * @throws IOException Если сигнатура или версия не совпадают.
+     */
+    public static byte parseHello(byte[] hello) throws IOException {
+        int magic = ((hello[0] & 0xFF) << 24) | ((hello[1] & 0xFF) << 16) | ((hello[2] & 0xFF) << 8) | (hello[3] & 0xFF);
+        if (magic != MAGIC) {
+            throw new IOException("Неизвестный протокол клиента.");
+        }
+        if (hello[4] != PROTOCOL_VERSION) {
+            throw new IOException("Неподдерживаемая версия протокола: " + hello[4]);
+        }
+        return hello[5];
+    }
+
+    /**
+     * Выбирает кодек для соединения: запрошенный, если он поддерживается, иначе сериализацию Java.
+     * @param requestedCodec Кодек, запрошенный клиентом.
+     * @return Выбранный кодек.
+     */
+    public static byte negotiate(byte requestedCodec) {
+        return Codecs.isSupported(requestedCodec) ? requestedCodec : Codecs.JAVA_SERIALIZATION;
+    }
+
+    /**
+     * Отправляет ответ сервера на приветствие.
+     * @param out Поток вывода.
+     * @param codecId Выбранный кодек.
+     * @throws IOException Если произошла ошибка ввода/вывода.
+     */
+    public static void writeReply(DataOutputStream out, byte codecId) throws IOException {
+        out.writeByte(PROTOCOL_VERSION);
+        out.writeByte(codecId);
+        out.flush();
+    }
+
+    /**
+     * Читает ответ сервера на стороне клиента.
+     * @param in Поток ввода.
+     * @return Кодек, выбранный сервером.
+     * @throws IOException Если ответ некорректен.
+     */
+    public static byte readReply(DataInputStream in) throws IOException {
+        byte version = in.readByte();
+        byte codecId = in.readByte();
+        if (version != PROTOCOL_VERSION || !Codecs.isSupported(codecId)) {
+            throw new IOException("Сервер выбрал неподдерживаемый протокол: версия " + version + ", кодек " + codecId);
+        }
+        return codecId;
+    }
+}
@@ -0,0 +1,77 @@
+package com.common.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Кодек на основе стандартной сериализации Java.
+ * Каждое сообщение сериализуется в отдельный кадр.
+ * Используется как запасной вариант, если бинарный кодек не согласован.
+ * Сообщение от другой стороны десериализуется только из классов протокола (модели, запросы
+ * и ответы, коллекции и дата/время JDK): класс не из списка отклоняется до создания объекта.
+ */
+public class JavaSerializationCodec implements MessageCodec {
+    private static final ObjectInputFilter ALLOWED_CLASSES = ObjectInputFilter.Config.createFilter(
+            "maxdepth=32;maxrefs=1000000;maxarray=1000000;"
+                    + "com.common.model.*;com.common.network.*;"
+                    + "java.lang.Object;java.lang.Number;java.lang.Integer;java.lang.Long;java.lang.Boolean;java.lang.Enum;"
+                    + "java.util.ArrayList;java.util.LinkedList;java.util.Collections$*;"
+                    + "java.util.ImmutableCollections$*;java.util.CollSer;"
+                    + "java.time.Ser;java.time.LocalDate;java.time.LocalTime;java.time.DayOfWeek;!*");
+
+    @Override
+    public byte getId() {
+        return Codecs.JAVA_SERIALIZATION;
+    }
+
+    @Override
+    public byte[] encodeRequest(Request request) throws IOException {
+        return serialize(request);
+    }
+
+    @Override
+    public Request decodeRequest(byte[] payload) throws IOException {
+        Request request = deserialize(payload, Request.class);
+        if (request.getType() == null) {
+            throw new MalformedRequestException("Не указан тип операции.", request.getRequestId(), null);
+        }
+        return request;
+    }
+
+    @Override
+    public byte[] encodeResponse(Response response) throws IOException {
+        return serialize(response);
+    }
+
+    @Override
+    public Response decodeResponse(byte[] payload) throws IOException {
+        return deserialize(payload, Response.class);
+    }
+
+    private static byte[] serialize(Object message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T deserialize(byte[] payload, Class<T> type) throws IOException {
+        Object message;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            in.setObjectInputFilter(ALLOWED_CLASSES);
+            message = in.readObject();
+        } catch (ClassNotFoundException | RuntimeException e) {
+            throw new IOException("Ошибка десериализации сообщения: " + e.getMessage(), e);
+        }
+        if (!type.isInstance(message)) {
+            throw new IOException("Ожидалось сообщение " + type.getSimpleName() + ", получено: "
+                    + (message == null ? "null" : message.getClass().getSimpleName()));
+        }
+        return type.cast(message);
+    }
+}
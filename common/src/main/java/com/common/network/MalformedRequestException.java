@@ -0,0 +1,23 @@
+package com.common.network;
+
+import java.io.IOException;
+
+/**
+ * Запрос с корректным заголовком, данные которого не удалось декодировать.
+ * Идентификатор запроса уже прочитан, поэтому сервер отвечает на такой запрос ошибкой,
+ * и клиент не ждет ответа до таймаута.
+ */
+public class MalformedRequestException extends IOException {
+    private static final long serialVersionUID = 1L; // Для сериализации
+
+    private final long requestId;
+
+    public MalformedRequestException(String message, long requestId, Throwable cause) {
+        super(message, cause);
+        this.requestId = requestId;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+}
@@ -0,0 +1,22 @@
+package com.common.network;
+
+import java.io.IOException;
+
+/**
+ * Кодек сообщений протокола: преобразует запросы и ответы в байты содержимого кадра и обратно.
+ */
+public interface MessageCodec {
+
+    /**
+     * @return Идентификатор кодека, согласуемый при подключении (см. Codecs).
+     */
+    byte getId();
+
+    byte[] encodeRequest(Request request) throws IOException;
+
+    Request decodeRequest(byte[] payload) throws IOException;
+
+    byte[] encodeResponse(Response response) throws IOException;
+
+    Response decodeResponse(byte[] payload) throws IOException;
+}
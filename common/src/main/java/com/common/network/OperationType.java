@@ -4,27 +4,86 @@ import java.io.Serializable;
 
 /**
  * Перечисление, определяющее типы операций, которые клиент может запросить у сервера.
+ * Каждая операция имеет постоянный однобайтовый код для бинарного протокола:
+ * коды новых операций добавляются в конец и никогда не переиспользуются.
  */
 public enum OperationType implements Serializable {
-    ADD_PATIENT,
-    GET_ALL_PATIENTS,
-    UPDATE_PATIENT,
-    DELETE_PATIENT,
-    SEARCH_PATIENTS,
+    ADD_PATIENT(1),
+    GET_ALL_PATIENTS(2),
+    UPDATE_PATIENT(3),
+    DELETE_PATIENT(4),
+    SEARCH_PATIENTS(5),
 
-    ADD_DOCTOR,
-    GET_ALL_DOCTORS,
-    GET_DOCTOR_DETAILS,
+    ADD_DOCTOR(6),
+    GET_ALL_DOCTORS(7),
+    GET_DOCTOR_DETAILS(8),
 
-    ADD_APPOINTMENT,
-    GET_APPOINTMENTS_BY_DOCTOR_DATE,
-    CANCEL_APPOINTMENT,
-    GET_PATIENT_HISTORY,
+    ADD_APPOINTMENT(9),
+    GET_APPOINTMENTS_BY_DOCTOR_DATE(10),
+    CANCEL_APPOINTMENT(11),
+    GET_PATIENT_HISTORY(12),
 
     // Операции для логина и расписания
-    LOGIN_PATIENT,
-    LOGIN_DOCTOR,
-    GET_SCHEDULE,
-    GET_PATIENT_DETAILS
+    LOGIN_PATIENT(13),
+    LOGIN_DOCTOR(14),
+    GET_SCHEDULE(15),
+    GET_PATIENT_DETAILS(16),
+
+    // Пакет подзапросов, выполняемых за один обмен с сервером
+    BATCH(17),
+
+    // Свободные слоты врачей за диапазон дат (битовые маски сетки SlotGrid)
+    GET_FREE_SLOTS(18),
+
+    // Расписание на день одним ответом: врачи, занятость слотов и записи смотрящего
+    GET_SCHEDULE_VIEW(19),
+
+    // Занятость слотов врачей за диапазон дат (неделя, месяц) одним ответом
+    GET_SCHEDULE_RANGE(20),
+
+    // Ближайшие свободные слоты врачей одной специальности
+    FIND_EARLIEST_SLOTS(21),
+
+    // Часы приема врачей: недельные шаблоны и исключения на даты
+    SET_WORKING_HOURS(22),
+    DELETE_WORKING_HOURS(23),
+    GET_WORKING_HOURS(24),
+
+    // Подписка на изменения занятости слотов: сервер присылает события частичными ответами
+    SUBSCRIBE_SCHEDULE(25),
+    UNSUBSCRIBE_SCHEDULE(26),
+
+    // Строки пациентов, врачей и записей, изменившиеся после версии клиента
+    GET_CHANGES_SINCE(27),
+
+    // Отмена запроса, ответ на который клиенту больше не нужен (данные — ID запроса)
+    CANCEL_REQUEST(28);
+
+    private static final OperationType[] BY_CODE = new OperationType[256];
+
+    static {
+        for (OperationType type : values()) {
+            BY_CODE[type.code & 0xFF] = type;
+        }
+    }
+
+    private final byte code;
+
+    OperationType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * Возвращает операцию по ее коду в бинарном протоколе.
+     * @param code Код операции.
+     * @return Тип операции или null, если код неизвестен.
+     */
+    public static OperationType fromCode(byte code) {
+        return BY_CODE[code & 0xFF];
+    }
 }
 
@@ -5,18 +5,32 @@ import java.io.Serializable;
 /**
  * Объект запроса, отправляемый от клиента к серверу.
  * Содержит тип операции и данные, необходимые для выполнения этой операции.
+ * Идентификатор запроса позволяет держать несколько запросов в полете на одном соединении:
+ * сервер возвращает его в ответе, и ответы могут приходить в любом порядке.
+ * Для списков с версией (GET_ALL_DOCTORS, GET_SCHEDULE, GET_APPOINTMENTS_BY_DOCTOR_DATE) клиент
+ * может указать версию уже полученного списка: если список не изменился, сервер ответит NOT_MODIFIED.
  */
 public class Request implements Serializable {
     private static final long serialVersionUID = 1L; // Для сериализации
 
+    private long requestId; // Назначается клиентом при отправке
     private OperationType type;
     private Object data; // Данные, связанные с запросом (например, объект Patient, ID, строка поиска)
+    private long knownVersion; // Версия данных, уже полученных клиентом (0 — данных нет)
 
     public Request(OperationType type, Object data) {
         this.type = type;
         this.data = data;
     }
 
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     public OperationType getType() {
         return type;
     }
@@ -25,10 +39,19 @@ public class Request implements Serializable {
         return data;
     }
 
+    public long getKnownVersion() {
+        return knownVersion;
+    }
+
+    public void setKnownVersion(long knownVersion) {
+        this.knownVersion = knownVersion;
+    }
+
     @Override
     public String toString() {
         return "Запрос{" +
-                "тип=" + type +
+                "id=" + requestId +
+                ", тип=" + type +
                 ", данные=" + data +
                 '}';
     }
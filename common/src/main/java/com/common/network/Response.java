@@ -5,13 +5,21 @@ import java.io.Serializable;
 /**
  * Объект ответа, отправляемый от сервера клиенту.
  * Содержит статус операции (успех/неудача) и результат (если применимо).
+ * На потоковый запрос сервер отправляет несколько частичных ответов (partial) с тем же
+ * идентификатором запроса и завершает поток одним обычным ответом.
+ * Ответ на запрос списка с версией содержит версию списка; если клиент уже получил эту версию,
+ * сервер отправляет ответ NOT_MODIFIED без данных, и клиент использует сохраненный список.
  */
 public class Response implements Serializable {
     private static final long serialVersionUID = 1L; // Для сериализации
 
+    private long requestId; // Идентификатор запроса, на который дан ответ
     private boolean success;
     private String message; // Сообщение об успехе или ошибке
     private Object data; // Результат операции (например, список пациентов, один пациент)
+    private boolean partial; // Часть потокового ответа; за ней последуют другие ответы на тот же запрос
+    private long version; // Версия данных ответа (0 — данные без версии)
+    private boolean notModified; // Данные не изменились с версии, указанной в запросе
 
     public Response(boolean success, String message, Object data) {
         this.success = success;
@@ -23,6 +31,25 @@ public class Response implements Serializable {
         this(success, message, null);
     }
 
+    /**
+     * Ответ NOT_MODIFIED: данные с версией, указанной в запросе, не изменились.
+     * @param version Текущая версия данных.
+     */
+    public static Response notModified(long version) {
+        Response response = new Response(true, "Данные не изменились.");
+        response.setVersion(version);
+        response.setNotModified(true);
+        return response;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     public boolean isSuccess() {
         return success;
     }
@@ -35,10 +62,38 @@ public class Response implements Serializable {
         return data;
     }
 
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    public void setNotModified(boolean notModified) {
+        this.notModified = notModified;
+    }
+
     @Override
     public String toString() {
         return "Ответ{" +
-                "успех=" + success +
+                "id запроса=" + requestId +
+                ", успех=" + success +
+                (partial ? ", частичный" : "") +
+                (version != 0 ? ", версия=" + version : "") +
+                (notModified ? ", не изменились" : "") +
                 ", сообщение='" + message + '\'' +
                 ", данные=" + data +
                 '}';
@@ -0,0 +1,51 @@
+package com.server;
+
+import com.common.model.Appointment;
+
+/**
+ * Результат попытки записи на прием.
+ */
+public class BookingResult {
+
+    public enum Status {
+        BOOKED,     // Запись создана
+        SLOT_TAKEN, // Слот уже занят действующей записью
+        OUTSIDE_WORKING_HOURS, // Врач не принимает в это время
+        FAILED      // Ошибка базы данных
+    }
+
+    private final Status status;
+    private final Appointment appointment;
+
+    private BookingResult(Status status, Appointment appointment) {
+        this.status = status;
+        this.appointment = appointment;
+    }
+
+    public static BookingResult booked(Appointment appointment) {
+        return new BookingResult(Status.BOOKED, appointment);
+    }
+
+    public static BookingResult slotTaken() {
+        return new BookingResult(Status.SLOT_TAKEN, null);
+    }
+
+    public static BookingResult outsideWorkingHours() {
+        return new BookingResult(Status.OUTSIDE_WORKING_HOURS, null);
+    }
+
+    public static BookingResult failed() {
+        return new BookingResult(Status.FAILED, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Созданная запись с присвоенным ID или null, если запись не создана.
+     */
+    public Appointment getAppointment() {
+        return appointment;
+    }
+}
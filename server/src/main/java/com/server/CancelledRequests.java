@@ -0,0 +1,30 @@
+package com.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Идентификаторы запросов одного соединения, отмененных клиентом (CANCEL_REQUEST).
+ * Запросы соединения выполняются параллельно, поэтому отмена может прийти и раньше, чем
+ * запрос начнет выполняться, и позже, когда он уже выполнен; хранятся только последние
+ * MAX_TRACKED отмен, чтобы отмены выполненных запросов не накапливались.
+ */
+class CancelledRequests {
+    private static final int MAX_TRACKED = 256;
+
+    private final Set<Long> ids = new LinkedHashSet<>();
+
+    synchronized void cancel(long requestId) {
+        ids.add(requestId);
+        if (ids.size() > MAX_TRACKED) {
+            Iterator<Long> oldest = ids.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    synchronized boolean isCancelled(long requestId) {
+        return ids.contains(requestId);
+    }
+}
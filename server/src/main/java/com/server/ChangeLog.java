@@ -0,0 +1,167 @@
+package com.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Журнал изменений строк пациентов, врачей и записей (таблица ChangeLog) для GET_CHANGES_SINCE.
+ * Каждому изменению назначается версия из счетчика ChangeVersion. Счетчик увеличивается
+ * непосредственно перед фиксацией транзакции, и его строка остается заблокированной до commit(),
+ * поэтому версии фиксируются строго по возрастанию: прочитав версию N, клиент уже видит
+ * все изменения с версиями до N включительно и не пропустит транзакцию, зафиксированную позже.
+ * Журнал хранит последние retention версий; более старые записи удаляются, и клиенту,
+ * отставшему сильнее, приходится загружать данные заново.
+ */
+class ChangeLog {
+    static final byte PATIENT = 1;
+    static final byte DOCTOR = 2;
+    static final byte APPOINTMENT = 3;
+
+    static final char INSERT = 'I';
+    static final char UPDATE = 'U';
+    static final char CANCEL = 'C';
+    static final char DELETE = 'D';
+
+    private static final int TRUNCATE_EVERY = 1000; // Журнал усекается раз в столько версий
+
+    /**
+     * Изменение одной строки, ожидающее фиксации транзакции.
+     */
+    static class Entry {
+        final byte entityType;
+        final int entityId;
+        final char changeType;
+
+        Entry(byte entityType, int entityId, char changeType) {
+            this.entityType = entityType;
+            this.entityId = entityId;
+            this.changeType = changeType;
+        }
+    }
+
+    /**
+     * Строки, изменившиеся после версии клиента, без повторов.
+     */
+    static class Changes {
+        final long version; // Версия, до которой включительно собраны изменения
+        final boolean resyncRequired; // Изменения после версии клиента восстановить нельзя
+        final Set<Integer> patientIds = new LinkedHashSet<>();
+        final Set<Integer> doctorIds = new LinkedHashSet<>();
+        final Set<Integer> appointmentIds = new LinkedHashSet<>();
+
+        Changes(long version, boolean resyncRequired) {
+            this.version = version;
+            this.resyncRequired = resyncRequired;
+        }
+    }
+
+    private final int retention;
+
+    ChangeLog(int retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * Записывает изменения транзакции в журнал. Вызывается перед commit() на соединении транзакции.
+     * @return Версия последнего изменения.
+     */
+    long append(Connection conn, List<Entry> entries) throws SQLException {
+        long last;
+        try (PreparedStatement bump = conn.prepareStatement(
+                "SELECT version FROM FINAL TABLE (UPDATE ChangeVersion SET version = version + ? WHERE id = 1)")) {
+            bump.setInt(1, entries.size());
+            try (ResultSet rs = bump.executeQuery()) {
+                rs.next();
+                last = rs.getLong(1);
+            }
+        }
+        long first = last - entries.size() + 1;
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO ChangeLog (version, entityType, entityId, changeType) VALUES (?, ?, ?, ?)")) {
+            long version = first;
+            for (Entry entry : entries) {
+                insert.setLong(1, version++);
+                insert.setByte(2, entry.entityType);
+                insert.setInt(3, entry.entityId);
+                insert.setString(4, String.valueOf(entry.changeType));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        if (last / TRUNCATE_EVERY != (first - 1) / TRUNCATE_EVERY && last > retention) {
+            truncate(conn, last - retention);
+        }
+        return last;
+    }
+
+    private static void truncate(Connection conn, long through) throws SQLException {
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM ChangeLog WHERE version <= ?");
+             PreparedStatement mark = conn.prepareStatement(
+                     "UPDATE ChangeVersion SET truncatedThrough = ? WHERE id = 1 AND truncatedThrough < ?")) {
+            delete.setLong(1, through);
+            delete.executeUpdate();
+            mark.setLong(1, through);
+            mark.setLong(2, through);
+            mark.executeUpdate();
+        }
+    }
+
+    /**
+     * Собирает строки, изменившиеся после версии клиента.
+     * @param sinceVersion Версия, которую клиент уже получил (0 — данных у клиента нет).
+     * @param maxRows Наибольшее число изменившихся строк; при большем числе выгоднее загрузить данные заново.
+     * @return Изменения; resyncRequired, если изменения после sinceVersion восстановить нельзя
+     * (журнал усечен, версия неизвестна серверу или изменений больше maxRows).
+     */
+    Changes read(Connection conn, long sinceVersion, int maxRows) throws SQLException {
+        long current;
+        long truncatedThrough;
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT version, truncatedThrough FROM ChangeVersion WHERE id = 1");
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            current = rs.getLong(1);
+            truncatedThrough = rs.getLong(2);
+        }
+        if (sinceVersion < truncatedThrough || sinceVersion > current) {
+            return new Changes(current, true);
+        }
+        Changes changes = new Changes(current, false);
+        if (sinceVersion == current) {
+            return changes;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT DISTINCT entityType, entityId FROM ChangeLog WHERE version > ? AND version <= ? LIMIT ?")) {
+            pstmt.setLong(1, sinceVersion);
+            pstmt.setLong(2, current);
+            pstmt.setInt(3, maxRows + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int rows = 0;
+                while (rs.next()) {
+                    if (++rows > maxRows) {
+                        return new Changes(current, true);
+                    }
+                    int entityId = rs.getInt(2);
+                    switch (rs.getByte(1)) {
+                        case PATIENT:
+                            changes.patientIds.add(entityId);
+                            break;
+                        case DOCTOR:
+                            changes.doctorIds.add(entityId);
+                            break;
+                        case APPOINTMENT:
+                            changes.appointmentIds.add(entityId);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,146 @@
+package com.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Модель исполнения клиентских подключений.
+ * Ограничивает число одновременно обслуживаемых соединений и запускает обработчики
+ * либо в виртуальных потоках (по одному на соединение), либо в ограниченном пуле платформенных потоков.
+ * Пока лимит исчерпан, новые соединения ожидают в очереди accept() операционной системы.
+ */
+public class ConnectionExecutor {
+
+    /**
+     * Режим исполнения обработчиков соединений.
+     */
+    public enum Mode {
+        VIRTUAL, // Виртуальный поток на каждое соединение (требуется Java 21+)
+        POOLED   // Ограниченный пул платформенных потоков
+    }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final Semaphore connectionPermits;
+    private final AtomicInteger activeConnections = new AtomicInteger();
+
+    public ConnectionExecutor(ServerConfig config) {
+        ExecutorService virtualExecutor = config.getExecutorMode() == Mode.VIRTUAL ? createVirtualExecutor() : null;
+        if (virtualExecutor != null) {
+            this.mode = Mode.VIRTUAL;
+            this.executor = virtualExecutor;
+            this.connectionPermits = new Semaphore(config.getMaxConnections());
+        } else {
+            if (config.getExecutorMode() == Mode.VIRTUAL) {
+                System.err.println("Виртуальные потоки недоступны в этой версии Java, используется пул потоков.");
+            }
+            this.mode = Mode.POOLED;
+            this.executor = createPooledExecutor(config.getPoolSize());
+            // Обработчик занимает поток пула на все время соединения: принятое сверх размера пула
+            // соединение ждало бы в очереди исполнителя и не получило бы даже ответа на рукопожатие
+            int permits = Math.min(config.getMaxConnections(), config.getPoolSize());
+            if (permits < config.getMaxConnections()) {
+                System.err.println("ВНИМАНИЕ: в режиме POOLED одновременно обслуживается не более " + permits
+                        + " соединений (размер пула), а не " + config.getMaxConnections()
+                        + ". Остальные клиенты ждут в очереди accept(). Увеличьте polyclinic.server.poolSize"
+                        + " или используйте polyclinic.server.io=NIO.");
+            }
+            this.connectionPermits = new Semaphore(permits);
+        }
+    }
+
+    /**
+     * Создает исполнитель с виртуальным потоком на задачу, если среда выполнения его поддерживает.
+     * Вызов через рефлексию позволяет собирать сервер под Java 17 и использовать виртуальные потоки при запуске на Java 21+.
+     * @return Исполнитель или null, если виртуальные потоки недоступны.
+     */
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createPooledExecutor(int poolSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Очередь не ограничена, но не заполняется: семафор не пропускает больше соединений, чем потоков в пуле
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "client-handler-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Резервирует место для нового соединения. Блокируется, пока достигнут лимит соединений.
+     * Вызывается перед accept(), поэтому ожидающие клиенты остаются в очереди ОС.
+     * @throws InterruptedException Если поток был прерван во время ожидания.
+     */
+    public void acquireSlot() throws InterruptedException {
+        connectionPermits.acquire();
+    }
+
+    /**
+     * Освобождает место, зарезервированное через acquireSlot(), если соединение так и не было запущено.
+     */
+    public void releaseSlot() {
+        connectionPermits.release();
+    }
+
+    /**
+     * Запускает обработчик соединения. Место освобождается по завершении обработчика.
+     * @param handler Обработчик клиентского соединения.
+     */
+    public void execute(Runnable handler) {
+        activeConnections.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    handler.run();
+                } finally {
+                    activeConnections.decrementAndGet();
+                    connectionPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            activeConnections.decrementAndGet();
+            connectionPermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Исполнитель запросов, поступивших по соединениям. В режиме VIRTUAL каждый запрос выполняется
+     * в своем виртуальном потоке (их число на соединение ограничено лимитом запросов в обработке),
+     * и медленный запрос к БД не занимает поток, нужный другим клиентам.
+     * В режиме POOLED запросы выполняются общим пулом рабочих потоков.
+     * @param sharedWorkers Общий пул рабочих потоков сервера.
+     */
+    public ExecutorService requestExecutor(ExecutorService sharedWorkers) {
+        return mode == Mode.VIRTUAL ? executor : sharedWorkers;
+    }
+
+    /**
+     * Останавливает исполнитель. Уже запущенные обработчики прерываются.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+}
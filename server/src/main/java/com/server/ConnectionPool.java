@@ -0,0 +1,421 @@
+package com.server;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный пул соединений JDBC.
+ * Выдает соединения-обертки, у которых close() возвращает соединение в пул вместо закрытия.
+ * Соединения старше maxLifetime закрываются и пересоздаются, а простаивавшие дольше
+ * validationIdle — проверяются перед выдачей.
+ * Каждое соединение хранит LRU-кэш подготовленных запросов по тексту SQL, поэтому
+ * повторные prepareStatement() не тратят время на разбор и планирование запроса.
+ */
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final long maxLifetimeMillis;
+    private final long acquireTimeoutMillis;
+    private final long validationIdleMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits; // Ограничивает число выданных соединений размером пула
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+
+    // Метрики
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, ServerConfig config) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxLifetimeMillis = TimeUnit.SECONDS.toMillis(config.getDbMaxLifetimeSeconds());
+        this.acquireTimeoutMillis = config.getDbAcquireTimeoutMillis();
+        this.validationIdleMillis = config.getDbValidationIdleMillis();
+        this.statementCacheSize = config.getDbStatementCacheSize();
+        this.permits = new Semaphore(config.getDbPoolSize(), true);
+    }
+
+    /**
+     * Выдает соединение из пула, при необходимости создавая новое.
+     * Вызывающий код обязан закрыть соединение, чтобы вернуть его в пул.
+     * @return Соединение-обертка.
+     * @throws SQLException Если истекло время ожидания или не удалось открыть соединение.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений закрыт.");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Истекло время ожидания свободного соединения (" + acquireTimeoutMillis + " мс).");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано.", e);
+        }
+        long waited = System.nanoTime() - start;
+        acquireCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        try {
+            PooledConnection pooled = takeUsableConnection();
+            active.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Берет свободное соединение, отбрасывая устаревшие и неработающие, или создает новое.
+     */
+    private PooledConnection takeUsableConnection() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (now - pooled.createdAt > maxLifetimeMillis) {
+                pooled.closePhysically();
+                continue;
+            }
+            if (now - pooled.lastReturnedAt > validationIdleMillis && !pooled.isValid()) {
+                pooled.closePhysically();
+                continue;
+            }
+            return pooled;
+        }
+        createdCount.incrementAndGet();
+        return new PooledConnection(DriverManager.getConnection(url, user, password));
+    }
+
+    /**
+     * Возвращает соединение в пул. Незавершенная транзакция откатывается.
+     */
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.connection.isClosed()) {
+                pooled.closePhysically();
+                return;
+            }
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            pooled.lastReturnedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled); // Последнее возвращенное выдается первым: оно "теплее"
+        } catch (SQLException e) {
+            System.err.println("Соединение исключено из пула: " + e.getMessage());
+            pooled.closePhysically();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Закрывает пул и все свободные соединения. Выданные соединения закрываются при возврате.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.closePhysically();
+        }
+    }
+
+    /**
+     * @return Снимок метрик пула.
+     */
+    public Metrics getMetrics() {
+        long acquires = acquireCount.get();
+        return new Metrics(active.get(), idle.size(), acquires, createdCount.get(), timeoutCount.get(),
+                acquires == 0 ? 0 : totalWaitNanos.get() / acquires, maxWaitNanos.get(),
+                statementHits.get(), statementMisses.get(), statementEvictions.get());
+    }
+
+    /**
+     * Физическое соединение в пуле.
+     */
+    private class PooledConnection {
+        private final Connection connection;
+        private final long createdAt = System.currentTimeMillis();
+        private long lastReturnedAt = createdAt;
+
+        // Кэш подготовленных запросов; соединение используется одним потоком за раз, синхронизация не нужна
+        private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Возвращает подготовленный запрос из кэша или готовит новый и кэширует его.
+         * Если такой же запрос уже выдан и не закрыт, готовится отдельный, некэшируемый экземпляр.
+         */
+        PreparedStatement prepare(Method method, Object[] args) throws Throwable {
+            String key = statementKey(args);
+            if (key == null) {
+                return (PreparedStatement) invoke(connection, method, args);
+            }
+            CachedStatement cached = statements.get(key);
+            if (cached != null && !cached.inUse) {
+                statementHits.incrementAndGet();
+                cached.inUse = true;
+                return cached.proxy;
+            }
+            statementMisses.incrementAndGet();
+            PreparedStatement statement = (PreparedStatement) invoke(connection, method, args);
+            if (cached != null) {
+                return statement;
+            }
+            cached = new CachedStatement(statement);
+            cached.inUse = true;
+            statements.put(key, cached);
+            evictOverflow();
+            return cached.proxy;
+        }
+
+        /**
+         * Ключ кэша: текст SQL и флаг возврата сгенерированных ключей.
+         * Для прочих перегрузок prepareStatement кэш не используется.
+         */
+        private String statementKey(Object[] args) {
+            if (statementCacheSize <= 0 || args == null) {
+                return null;
+            }
+            if (args.length == 1) {
+                return (String) args[0];
+            }
+            if (args.length == 2 && args[1] instanceof Integer) {
+                return args[1] + "|" + args[0];
+            }
+            return null;
+        }
+
+        private void evictOverflow() {
+            Iterator<CachedStatement> iterator = statements.values().iterator();
+            while (statements.size() > statementCacheSize && iterator.hasNext()) {
+                CachedStatement eldest = iterator.next();
+                iterator.remove();
+                statementEvictions.incrementAndGet();
+                eldest.evicted = true;
+                if (!eldest.inUse) {
+                    eldest.closePhysically();
+                }
+            }
+        }
+
+        /**
+         * Выдает обертку для одного использования: повторный close() и вызовы после close() безопасны.
+         */
+        Connection lease() {
+            AtomicInteger state = new AtomicInteger(); // 0 - выдано, 1 - возвращено
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if ("close".equals(name)) {
+                            if (state.compareAndSet(0, 1)) {
+                                release(this);
+                            }
+                            return null;
+                        }
+                        if ("isClosed".equals(name)) {
+                            return state.get() == 1 || connection.isClosed();
+                        }
+                        if (state.get() == 1) {
+                            throw new SQLException("Соединение уже возвращено в пул.");
+                        }
+                        if ("prepareStatement".equals(name)) {
+                            return prepare(method, args);
+                        }
+                        return invoke(connection, method, args);
+                    });
+        }
+
+        boolean isValid() {
+            try {
+                return connection.isValid(1);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closePhysically() {
+            statements.clear(); // Запросы закрываются вместе с соединением
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Ошибка при закрытии соединения с БД: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Подготовленный запрос в кэше соединения. Обертка перехватывает close():
+     * запрос очищается и остается в кэше для повторного использования.
+     */
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        if ("close".equals(name)) {
+                            release();
+                            return null;
+                        }
+                        if ("isClosed".equals(name)) {
+                            return !inUse || statement.isClosed();
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private void release() throws SQLException {
+            if (!inUse) {
+                return;
+            }
+            inUse = false;
+            if (evicted) {
+                closePhysically();
+            } else {
+                statement.clearParameters();
+            }
+        }
+
+        void closePhysically() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                System.err.println("Ошибка при закрытии подготовленного запроса: " + e.getMessage());
+            }
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Снимок метрик пула соединений.
+     */
+    public static class Metrics {
+        private final int active;
+        private final int idle;
+        private final long acquireCount;
+        private final long createdCount;
+        private final long timeoutCount;
+        private final long averageWaitNanos;
+        private final long maxWaitNanos;
+        private final long statementHits;
+        private final long statementMisses;
+        private final long statementEvictions;
+
+        Metrics(int active, int idle, long acquireCount, long createdCount, long timeoutCount,
+                long averageWaitNanos, long maxWaitNanos,
+                long statementHits, long statementMisses, long statementEvictions) {
+            this.active = active;
+            this.idle = idle;
+            this.acquireCount = acquireCount;
+            this.createdCount = createdCount;
+            this.timeoutCount = timeoutCount;
+            this.averageWaitNanos = averageWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+            this.statementEvictions = statementEvictions;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public long getAcquireCount() {
+            return acquireCount;
+        }
+
+        public long getCreatedCount() {
+            return createdCount;
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        public long getAverageWaitNanos() {
+            return averageWaitNanos;
+        }
+
+        public long getMaxWaitNanos() {
+            return maxWaitNanos;
+        }
+
+        public long getStatementHits() {
+            return statementHits;
+        }
+
+        public long getStatementMisses() {
+            return statementMisses;
+        }
+
+        public long getStatementEvictions() {
+            return statementEvictions;
+        }
+
+        @Override
+        public String toString() {
+            return "Пул соединений{" +
+                    "активных=" + active +
+                    ", свободных=" + idle +
+                    ", выдано=" + acquireCount +
+                    ", создано=" + createdCount +
+                    ", таймаутов=" + timeoutCount +
+                    ", ср. ожидание мкс=" + TimeUnit.NANOSECONDS.toMicros(averageWaitNanos) +
+                    ", макс. ожидание мкс=" + TimeUnit.NANOSECONDS.toMicros(maxWaitNanos) +
+                    ", кэш запросов: попаданий=" + statementHits +
+                    ", промахов=" + statementMisses +
+                    ", вытеснений=" + statementEvictions +
+                    '}';
+        }
+    }
+}
@@ -1,14 +1,39 @@
 package com.server;
 
 import com.common.model.Appointment;
+import com.common.model.ChangeSet;
 import com.common.model.Doctor;
+import com.common.model.EarliestSlotsQuery;
+import com.common.model.FreeSlots;
+import com.common.model.FreeSlotsQuery;
+import com.common.model.HistoryPageRequest;
+import com.common.model.Page;
 import com.common.model.Patient;
+import com.common.model.PatientPageRequest;
+import com.common.model.PatientSearchQuery;
+import com.common.model.ScheduleRange;
+import com.common.model.ScheduleView;
+import com.common.model.ScheduleViewQuery;
+import com.common.model.SlotGrid;
+import com.common.model.WorkingHours;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 /**
  * Класс для управления взаимодействием с базой данных H2.
@@ -16,57 +41,133 @@ import java.util.List;
  */
 public class DatabaseManager {
 
-    private static final String JDBC_URL = "jdbc:h2:./polyclinic_registry_db";
     private static final String USER = "sa";
     private static final String PASSWORD = "";
+    private static final int MAX_SEARCH_RESULTS = 200; // Лучшие результаты поиска пациентов по релевантности
+    private static final int MAX_CHANGED_ROWS = 10_000; // При большем числе изменений клиент загружает данные заново
+
+    // Запросы, которые должны выполняться по индексам из миграций схемы (планы проверяет AppointmentIndexPlanTest)
+    static final String PATIENT_BY_NAME_SQL =
+            "SELECT * FROM Patients WHERE lastNameNorm = LOWER(?) AND firstNameNorm = LOWER(?) AND middleNameNorm = LOWER(?)";
+    static final String DOCTOR_BY_NAME_SQL =
+            "SELECT * FROM Doctors WHERE lastNameNorm = LOWER(?) AND firstNameNorm = LOWER(?) AND middleNameNorm = LOWER(?)";
+    static final String PATIENT_APPOINTMENT_DAYS_SQL =
+            "SELECT id, doctorId, appointmentDate FROM Appointments WHERE patientId = ?";
+    static final String PATIENT_APPOINTMENTS_SQL =
+            "SELECT * FROM Appointments WHERE patientId = ? ORDER BY appointmentDate DESC, appointmentTime DESC, id DESC";
+    static final String APPOINTMENTS_BY_DATE_SQL =
+            "SELECT * FROM Appointments WHERE appointmentDate = ? AND activeDoctorId IS NOT NULL ORDER BY doctorId, appointmentTime";
+    static final String OCCUPIED_SLOTS_SQL = "SELECT appointmentDate, activeDoctorId, appointmentTime FROM Appointments " +
+            "WHERE appointmentDate BETWEEN ? AND ? AND activeDoctorId IS NOT NULL";
+
+    private final ConnectionPool connectionPool;
+    // Пациенты, которых врачи и сами пациенты запрашивают повторно
+    private final PatientCache patientCache;
+
+    // Запись на прием к одному врачу на один день выполняется последовательно
+    private final StripedLocks bookingLocks = new StripedLocks(64);
+
+    // Справочник врачей: врачи меняются редко, а читаются при каждом обновлении расписания
+    private final DoctorDirectory doctorDirectory = new DoctorDirectory(this::loadAllDoctors, this::isInTransaction);
+
+    // Триграммный индекс для поиска пациентов по подстроке; до построения поиск выполняется запросом к базе
+    private final PatientSearchIndex searchIndex = new PatientSearchIndex();
+    private volatile boolean searchIndexReady;
+
+    // Занятость слотов врачей по дням, поддерживается при записи и отмене
+    private final SlotAvailabilityIndex slotIndex;
+
+    // Часы приема врачей по неделям: шаблоны с исключениями, вычисленные заранее
+    private final WorkingHoursIndex workingHours = new WorkingHoursIndex(this::loadWorkingWeek, this::isInTransaction);
+
+    // Версии списков врачей и записей для условных запросов (NOT_MODIFIED)
+    private final ListVersions listVersions = new ListVersions();
+
+    // Получает изменения занятости слотов после фиксации (рассылка подписчикам расписания)
+    private volatile SlotChangeListener slotChangeListener = (doctorId, date) -> { };
+
+    // Соединение, привязанное к текущему потоку на время пакета запросов или транзакции
+    private final ThreadLocal<Connection> boundConnection = new ThreadLocal<>();
+    // Действия, отложенные до фиксации текущей транзакции (обновление индексов в памяти)
+    private final ThreadLocal<List<Runnable>> afterCommitActions = new ThreadLocal<>();
+    // Изменения строк текущей транзакции; версии им назначаются непосредственно перед фиксацией
+    private final ThreadLocal<List<ChangeLog.Entry>> pendingChanges = new ThreadLocal<>();
+
+    // Журнал изменений для синхронизации клиентских кэшей
+    private final ChangeLog changeLog;
+
+    /**
+     * Действие над базой данных, выполняемое на привязанном к потоку соединении.
+     * @param <T> Тип результата.
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Получатель изменений занятости слотов. Вызывается после фиксации записи или отмены,
+     * когда индекс занятости уже обновлен; не должен блокироваться.
+     */
+    @FunctionalInterface
+    public interface SlotChangeListener {
+        void slotsChanged(int doctorId, LocalDate date);
+    }
 
     public DatabaseManager() {
+        this(ServerConfig.fromSystemProperties());
+    }
+
+    public DatabaseManager(ServerConfig config) {
+        connectionPool = new ConnectionPool(config.getDbUrl(), USER, PASSWORD, config);
+        changeLog = new ChangeLog(config.getChangeLogRetention());
+        patientCache = new PatientCache(config.getPatientCacheMaxEntries(), config.getPatientCacheMaxMb() * 1024L * 1024L);
+        slotIndex = new SlotAvailabilityIndex(this::loadOccupiedSlots, config.getSlotIndexDays());
         initializeDatabase();
+        buildSearchIndex();
     }
 
     /**
-     * Инициализирует базу данных, создавая таблицы, если они не существуют,
-     * и заполняя их тестовыми данными программно.
+     * Строит индекс поиска пациентов по всем пациентам базы. Выполняется при запуске,
+     * до приема запросов; дальше индекс обновляется при каждом изменении пациентов.
+     */
+    private void buildSearchIndex() {
+        long start = System.nanoTime();
+        try {
+            searchIndex.rebuild(queryAllPatients());
+            searchIndexReady = true;
+            System.out.println("Индекс поиска пациентов построен: " + searchIndex.size() + " пациентов за "
+                    + (System.nanoTime() - start) / 1_000_000 + " мс.");
+        } catch (SQLException e) {
+            System.err.println("Не удалось построить индекс поиска пациентов, поиск будет выполняться в базе: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Инициализирует базу данных: приводит схему к последней версии
+     * и заполняет ее тестовыми данными программно.
      */
     private void initializeDatabase() {
-        try (Connection conn = DriverManager.getConnection(JDBC_URL, USER, PASSWORD);
-             Statement stmt = conn.createStatement()) {
+        try {
+            withSharedConnection(() -> {
+                createSchemaAndTestData();
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println("Ошибка инициализации базы данных: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Применяет миграции схемы и создает тестовые данные. Выполняется на одном соединении из пула.
+     */
+    private void createSchemaAndTestData() throws SQLException {
+        try (Connection conn = getConnection()) {
             System.out.println("Подключение к базе данных H2...");
 
-            // Создание таблицы Пациенты
-            stmt.execute("CREATE TABLE IF NOT EXISTS Patients (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "lastName VARCHAR(255) NOT NULL," +
-                    "firstName VARCHAR(255) NOT NULL," +
-                    "middleName VARCHAR(255)," +
-                    "dateOfBirth DATE," +
-                    "address VARCHAR(255)," +
-                    "phone VARCHAR(20)," +
-                    "policyNumber VARCHAR(50) UNIQUE NOT NULL" +
-                    ")");
-
-            // Создание таблицы Врачи
-            stmt.execute("CREATE TABLE IF NOT EXISTS Doctors (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "lastName VARCHAR(255) NOT NULL," +
-                    "firstName VARCHAR(255) NOT NULL," +
-                    "middleName VARCHAR(255)," +
-                    "specialty VARCHAR(100) NOT NULL," +
-                    "officeNumber VARCHAR(10)" +
-                    ")");
-
-            // Создание таблицы Записи на прием
-            stmt.execute("CREATE TABLE IF NOT EXISTS Appointments (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "patientId INT NOT NULL," +
-                    "doctorId INT NOT NULL," +
-                    "appointmentDate DATE NOT NULL," +
-                    "appointmentTime TIME NOT NULL," +
-                    "status VARCHAR(50) DEFAULT 'Запланировано'," +
-                    "FOREIGN KEY (patientId) REFERENCES Patients(id) ON DELETE CASCADE," +
-                    "FOREIGN KEY (doctorId) REFERENCES Doctors(id) ON DELETE CASCADE," +
-                    "UNIQUE (doctorId, appointmentDate, appointmentTime)" + // Запрет на дублирование записей
-                    ")");
+            // Создание таблиц и индексов
+            new SchemaMigrator().migrate(conn);
 
             // Добавление тестовых данных для пациентов
             // Перед добавлением проверяем, существует ли пациент с таким номером полиса
@@ -121,9 +222,6 @@ public class DatabaseManager {
 
 
             System.out.println("База данных H2 инициализирована программно.");
-        } catch (SQLException e) {
-            System.err.println("Ошибка инициализации базы данных: " + e.getMessage());
-            e.printStackTrace();
         }
     }
 
@@ -173,12 +271,152 @@ public class DatabaseManager {
 
 
     /**
-     * Получает соединение с базой данных.
+     * Получает соединение с базой данных из пула.
+     * Закрытие полученного соединения возвращает его в пул.
      * @return Объект Connection.
-     * @throws SQLException Если произошла ошибка SQL.
+     * @throws SQLException Если произошла ошибка SQL или истекло время ожидания соединения.
      */
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(JDBC_URL, USER, PASSWORD);
+        Connection bound = boundConnection.get();
+        if (bound != null) {
+            return nonClosing(bound); // Методы закрывают соединение в try-with-resources, привязанное должно остаться открытым
+        }
+        return connectionPool.getConnection();
+    }
+
+    /**
+     * @return Снимок метрик пула соединений (активные, свободные, время ожидания).
+     */
+    public ConnectionPool.Metrics getPoolMetrics() {
+        return connectionPool.getMetrics();
+    }
+
+    /**
+     * @return Снимок метрик справочника врачей (доля попаданий в кэш).
+     */
+    public String getDoctorDirectoryMetrics() {
+        return doctorDirectory.getMetrics();
+    }
+
+    /**
+     * @return Снимок метрик кэша пациентов (попадания, промахи, вытеснения).
+     */
+    public String getPatientCacheMetrics() {
+        return patientCache.getMetrics();
+    }
+
+    /**
+     * Закрывает пул соединений с базой данных.
+     */
+    public void close() {
+        connectionPool.close();
+    }
+
+    /**
+     * Выполняет действие на одном соединении: все вызовы методов DatabaseManager внутри действия
+     * используют это соединение вместо открытия нового на каждый вызов.
+     * @param work Действие.
+     * @return Результат действия.
+     * @throws SQLException Если не удалось получить соединение.
+     */
+    public <T> T withSharedConnection(SqlWork<T> work) throws SQLException {
+        if (boundConnection.get() != null) {
+            return work.run(); // Уже выполняемся на общем соединении
+        }
+        try (Connection conn = getConnection()) {
+            boundConnection.set(conn);
+            return work.run();
+        } finally {
+            boundConnection.remove();
+        }
+    }
+
+    /**
+     * Выполняет действие в одной транзакции. Если действие завершилось исключением,
+     * изменения откатываются, а исключение пробрасывается дальше.
+     * Вложенный вызов присоединяется к уже начатой транзакции.
+     * @param work Действие.
+     * @return Результат действия.
+     * @throws SQLException Если произошла ошибка SQL при фиксации или откате.
+     */
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        return withSharedConnection(() -> {
+            Connection conn = boundConnection.get();
+            if (!conn.getAutoCommit()) {
+                return work.run(); // Вложенная транзакция
+            }
+            conn.setAutoCommit(false);
+            List<Runnable> actions = new ArrayList<>();
+            List<ChangeLog.Entry> changes = new ArrayList<>();
+            afterCommitActions.set(actions);
+            pendingChanges.set(changes);
+            try {
+                T result = work.run();
+                if (!changes.isEmpty()) {
+                    changeLog.append(conn, changes); // Блокирует счетчик версий до commit()
+                }
+                conn.commit();
+                actions.forEach(Runnable::run);
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                afterCommitActions.remove();
+                pendingChanges.remove();
+                conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * @return true, если текущий поток выполняется внутри транзакции inTransaction().
+     */
+    private boolean isInTransaction() {
+        return afterCommitActions.get() != null;
+    }
+
+    /**
+     * Выполняет действие после фиксации изменений: сразу, если транзакция не открыта,
+     * иначе после успешного commit(). При откате транзакции действие отбрасывается.
+     * Так индексы в памяти не видят изменений, которые не попали в базу.
+     */
+    private void afterCommit(Runnable action) {
+        List<Runnable> actions = afterCommitActions.get();
+        if (actions != null) {
+            actions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Отмечает изменение строки в журнале изменений. Вызывается только внутри inTransaction():
+     * запись журнала фиксируется вместе с изменением.
+     */
+    private void recordChange(byte entityType, int entityId, char changeType) {
+        List<ChangeLog.Entry> changes = pendingChanges.get();
+        if (changes == null) {
+            throw new IllegalStateException("Изменение строки вне транзакции не попадет в журнал изменений.");
+        }
+        changes.add(new ChangeLog.Entry(entityType, entityId, changeType));
+    }
+
+    /**
+     * Оборачивает соединение так, чтобы вызов close() не закрывал его.
+     */
+    private static Connection nonClosing(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(DatabaseManager.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
     }
 
     /**
@@ -188,26 +426,33 @@ public class DatabaseManager {
      */
     public Patient addPatient(Patient patient) {
         String sql = "INSERT INTO Patients (lastName, firstName, middleName, dateOfBirth, address, phone, policyNumber) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, patient.getLastName());
-            pstmt.setString(2, patient.getFirstName());
-            pstmt.setString(3, patient.getMiddleName());
-            pstmt.setDate(4, Date.valueOf(patient.getDateOfBirth()));
-            pstmt.setString(5, patient.getAddress());
-            pstmt.setString(6, patient.getPhone());
-            pstmt.setString(7, patient.getPolicyNumber());
-            int affectedRows = pstmt.executeUpdate();
-
-            if (affectedRows > 0) {
-                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        patient.setId(generatedKeys.getInt(1));
-                        System.out.println("Пациент добавлен: " + patient.getLastName());
-                        return patient;
+        try {
+            return inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setString(1, patient.getLastName());
+                    pstmt.setString(2, patient.getFirstName());
+                    pstmt.setString(3, patient.getMiddleName());
+                    pstmt.setDate(4, Date.valueOf(patient.getDateOfBirth()));
+                    pstmt.setString(5, patient.getAddress());
+                    pstmt.setString(6, patient.getPhone());
+                    pstmt.setString(7, patient.getPolicyNumber());
+                    int affectedRows = pstmt.executeUpdate();
+
+                    if (affectedRows > 0) {
+                        try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                            if (generatedKeys.next()) {
+                                patient.setId(generatedKeys.getInt(1));
+                                System.out.println("Пациент добавлен: " + patient.getLastName());
+                                recordChange(ChangeLog.PATIENT, patient.getId(), ChangeLog.INSERT);
+                                afterCommit(() -> searchIndex.put(patient));
+                                return patient;
+                            }
+                        }
                     }
                 }
-            }
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println("Ошибка при добавлении пациента: " + e.getMessage());
             // Дополнительная обработка для UNIQUE-конфликта (например, если policyNumber уже существует)
@@ -224,30 +469,92 @@ public class DatabaseManager {
      * @return Список объектов Patient.
      */
     public List<Patient> getAllPatients() {
+        try {
+            return queryAllPatients();
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении всех пациентов: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    private List<Patient> queryAllPatients() throws SQLException {
         List<Patient> patients = new ArrayList<>();
         String sql = "SELECT * FROM Patients";
         try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
                 patients.add(new Patient(
                         rs.getInt("id"),
                         rs.getString("lastName"),
                         rs.getString("firstName"),
                         rs.getString("middleName"),
-                        rs.getDate("dateOfBirth").toLocalDate(),
+                        rs.getDate("dateOfBirth") != null ? rs.getDate("dateOfBirth").toLocalDate() : null,
                         rs.getString("address"),
                         rs.getString("phone"),
                         rs.getString("policyNumber")
                 ));
             }
-        } catch (SQLException e) {
-            System.err.println("Ошибка при получении всех пациентов: " + e.getMessage());
-            e.printStackTrace();
         }
         return patients;
     }
 
+    /**
+     * Получает страницу пациентов по возрастанию ID: всех или найденных по строке поиска.
+     * Страница выбирается по ключу (id &gt; afterId), поэтому ее стоимость и объем памяти
+     * не зависят от размера таблицы и номера страницы. Поиск от трех символов выполняется
+     * по триграммному индексу, остальные запросы — в базе.
+     * @param request Параметры страницы.
+     * @return Страница пациентов или null при ошибке базы данных.
+     */
+    public Page<Patient> getPatientsPage(PatientPageRequest request) {
+        String query = request.getQuery();
+        int limit = request.getPageSize() + 1; // Лишний элемент показывает, есть ли следующая страница
+        List<Patient> patients;
+        if (query != null && searchIndexReady && !isInTransaction()
+                && query.length() >= PatientSearchIndex.MIN_QUERY_LENGTH && !isDate(query)) {
+            patients = searchIndex.searchPage(query, request.getAfterId(), limit);
+        } else {
+            String sql = "SELECT * FROM Patients WHERE " + (query != null ? SEARCH_CONDITION + " AND " : "") +
+                    "id > ? ORDER BY id LIMIT ?";
+            patients = new ArrayList<>(limit);
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                if (query != null) {
+                    setSearchParameters(pstmt, query);
+                    index += SEARCH_PARAMETER_COUNT;
+                }
+                pstmt.setInt(index, request.getAfterId());
+                pstmt.setInt(index + 1, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        patients.add(new Patient(
+                                rs.getInt("id"),
+                                rs.getString("lastName"),
+                                rs.getString("firstName"),
+                                rs.getString("middleName"),
+                                rs.getDate("dateOfBirth") != null ? rs.getDate("dateOfBirth").toLocalDate() : null,
+                                rs.getString("address"),
+                                rs.getString("phone"),
+                                rs.getString("policyNumber")
+                        ));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Ошибка при получении страницы пациентов: " + e.getMessage());
+                e.printStackTrace();
+                return null;
+            }
+        }
+        boolean hasMore = patients.size() == limit;
+        if (hasMore) {
+            patients.remove(patients.size() - 1);
+        }
+        return new Page<>(patients, hasMore);
+    }
+
     /**
      * Обновляет данные существующего пациента.
      * @param patient Объект Patient с обновленными данными.
@@ -255,21 +562,31 @@ public class DatabaseManager {
      */
     public boolean updatePatient(Patient patient) {
         String sql = "UPDATE Patients SET lastName = ?, firstName = ?, middleName = ?, dateOfBirth = ?, address = ?, phone = ?, policyNumber = ? WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, patient.getLastName());
-            pstmt.setString(2, patient.getFirstName());
-            pstmt.setString(3, patient.getMiddleName());
-            pstmt.setDate(4, Date.valueOf(patient.getDateOfBirth()));
-            pstmt.setString(5, patient.getAddress());
-            pstmt.setString(6, patient.getPhone());
-            pstmt.setString(7, patient.getPolicyNumber());
-            pstmt.setInt(8, patient.getId());
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                System.out.println("Пациент обновлен: " + patient.getLastName());
-                return true;
-            }
+        try {
+            return inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, patient.getLastName());
+                    pstmt.setString(2, patient.getFirstName());
+                    pstmt.setString(3, patient.getMiddleName());
+                    pstmt.setDate(4, Date.valueOf(patient.getDateOfBirth()));
+                    pstmt.setString(5, patient.getAddress());
+                    pstmt.setString(6, patient.getPhone());
+                    pstmt.setString(7, patient.getPolicyNumber());
+                    pstmt.setInt(8, patient.getId());
+                    int affectedRows = pstmt.executeUpdate();
+                    if (affectedRows > 0) {
+                        System.out.println("Пациент обновлен: " + patient.getLastName());
+                        recordChange(ChangeLog.PATIENT, patient.getId(), ChangeLog.UPDATE);
+                        afterCommit(() -> {
+                            patientCache.invalidate(patient.getId());
+                            searchIndex.put(patient);
+                        });
+                        return true;
+                    }
+                }
+                return false;
+            });
         } catch (SQLException e) {
             System.err.println("Ошибка при обновлении пациента: " + e.getMessage());
             e.printStackTrace();
@@ -284,14 +601,42 @@ public class DatabaseManager {
      */
     public boolean deletePatient(int patientId) {
         String sql = "DELETE FROM Patients WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, patientId);
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                System.out.println("Пациент с ID " + patientId + " удален.");
-                return true;
-            }
+        try {
+            return inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement appointments = conn.prepareStatement(PATIENT_APPOINTMENT_DAYS_SQL);
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    // Записи пациента удаляются каскадно: в журнал изменений они попадают отдельно,
+                    // а подписчики расписания узнают о каждом дне врача, где освободились слоты
+                    Map<Integer, Set<LocalDate>> affectedDays = new HashMap<>();
+                    appointments.setInt(1, patientId);
+                    try (ResultSet rs = appointments.executeQuery()) {
+                        while (rs.next()) {
+                            recordChange(ChangeLog.APPOINTMENT, rs.getInt("id"), ChangeLog.DELETE);
+                            affectedDays.computeIfAbsent(rs.getInt("doctorId"), id -> new HashSet<>())
+                                    .add(rs.getDate("appointmentDate").toLocalDate());
+                        }
+                    }
+                    pstmt.setInt(1, patientId);
+                    int affectedRows = pstmt.executeUpdate();
+                    if (affectedRows > 0) {
+                        System.out.println("Пациент с ID " + patientId + " удален.");
+                        recordChange(ChangeLog.PATIENT, patientId, ChangeLog.DELETE);
+                        afterCommit(() -> {
+                            patientCache.invalidate(patientId);
+                            searchIndex.remove(patientId);
+                        });
+                        afterCommit(() -> { // Записи пациента удалены каскадно
+                            slotIndex.invalidateAll();
+                            listVersions.allAppointmentsChanged();
+                            affectedDays.forEach((doctorId, dates) ->
+                                    dates.forEach(date -> slotChangeListener.slotsChanged(doctorId, date)));
+                        });
+                        return true;
+                    }
+                }
+                return false;
+            });
         } catch (SQLException e) {
             System.err.println("Ошибка при удалении пациента: " + e.getMessage());
             e.printStackTrace();
@@ -301,36 +646,92 @@ public class DatabaseManager {
 
     /**
      * Ищет пациентов по ФИО, дате рождения или номеру полиса.
+     * Запросы от трех символов выполняются по триграммному индексу в памяти и возвращают
+     * до MAX_SEARCH_RESULTS лучших результатов; короткие запросы и даты ищутся в базе.
      * @param query Строка запроса для поиска.
      * @return Список найденных пациентов.
      */
     public List<Patient> searchPatients(String query) {
+        if (searchIndexReady && !isInTransaction() && query.length() >= PatientSearchIndex.MIN_QUERY_LENGTH
+                && !isDate(query)) {
+            return searchIndex.search(query, MAX_SEARCH_RESULTS);
+        }
+        return querySearchPatients(query);
+    }
+
+    /**
+     * Ищет пациентов с параметрами поиска. В нечетком режиме фамилия ищется по словарю фамилий
+     * с опечатками; если индекс недоступен (еще строится или идет транзакция), выполняется
+     * обычный поиск по подстроке в базе.
+     * @param query Параметры поиска.
+     * @return Список найденных пациентов.
+     */
+    public List<Patient> searchPatients(PatientSearchQuery query) {
+        String text = query.getText() != null ? query.getText().trim() : "";
+        if (!query.isFuzzy()) {
+            return searchPatients(text);
+        }
+        if (searchIndexReady && !isInTransaction() && !text.isEmpty()) {
+            int maxEdits = query.getMaxEdits() != PatientSearchQuery.AUTO_EDITS
+                    ? query.getMaxEdits() : autoEdits(text.split("\\s+")[0]);
+            return searchIndex.searchFuzzy(text, maxEdits, MAX_SEARCH_RESULTS);
+        }
+        return querySearchPatients(text);
+    }
+
+    /**
+     * Число правок по длине фамилии: в коротких фамилиях опечатка меняет слишком большую долю букв.
+     */
+    private static int autoEdits(String lastName) {
+        if (lastName.length() <= 2) {
+            return 0;
+        }
+        return lastName.length() <= 5 ? 1 : 2;
+    }
+
+    private static boolean isDate(String query) {
+        try {
+            LocalDate.parse(query);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Расширенный поиск, учитывающий частичное совпадение по всем строковым полям
+    private static final String SEARCH_CONDITION = "(" +
+            "LOWER(lastName) LIKE LOWER(?) OR " +
+            "LOWER(firstName) LIKE LOWER(?) OR " +
+            "LOWER(middleName) LIKE LOWER(?) OR " +
+            "LOWER(policyNumber) LIKE LOWER(?) OR " +
+            "LOWER(address) LIKE LOWER(?) OR " +
+            "LOWER(phone) LIKE LOWER(?) OR " +
+            "dateOfBirth = ?)"; // Для поиска по дате, предполагаем формат 'YYYY-MM-DD'
+    private static final int SEARCH_PARAMETER_COUNT = 7;
+
+    /**
+     * Заполняет параметры SEARCH_CONDITION (с первого по седьмой).
+     */
+    private static void setSearchParameters(PreparedStatement pstmt, String query) throws SQLException {
+        String likeQuery = "%" + query + "%";
+        for (int i = 1; i < SEARCH_PARAMETER_COUNT; i++) {
+            pstmt.setString(i, likeQuery);
+        }
+        try {
+            LocalDate date = LocalDate.parse(query);
+            pstmt.setDate(SEARCH_PARAMETER_COUNT, Date.valueOf(date));
+        } catch (Exception e) {
+            pstmt.setNull(SEARCH_PARAMETER_COUNT, Types.DATE); // Если не дата, игнорируем поиск по дате
+        }
+    }
+
+    private List<Patient> querySearchPatients(String query) {
         List<Patient> patients = new ArrayList<>();
-        // Расширенный поиск, учитывающий частичное совпадение по всем строковым полям
-        String sql = "SELECT * FROM Patients WHERE " +
-                "LOWER(lastName) LIKE LOWER(?) OR " +
-                "LOWER(firstName) LIKE LOWER(?) OR " +
-                "LOWER(middleName) LIKE LOWER(?) OR " +
-                "LOWER(policyNumber) LIKE LOWER(?) OR " +
-                "LOWER(address) LIKE LOWER(?) OR " +
-                "LOWER(phone) LIKE LOWER(?) OR " +
-                "dateOfBirth = ?"; // Для поиска по дате, предполагаем формат 'YYYY-MM-DD'
+        String sql = "SELECT * FROM Patients WHERE " + SEARCH_CONDITION;
 
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            String likeQuery = "%" + query + "%";
-            pstmt.setString(1, likeQuery);
-            pstmt.setString(2, likeQuery);
-            pstmt.setString(3, likeQuery);
-            pstmt.setString(4, likeQuery);
-            pstmt.setString(5, likeQuery);
-            pstmt.setString(6, likeQuery);
-            try {
-                LocalDate date = LocalDate.parse(query);
-                pstmt.setDate(7, Date.valueOf(date));
-            } catch (Exception e) {
-                pstmt.setNull(7, Types.DATE); // Если не дата, игнорируем поиск по дате
-            }
+            setSearchParameters(pstmt, query);
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -354,11 +755,27 @@ public class DatabaseManager {
     }
 
     /**
-     * Получает пациента по его ID.
+     * Получает пациента по его ID, сначала из кэша пациентов.
      * @param patientId ID пациента.
      * @return Объект Patient, если найден, иначе null.
      */
     public Patient getPatientById(int patientId) {
+        if (isInTransaction()) {
+            return queryPatientById(patientId); // Транзакция должна видеть собственные изменения
+        }
+        Patient cached = patientCache.getById(patientId);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = patientCache.stamp();
+        Patient patient = queryPatientById(patientId);
+        if (patient != null) {
+            patientCache.put(patient, stamp);
+        }
+        return patient;
+    }
+
+    private Patient queryPatientById(int patientId) {
         String sql = "SELECT * FROM Patients WHERE id = ?";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -423,9 +840,24 @@ public class DatabaseManager {
      * @return Объект Patient, если найден и ФИО совпадает, иначе null.
      */
     public Patient loginPatient(String lastName, String firstName, String middleName) {
-        String sql = "SELECT * FROM Patients WHERE LOWER(lastName) = LOWER(?) AND LOWER(firstName) = LOWER(?) AND LOWER(middleName) = LOWER(?)";
+        if (isInTransaction()) {
+            return queryPatientByName(lastName, firstName, middleName);
+        }
+        Patient cached = patientCache.getByName(lastName, firstName, middleName);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = patientCache.stamp();
+        Patient patient = queryPatientByName(lastName, firstName, middleName);
+        if (patient != null) {
+            patientCache.put(patient, stamp);
+        }
+        return patient;
+    }
+
+    private Patient queryPatientByName(String lastName, String firstName, String middleName) {
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(PATIENT_BY_NAME_SQL)) {
             pstmt.setString(1, lastName);
             pstmt.setString(2, firstName);
             pstmt.setString(3, middleName);
@@ -457,24 +889,34 @@ public class DatabaseManager {
      */
     public Doctor addDoctor(Doctor doctor) {
         String sql = "INSERT INTO Doctors (lastName, firstName, middleName, specialty, officeNumber) VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, doctor.getLastName());
-            pstmt.setString(2, doctor.getFirstName());
-            pstmt.setString(3, doctor.getMiddleName());
-            pstmt.setString(4, doctor.getSpecialty());
-            pstmt.setString(5, doctor.getOfficeNumber());
-            int affectedRows = pstmt.executeUpdate();
-
-            if (affectedRows > 0) {
-                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        doctor.setId(generatedKeys.getInt(1));
-                        System.out.println("Врач добавлен: " + doctor.getLastName());
-                        return doctor;
+        try {
+            return inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setString(1, doctor.getLastName());
+                    pstmt.setString(2, doctor.getFirstName());
+                    pstmt.setString(3, doctor.getMiddleName());
+                    pstmt.setString(4, doctor.getSpecialty());
+                    pstmt.setString(5, doctor.getOfficeNumber());
+                    int affectedRows = pstmt.executeUpdate();
+
+                    if (affectedRows > 0) {
+                        try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                            if (generatedKeys.next()) {
+                                doctor.setId(generatedKeys.getInt(1));
+                                System.out.println("Врач добавлен: " + doctor.getLastName());
+                                recordChange(ChangeLog.DOCTOR, doctor.getId(), ChangeLog.INSERT);
+                                afterCommit(() -> {
+                                    doctorDirectory.invalidate();
+                                    listVersions.doctorsChanged();
+                                });
+                                return doctor;
+                            }
+                        }
                     }
                 }
-            }
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println("Ошибка при добавлении врача: " + e.getMessage());
             e.printStackTrace();
@@ -483,15 +925,35 @@ public class DatabaseManager {
     }
 
     /**
-     * Получает всех врачей из базы данных.
-     * @return Список объектов Doctor.
+     * @return Версии списков для условных запросов. Версию нужно прочитать до чтения списка.
+     */
+    public ListVersions getListVersions() {
+        return listVersions;
+    }
+
+    /**
+     * Получает всех врачей из справочника в памяти.
+     * @return Список объектов Doctor, или null в случае ошибки.
      */
     public List<Doctor> getAllDoctors() {
+        try {
+            return new ArrayList<>(doctorDirectory.getAll());
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении всех врачей: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Загружает всех врачей из базы данных (загрузчик справочника врачей).
+     */
+    private List<Doctor> loadAllDoctors() throws SQLException {
         List<Doctor> doctors = new ArrayList<>();
-        String sql = "SELECT * FROM Doctors";
+        String sql = "SELECT * FROM Doctors ORDER BY id";
         try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
                 doctors.add(new Doctor(
                         rs.getInt("id"),
@@ -502,35 +964,18 @@ public class DatabaseManager {
                         rs.getString("officeNumber")
                 ));
             }
-        } catch (SQLException e) {
-            System.err.println("Ошибка при получении всех врачей: " + e.getMessage());
-            e.printStackTrace();
         }
         return doctors;
     }
 
     /**
-     * Получает врача по его ID.
+     * Получает врача по его ID из справочника в памяти.
      * @param doctorId ID врача.
      * @return Объект Doctor, если найден, иначе null.
      */
     public Doctor getDoctorById(int doctorId) {
-        String sql = "SELECT * FROM Doctors WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, doctorId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Doctor(
-                            rs.getInt("id"),
-                            rs.getString("lastName"),
-                            rs.getString("firstName"),
-                            rs.getString("middleName"),
-                            rs.getString("specialty"),
-                            rs.getString("officeNumber")
-                    );
-                }
-            }
+        try {
+            return doctorDirectory.getById(doctorId);
         } catch (SQLException e) {
             System.err.println("Ошибка при получении врача по ID: " + e.getMessage());
             e.printStackTrace();
@@ -539,16 +984,29 @@ public class DatabaseManager {
     }
 
     /**
-     * Аутентифицирует врача по ФИО.
+     * Аутентифицирует врача по ФИО (без учета регистра) по справочнику в памяти;
+     * внутри транзакции справочник не используется, и врач ищется запросом по индексу idx_doctors_name_norm.
      * @param lastName Фамилия врача.
      * @param firstName Имя врача.
      * @param middleName Отчество врача.
      * @return Объект Doctor, если найден и ФИО совпадает, иначе null.
      */
     public Doctor loginDoctor(String lastName, String firstName, String middleName) {
-        String sql = "SELECT * FROM Doctors WHERE LOWER(lastName) = LOWER(?) AND LOWER(firstName) = LOWER(?) AND LOWER(middleName) = LOWER(?)";
+        try {
+            if (isInTransaction()) {
+                return queryDoctorByName(lastName, firstName, middleName);
+            }
+            return doctorDirectory.findByName(lastName, firstName, middleName);
+        } catch (SQLException e) {
+            System.err.println("Ошибка при входе врача: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private Doctor queryDoctorByName(String lastName, String firstName, String middleName) throws SQLException {
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(DOCTOR_BY_NAME_SQL)) {
             pstmt.setString(1, lastName);
             pstmt.setString(2, firstName);
             pstmt.setString(3, middleName);
@@ -564,13 +1022,32 @@ public class DatabaseManager {
                     );
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Ошибка при входе врача: " + e.getMessage());
-            e.printStackTrace();
         }
         return null;
     }
 
+    public void setSlotChangeListener(SlotChangeListener listener) {
+        this.slotChangeListener = listener;
+    }
+
+    /**
+     * Отмечает слот занятым в индексе и сообщает об изменении. Вызывается после фиксации.
+     */
+    private void slotOccupied(int doctorId, LocalDate date, LocalTime time) {
+        slotIndex.markOccupied(doctorId, date, time);
+        listVersions.appointmentsChanged(doctorId, date);
+        slotChangeListener.slotsChanged(doctorId, date);
+    }
+
+    /**
+     * Отмечает слот свободным в индексе и сообщает об изменении. Вызывается после фиксации.
+     */
+    private void slotFreed(int doctorId, LocalDate date, LocalTime time) {
+        slotIndex.markFree(doctorId, date, time);
+        listVersions.appointmentsChanged(doctorId, date);
+        slotChangeListener.slotsChanged(doctorId, date);
+    }
+
     /**
      * Добавляет новую запись на прием в базу данных.
      * @param appointment Объект Appointment для добавления.
@@ -578,24 +1055,34 @@ public class DatabaseManager {
      */
     public Appointment addAppointment(Appointment appointment) {
         String sql = "INSERT INTO Appointments (patientId, doctorId, appointmentDate, appointmentTime, status) VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setInt(1, appointment.getPatientId());
-            pstmt.setInt(2, appointment.getDoctorId());
-            pstmt.setDate(3, Date.valueOf(appointment.getAppointmentDate()));
-            pstmt.setTime(4, Time.valueOf(appointment.getAppointmentTime()));
-            pstmt.setString(5, appointment.getStatus());
-            int affectedRows = pstmt.executeUpdate();
-
-            if (affectedRows > 0) {
-                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        appointment.setId(generatedKeys.getInt(1));
-                        System.out.println("Запись на прием добавлена: " + appointment);
-                        return appointment;
+        try {
+            return inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setInt(1, appointment.getPatientId());
+                    pstmt.setInt(2, appointment.getDoctorId());
+                    pstmt.setDate(3, Date.valueOf(appointment.getAppointmentDate()));
+                    pstmt.setTime(4, Time.valueOf(appointment.getAppointmentTime()));
+                    pstmt.setString(5, appointment.getStatus());
+                    int affectedRows = pstmt.executeUpdate();
+
+                    if (affectedRows > 0) {
+                        try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                            if (generatedKeys.next()) {
+                                appointment.setId(generatedKeys.getInt(1));
+                                System.out.println("Запись на прием добавлена: " + appointment);
+                                recordChange(ChangeLog.APPOINTMENT, appointment.getId(), ChangeLog.INSERT);
+                                if (!Appointment.STATUS_CANCELLED.equals(appointment.getStatus())) {
+                                    afterCommit(() -> slotOccupied(appointment.getDoctorId(),
+                                            appointment.getAppointmentDate(), appointment.getAppointmentTime()));
+                                }
+                                return appointment;
+                            }
+                        }
                     }
                 }
-            }
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println("Ошибка при добавлении записи на прием: " + e.getMessage());
             // Проверка на UNIQUE-конфликт (если слот уже занят)
@@ -607,15 +1094,583 @@ public class DatabaseManager {
         return null;
     }
 
+    /**
+     * Атомарно записывает пациента на прием, если врач принимает в это время и слот свободен.
+     * Проверка и вставка выполняются одним условным INSERT под блокировкой дня врача,
+     * поэтому из двух одновременных записей на один слот проходит ровно одна,
+     * а вторая сразу получает SLOT_TAKEN без лишних запросов. Отмененные записи слот не занимают.
+     * @param appointment Объект Appointment для добавления.
+     * @return Результат записи; при успехе содержит запись с присвоенным ID.
+     */
+    public BookingResult bookAppointment(Appointment appointment) {
+        String sql = "INSERT INTO Appointments (patientId, doctorId, appointmentDate, appointmentTime, status) " +
+                "SELECT ?, ?, ?, ?, ? WHERE NOT EXISTS (" +
+                "SELECT 1 FROM Appointments WHERE activeDoctorId = ? AND appointmentDate = ? AND appointmentTime = ?)";
+        Date date = Date.valueOf(appointment.getAppointmentDate());
+        Time time = Time.valueOf(appointment.getAppointmentTime());
+        LocalTime start = appointment.getAppointmentTime();
+        // Только начало слота: время внутри слота (08:15) не совпало бы с занятым 08:00 в уникальном ключе
+        if (!SlotGrid.isBoundary(start) || start.equals(SlotGrid.WORK_END)) {
+            return BookingResult.outsideWorkingHours();
+        }
+        int slot = SlotGrid.indexOf(start);
+        try {
+            if ((workingHours.getWorkingMask(appointment.getDoctorId(), appointment.getAppointmentDate()) & (1L << slot)) == 0) {
+                return BookingResult.outsideWorkingHours();
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при проверке часов приема: " + e.getMessage());
+            e.printStackTrace();
+            return BookingResult.failed();
+        }
+        ReentrantLock lock = bookingLocks.forHash(31 * appointment.getDoctorId() + appointment.getAppointmentDate().hashCode());
+        lock.lock();
+        try {
+            return inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setInt(1, appointment.getPatientId());
+                    pstmt.setInt(2, appointment.getDoctorId());
+                    pstmt.setDate(3, date);
+                    pstmt.setTime(4, time);
+                    pstmt.setString(5, appointment.getStatus() != null ? appointment.getStatus() : Appointment.STATUS_SCHEDULED);
+                    pstmt.setInt(6, appointment.getDoctorId());
+                    pstmt.setDate(7, date);
+                    pstmt.setTime(8, time);
+                    if (pstmt.executeUpdate() == 0) {
+                        return BookingResult.slotTaken();
+                    }
+                    try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            appointment.setId(generatedKeys.getInt(1));
+                            System.out.println("Запись на прием добавлена: " + appointment);
+                            recordChange(ChangeLog.APPOINTMENT, appointment.getId(), ChangeLog.INSERT);
+                            afterCommit(() -> slotOccupied(appointment.getDoctorId(),
+                                    appointment.getAppointmentDate(), appointment.getAppointmentTime()));
+                            return BookingResult.booked(appointment);
+                        }
+                    }
+                }
+                return BookingResult.failed();
+            });
+        } catch (SQLException e) {
+            // Слот мог занять другой процесс или незафиксированная транзакция пакета
+            if ("23505".equals(e.getSQLState())) {
+                return BookingResult.slotTaken();
+            }
+            System.err.println("Ошибка при записи на прием: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+        return BookingResult.failed();
+    }
+
+    /**
+     * Возвращает свободные слоты врачей за диапазон дат: часы приема без занятых слотов.
+     * @param query Врачи (пустой список — все врачи) и диапазон дат.
+     * @return Список масок свободных слотов по врачам и дням, или null в случае ошибки.
+     */
+    public List<FreeSlots> getFreeSlots(FreeSlotsQuery query) {
+        List<Integer> doctorIds = query.getDoctorIds();
+        evictPastDays();
+        List<FreeSlots> result = new ArrayList<>();
+        try {
+            if (doctorIds.isEmpty()) {
+                doctorIds = new ArrayList<>();
+                for (Doctor doctor : doctorDirectory.getAll()) {
+                    doctorIds.add(doctor.getId());
+                }
+            }
+            List<Map<Integer, Long>> days = slotIndex.getOccupiedRange(query.getFromDate(), query.getToDate());
+            LocalDate date = query.getFromDate();
+            for (Map<Integer, Long> occupied : days) {
+                for (int doctorId : doctorIds) {
+                    long free = workingHours.getWorkingMask(doctorId, date) & ~occupied.getOrDefault(doctorId, 0L);
+                    result.add(new FreeSlots(doctorId, date, free));
+                }
+                date = date.plusDays(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении свободных слотов: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает занятость слотов врачей за диапазон дат: недостающие в индексе занятости дни
+     * читаются из базы одним запросом по диапазону, а не отдельным запросом на каждый день.
+     * @param query Врачи (пустой список — все врачи) и диапазон дат.
+     * @return Маски занятых слотов по дням и врачам, или null в случае ошибки.
+     */
+    public ScheduleRange getScheduleRange(FreeSlotsQuery query) {
+        try {
+            List<Doctor> doctors = resolveDoctors(query.getDoctorIds());
+            evictPastDays();
+            List<Map<Integer, Long>> days = slotIndex.getOccupiedRange(query.getFromDate(), query.getToDate());
+            long[] masks = new long[days.size() * doctors.size()];
+            long[] working = new long[masks.length];
+            int index = 0;
+            LocalDate date = query.getFromDate();
+            for (Map<Integer, Long> occupied : days) {
+                for (Doctor doctor : doctors) {
+                    masks[index] = occupied.getOrDefault(doctor.getId(), 0L);
+                    working[index++] = workingHours.getWorkingMask(doctor.getId(), date);
+                }
+                date = date.plusDays(1);
+            }
+            return new ScheduleRange(query.getFromDate(), query.getToDate(), doctors, masks, working);
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении расписания за период: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Ищет ближайшие свободные слоты врачей указанной специальности.
+     * Прошедшие дни и уже начавшиеся сегодня слоты не предлагаются.
+     * @param query Специальность, начальная дата, горизонт поиска в днях и число слотов.
+     * @return Найденные слоты, сгруппированные по врачу и дню в порядке времени, или null в случае ошибки.
+     */
+    public List<FreeSlots> findEarliestSlots(EarliestSlotsQuery query) {
+        LocalDate today = LocalDate.now();
+        LocalDate fromDate = query.getFromDate().isBefore(today) ? today : query.getFromDate();
+        int horizonDays = query.getHorizonDays() - (int) ChronoUnit.DAYS.between(query.getFromDate(), fromDate);
+        if (horizonDays <= 0) {
+            return new ArrayList<>();
+        }
+        long firstDayMask = fromDate.equals(today) ? SlotGrid.slotsStartingAfter(LocalTime.now()) : SlotGrid.ALL_SLOTS;
+        try {
+            List<Integer> doctorIds = new ArrayList<>();
+            for (Doctor doctor : doctorDirectory.findBySpecialty(query.getSpecialty())) {
+                doctorIds.add(doctor.getId());
+            }
+            evictPastDays();
+            return new EarliestSlotSearch(slotIndex, workingHours, fromDate, horizonDays, firstDayMask).find(doctorIds, query.getLimit());
+        } catch (SQLException e) {
+            System.err.println("Ошибка при поиске ближайших свободных слотов: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает маски занятых слотов всех врачей на день из индекса занятости.
+     * @param date Дата.
+     * @return Маски по ID врача (врачи без записей отсутствуют), или null в случае ошибки.
+     */
+    public Map<Integer, Long> getOccupiedSlots(LocalDate date) {
+        try {
+            return slotIndex.getOccupied(date);
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении занятости слотов: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Собирает строки пациентов, врачей и записей, изменившиеся после версии клиента.
+     * Строки передаются в текущем виде, поэтому несколько изменений одной строки дают одну строку;
+     * строка, которой уже нет в базе, передается как удаленная.
+     * @param sinceVersion Версия из предыдущего ответа (0 — данных у клиента нет).
+     * @return Изменения (resyncRequired, если клиенту нужно загрузить данные заново), или null в случае ошибки.
+     */
+    public ChangeSet getChangesSince(long sinceVersion) {
+        try {
+            return withSharedConnection(() -> {
+                Connection conn = boundConnection.get();
+                ChangeLog.Changes changes = changeLog.read(conn, sinceVersion, MAX_CHANGED_ROWS);
+                if (changes.resyncRequired) {
+                    return ChangeSet.resync(changes.version);
+                }
+                // Строки читаются после версии: они могут включать и более поздние изменения,
+                // которые клиент получит повторно со следующей версией
+                List<Patient> patients = loadPatientsByIds(conn, changes.patientIds);
+                List<Doctor> doctors = loadDoctorsByIds(conn, changes.doctorIds);
+                List<Appointment> appointments = loadAppointmentsByIds(conn, changes.appointmentIds);
+                return new ChangeSet(changes.version, false, patients, doctors, appointments,
+                        missingIds(changes.patientIds, patients, Patient::getId),
+                        missingIds(changes.appointmentIds, appointments, Appointment::getId));
+            });
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении изменений: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static PreparedStatement prepareByIds(Connection conn, String table, Set<Integer> ids) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM " + table + " WHERE id = ANY(?) ORDER BY id");
+        pstmt.setArray(1, conn.createArrayOf("INTEGER", ids.toArray()));
+        return pstmt;
+    }
+
+    private static List<Patient> loadPatientsByIds(Connection conn, Set<Integer> ids) throws SQLException {
+        List<Patient> patients = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return patients;
+        }
+        try (PreparedStatement pstmt = prepareByIds(conn, "Patients", ids);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                patients.add(new Patient(
+                        rs.getInt("id"),
+                        rs.getString("lastName"),
+                        rs.getString("firstName"),
+                        rs.getString("middleName"),
+                        rs.getDate("dateOfBirth") != null ? rs.getDate("dateOfBirth").toLocalDate() : null,
+                        rs.getString("address"),
+                        rs.getString("phone"),
+                        rs.getString("policyNumber")
+                ));
+            }
+        }
+        return patients;
+    }
+
+    private static List<Doctor> loadDoctorsByIds(Connection conn, Set<Integer> ids) throws SQLException {
+        List<Doctor> doctors = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return doctors;
+        }
+        try (PreparedStatement pstmt = prepareByIds(conn, "Doctors", ids);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                doctors.add(new Doctor(
+                        rs.getInt("id"),
+                        rs.getString("lastName"),
+                        rs.getString("firstName"),
+                        rs.getString("middleName"),
+                        rs.getString("specialty"),
+                        rs.getString("officeNumber")
+                ));
+            }
+        }
+        return doctors;
+    }
+
+    private static List<Appointment> loadAppointmentsByIds(Connection conn, Set<Integer> ids) throws SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return appointments;
+        }
+        try (PreparedStatement pstmt = prepareByIds(conn, "Appointments", ids);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                appointments.add(new Appointment(
+                        rs.getInt("id"),
+                        rs.getInt("patientId"),
+                        rs.getInt("doctorId"),
+                        rs.getDate("appointmentDate").toLocalDate(),
+                        rs.getTime("appointmentTime").toLocalTime(),
+                        rs.getString("status")
+                ));
+            }
+        }
+        return appointments;
+    }
+
+    private static <T> List<Integer> missingIds(Set<Integer> ids, List<T> found, Function<T, Integer> idOf) {
+        Set<Integer> remaining = new LinkedHashSet<>(ids);
+        for (T row : found) {
+            remaining.remove(idOf.apply(row));
+        }
+        return new ArrayList<>(remaining);
+    }
+
+    /**
+     * Собирает расписание на день за один запрос: врачей, маски занятых слотов из индекса занятости
+     * и записи смотрящего. Чужие записи передаются только как занятые биты маски, без ID пациентов.
+     * @param query Дата, врачи (пустой список — все врачи) и смотрящий.
+     * @return Расписание или null в случае ошибки.
+     */
+    public ScheduleView getScheduleView(ScheduleViewQuery query) {
+        LocalDate date = query.getDate();
+        try {
+            List<Doctor> doctors = resolveDoctors(query.getDoctorIds());
+            evictPastDays();
+            Map<Integer, Long> occupied = slotIndex.getOccupied(date);
+            long[] masks = new long[doctors.size()];
+            long[] working = new long[doctors.size()];
+            for (int i = 0; i < doctors.size(); i++) {
+                masks[i] = occupied.getOrDefault(doctors.get(i).getId(), 0L);
+                working[i] = workingHours.getWorkingMask(doctors.get(i).getId(), date);
+            }
+
+            List<Appointment> appointments = new ArrayList<>();
+            List<Patient> patients = new ArrayList<>();
+            if (query.getViewerDoctorId() > 0) {
+                appointments = getAppointmentsByDoctorAndDate(query.getViewerDoctorId(), date);
+                if (appointments == null) {
+                    return null;
+                }
+                Set<Integer> seen = new HashSet<>();
+                for (Appointment appointment : appointments) {
+                    if (seen.add(appointment.getPatientId())) {
+                        Patient patient = getPatientById(appointment.getPatientId());
+                        if (patient != null) {
+                            patients.add(patient);
+                        }
+                    }
+                }
+            } else if (query.getViewerPatientId() > 0) {
+                appointments = loadPatientAppointmentsOnDate(query.getViewerPatientId(), date);
+            }
+            return new ScheduleView(date, doctors, masks, working, appointments, patients);
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении расписания на дату: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Врачи из справочника по списку ID (пустой список — все врачи); несуществующие ID пропускаются.
+     */
+    private List<Doctor> resolveDoctors(List<Integer> doctorIds) throws SQLException {
+        if (doctorIds.isEmpty()) {
+            return new ArrayList<>(doctorDirectory.getAll());
+        }
+        List<Doctor> doctors = new ArrayList<>();
+        for (int doctorId : doctorIds) {
+            Doctor doctor = doctorDirectory.getById(doctorId);
+            if (doctor != null) {
+                doctors.add(doctor);
+            }
+        }
+        return doctors;
+    }
+
+    /**
+     * Загружает действующие записи пациента на день.
+     */
+    private List<Appointment> loadPatientAppointmentsOnDate(int patientId, LocalDate date) throws SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+        String sql = "SELECT * FROM Appointments WHERE patientId = ? AND appointmentDate = ? AND activeDoctorId IS NOT NULL ORDER BY appointmentTime";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, patientId);
+            pstmt.setDate(2, Date.valueOf(date));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    appointments.add(new Appointment(
+                            rs.getInt("id"),
+                            rs.getInt("patientId"),
+                            rs.getInt("doctorId"),
+                            rs.getDate("appointmentDate").toLocalDate(),
+                            rs.getTime("appointmentTime").toLocalTime(),
+                            rs.getString("status")
+                    ));
+                }
+            }
+        }
+        return appointments;
+    }
+
+    /**
+     * Удаляет из индексов в памяти прошедшие дни.
+     */
+    private void evictPastDays() {
+        LocalDate today = LocalDate.now();
+        slotIndex.evictBefore(today);
+        workingHours.evictBefore(today);
+        listVersions.evictBefore(today);
+    }
+
+    /**
+     * Вычисляет маски часов приема всех врачей на неделю: шаблон недели, поверх которого
+     * наложены исключения этой недели (загрузчик часов приема).
+     */
+    private Map<Integer, long[]> loadWorkingWeek(LocalDate monday) throws SQLException {
+        Map<Integer, long[]> week = new HashMap<>();
+        try (Connection conn = getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM DoctorWorkingHours");
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    week.computeIfAbsent(rs.getInt("doctorId"), id -> new long[7])[rs.getInt("dayOfWeek") - 1] =
+                            SlotGrid.rangeMask(rs.getTime("startTime").toLocalTime(), rs.getTime("endTime").toLocalTime());
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT * FROM DoctorScheduleExceptions WHERE exceptionDate BETWEEN ? AND ?")) {
+                pstmt.setDate(1, Date.valueOf(monday));
+                pstmt.setDate(2, Date.valueOf(monday.plusDays(6)));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        WorkingHours exception = readScheduleException(rs);
+                        // Врач без шаблона в остальные дни принимает весь рабочий день
+                        long[] days = week.computeIfAbsent(exception.getDoctorId(), id -> {
+                            long[] all = new long[7];
+                            Arrays.fill(all, SlotGrid.ALL_SLOTS);
+                            return all;
+                        });
+                        days[exception.getDate().getDayOfWeek().getValue() - 1] = exception.toSlotMask();
+                    }
+                }
+            }
+        }
+        return week;
+    }
+
+    private static WorkingHours readScheduleException(ResultSet rs) throws SQLException {
+        Time start = rs.getTime("startTime");
+        Time end = rs.getTime("endTime");
+        return WorkingHours.onDate(rs.getInt("doctorId"), rs.getDate("exceptionDate").toLocalDate(),
+                start != null ? start.toLocalTime() : null, end != null ? end.toLocalTime() : null);
+    }
+
+    /**
+     * Получает часы приема врача: строки недельного шаблона и исключения начиная с сегодняшнего дня.
+     * @param doctorId ID врача.
+     * @return Строки шаблона по дням недели, затем исключения по датам; null в случае ошибки.
+     */
+    public List<WorkingHours> getWorkingHours(int doctorId) {
+        List<WorkingHours> result = new ArrayList<>();
+        try (Connection conn = getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT * FROM DoctorWorkingHours WHERE doctorId = ? ORDER BY dayOfWeek")) {
+                pstmt.setInt(1, doctorId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(WorkingHours.weekly(doctorId, DayOfWeek.of(rs.getInt("dayOfWeek")),
+                                rs.getTime("startTime").toLocalTime(), rs.getTime("endTime").toLocalTime()));
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT * FROM DoctorScheduleExceptions WHERE doctorId = ? AND exceptionDate >= ? ORDER BY exceptionDate")) {
+                pstmt.setInt(1, doctorId);
+                pstmt.setDate(2, Date.valueOf(LocalDate.now()));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(readScheduleException(rs));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении часов приема врача: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Задает строку недельного шаблона или исключение (заменяя прежнее значение).
+     * Уже существующие записи на прием не отменяются, даже если выпадают из новых часов.
+     * @param hours Часы приема.
+     * @return true, если часы приема сохранены.
+     */
+    public boolean setWorkingHours(WorkingHours hours) {
+        String sql = hours.isException()
+                ? "MERGE INTO DoctorScheduleExceptions (doctorId, exceptionDate, startTime, endTime) KEY (doctorId, exceptionDate) VALUES (?, ?, ?, ?)"
+                : "MERGE INTO DoctorWorkingHours (doctorId, dayOfWeek, startTime, endTime) KEY (doctorId, dayOfWeek) VALUES (?, ?, ?, ?)";
+        try {
+            return inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, hours.getDoctorId());
+                    if (hours.isException()) {
+                        pstmt.setDate(2, Date.valueOf(hours.getDate()));
+                    } else {
+                        pstmt.setInt(2, hours.getDayOfWeek().getValue());
+                    }
+                    pstmt.setTime(3, hours.isDayOff() ? null : Time.valueOf(hours.getStartTime()));
+                    pstmt.setTime(4, hours.isDayOff() ? null : Time.valueOf(hours.getEndTime()));
+                    pstmt.executeUpdate();
+                    System.out.println("Часы приема сохранены: " + hours);
+                    recordChange(ChangeLog.DOCTOR, hours.getDoctorId(), ChangeLog.UPDATE); // Часы приема — данные врача
+                    afterCommit(() -> invalidateWorkingHours(hours));
+                    return true;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Ошибка при сохранении часов приема: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет строку недельного шаблона (день становится выходным) или исключение (дата снова
+     * следует шаблону).
+     * @param hours Часы приема: учитываются только врач и день недели или дата.
+     * @return true, если строка удалена.
+     */
+    public boolean deleteWorkingHours(WorkingHours hours) {
+        String sql = hours.isException()
+                ? "DELETE FROM DoctorScheduleExceptions WHERE doctorId = ? AND exceptionDate = ?"
+                : "DELETE FROM DoctorWorkingHours WHERE doctorId = ? AND dayOfWeek = ?";
+        try {
+            return inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, hours.getDoctorId());
+                    if (hours.isException()) {
+                        pstmt.setDate(2, Date.valueOf(hours.getDate()));
+                    } else {
+                        pstmt.setInt(2, hours.getDayOfWeek().getValue());
+                    }
+                    if (pstmt.executeUpdate() > 0) {
+                        recordChange(ChangeLog.DOCTOR, hours.getDoctorId(), ChangeLog.UPDATE);
+                        afterCommit(() -> invalidateWorkingHours(hours));
+                        return true;
+                    }
+                }
+                return false;
+            });
+        } catch (SQLException e) {
+            System.err.println("Ошибка при удалении часов приема: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private void invalidateWorkingHours(WorkingHours hours) {
+        if (hours.isException()) {
+            workingHours.invalidateWeek(hours.getDate());
+        } else {
+            workingHours.invalidateAll();
+        }
+    }
+
+    /**
+     * Загружает маски занятых слотов всех врачей за диапазон дат одним проходом
+     * по индексу (appointmentDate, activeDoctorId, appointmentTime) (загрузчик индекса занятости).
+     */
+    private Map<LocalDate, Map<Integer, Long>> loadOccupiedSlots(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        Map<LocalDate, Map<Integer, Long>> masks = new HashMap<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(OCCUPIED_SLOTS_SQL)) {
+            pstmt.setDate(1, Date.valueOf(fromDate));
+            pstmt.setDate(2, Date.valueOf(toDate));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int slot = SlotGrid.indexOf(rs.getTime("appointmentTime").toLocalTime());
+                    if (slot >= 0) {
+                        masks.computeIfAbsent(rs.getDate("appointmentDate").toLocalDate(), date -> new HashMap<>())
+                                .merge(rs.getInt("activeDoctorId"), 1L << slot, (a, b) -> a | b);
+                    }
+                }
+            }
+        }
+        return masks;
+    }
+
     /**
      * Проверяет, занят ли слот приема для конкретного врача на определенную дату и время.
+     * Отмененные записи слот не занимают.
      * @param doctorId ID врача.
      * @param date Дата приема.
      * @param time Время приема.
      * @return true, если слот занят, иначе false.
      */
     public boolean isAppointmentSlotTaken(int doctorId, LocalDate date, LocalTime time) {
-        String sql = "SELECT COUNT(*) FROM Appointments WHERE doctorId = ? AND appointmentDate = ? AND appointmentTime = ?";
+        String sql = "SELECT COUNT(*) FROM Appointments WHERE activeDoctorId = ? AND appointmentDate = ? AND appointmentTime = ?";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, doctorId);
@@ -634,14 +1689,14 @@ public class DatabaseManager {
     }
 
     /**
-     * Получает записи на прием для конкретного врача на определенную дату.
+     * Получает действующие (не отмененные) записи на прием для конкретного врача на определенную дату.
      * @param doctorId ID врача.
      * @param date Дата приема.
-     * @return Список объектов Appointment.
+     * @return Список объектов Appointment, или null в случае ошибки.
      */
     public List<Appointment> getAppointmentsByDoctorAndDate(int doctorId, LocalDate date) {
         List<Appointment> appointments = new ArrayList<>();
-        String sql = "SELECT * FROM Appointments WHERE doctorId = ? AND appointmentDate = ? ORDER BY appointmentTime";
+        String sql = "SELECT * FROM Appointments WHERE activeDoctorId = ? AND appointmentDate = ? ORDER BY appointmentTime";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, doctorId);
@@ -661,20 +1716,20 @@ public class DatabaseManager {
         } catch (SQLException e) {
             System.err.println("Ошибка при получении записей для врача и даты: " + e.getMessage());
             e.printStackTrace();
+            return null;
         }
         return appointments;
     }
 
     /**
-     * Получает все записи на прием для указанной даты (для всех врачей).
+     * Получает все действующие (не отмененные) записи на прием для указанной даты (для всех врачей).
      * @param date Дата, для которой нужно получить расписание.
-     * @return Список объектов Appointment.
+     * @return Список объектов Appointment, или null в случае ошибки.
      */
     public List<Appointment> getAppointmentsByDate(LocalDate date) {
         List<Appointment> appointments = new ArrayList<>();
-        String sql = "SELECT * FROM Appointments WHERE appointmentDate = ? ORDER BY doctorId, appointmentTime";
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(APPOINTMENTS_BY_DATE_SQL)) {
             pstmt.setDate(1, Date.valueOf(date));
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -691,6 +1746,7 @@ public class DatabaseManager {
         } catch (SQLException e) {
             System.err.println("Ошибка при получении полного расписания на дату: " + e.getMessage());
             e.printStackTrace();
+            return null;
         }
         return appointments;
     }
@@ -701,15 +1757,31 @@ public class DatabaseManager {
      * @return true, если отмена прошла успешно, иначе false.
      */
     public boolean cancelAppointment(int appointmentId) {
-        String sql = "UPDATE Appointments SET status = 'Отменено' WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, appointmentId);
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                System.out.println("Запись на прием с ID " + appointmentId + " отменена.");
-                return true;
-            }
+        // OLD TABLE возвращает строку до изменения: слот освобождается, только если запись была действующей
+        String sql = "SELECT doctorId, appointmentDate, appointmentTime, status FROM OLD TABLE (" +
+                "UPDATE Appointments SET status = ? WHERE id = ?)";
+        try {
+            return inTransaction(() -> {
+                try (Connection conn = getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, Appointment.STATUS_CANCELLED);
+                    pstmt.setInt(2, appointmentId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            if (!Appointment.STATUS_CANCELLED.equals(rs.getString("status"))) {
+                                recordChange(ChangeLog.APPOINTMENT, appointmentId, ChangeLog.CANCEL);
+                                int doctorId = rs.getInt("doctorId");
+                                LocalDate date = rs.getDate("appointmentDate").toLocalDate();
+                                LocalTime time = rs.getTime("appointmentTime").toLocalTime();
+                                afterCommit(() -> slotFreed(doctorId, date, time));
+                            }
+                            System.out.println("Запись на прием с ID " + appointmentId + " отменена.");
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            });
         } catch (SQLException e) {
             System.err.println("Ошибка при отмене записи на прием: " + e.getMessage());
             e.printStackTrace();
@@ -724,9 +1796,8 @@ public class DatabaseManager {
      */
     public List<Appointment> getPatientAppointmentHistory(int patientId) {
         List<Appointment> appointments = new ArrayList<>();
-        String sql = "SELECT * FROM Appointments WHERE patientId = ? ORDER BY appointmentDate DESC, appointmentTime DESC";
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(PATIENT_APPOINTMENTS_SQL)) {
             pstmt.setInt(1, patientId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -746,4 +1817,60 @@ public class DatabaseManager {
         }
         return appointments;
     }
+
+    /**
+     * Получает страницу истории записей пациента от новых к старым.
+     * Страница выбирается по курсору (дата, время, ID) и читается из составного индекса
+     * idx_appointments_patient_history без сортировки, поэтому первая страница стоит одинаково
+     * для пациента с пятью записями и с пятью тысячами.
+     * @param request Пациент, курсор и размер страницы.
+     * @return Страница записей или null при ошибке базы данных.
+     */
+    public Page<Appointment> getPatientHistoryPage(HistoryPageRequest request) {
+        int limit = request.getLimit() + 1; // Лишний элемент показывает, есть ли следующая страница
+        List<Appointment> appointments = new ArrayList<>(limit);
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(historyPageSql(request.isFirstPage()))) {
+            int index = 1;
+            pstmt.setInt(index++, request.getPatientId());
+            if (!request.isFirstPage()) {
+                pstmt.setDate(index++, Date.valueOf(request.getBeforeDate()));
+                pstmt.setTime(index++, Time.valueOf(request.getBeforeTime()));
+                pstmt.setInt(index++, request.getBeforeId());
+            }
+            pstmt.setInt(index, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    appointments.add(new Appointment(
+                            rs.getInt("id"),
+                            rs.getInt("patientId"),
+                            rs.getInt("doctorId"),
+                            rs.getDate("appointmentDate").toLocalDate(),
+                            rs.getTime("appointmentTime").toLocalTime(),
+                            rs.getString("status")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при получении страницы истории записей пациента: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        boolean hasMore = appointments.size() == limit;
+        if (hasMore) {
+            appointments.remove(appointments.size() - 1);
+        }
+        return new Page<>(appointments, hasMore);
+    }
+
+    /**
+     * Запрос страницы истории записей пациента: первая страница или страница после курсора.
+     * Без подсказки H2 при подготовке запроса может выбрать индекс только по patientId и сортировать
+     * всю историю; patientId в ORDER BY нужен, чтобы H2 распознал порядок составного индекса.
+     */
+    static String historyPageSql(boolean firstPage) {
+        return "SELECT * FROM Appointments USE INDEX (idx_appointments_patient_history) WHERE patientId = ?" +
+                (firstPage ? "" : " AND (appointmentDate, appointmentTime, id) < (?, ?, ?)") +
+                " ORDER BY patientId, appointmentDate DESC, appointmentTime DESC, id DESC LIMIT ?";
+    }
 }
@@ -0,0 +1,164 @@
+package com.server;
+
+import com.common.model.Doctor;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Справочник врачей в памяти с чтением через кэш.
+ * Хранит неизменяемый снимок всех врачей с индексами по ID и по ФИО; снимок загружается
+ * одним запросом при первом обращении и сбрасывается целиком при любом изменении врачей.
+ * Читатели никогда не видят частично обновленный справочник.
+ * Внутри транзакции справочник читается из базы в обход кэша, чтобы транзакция видела
+ * собственные незафиксированные изменения, а остальные потоки — не видели их.
+ */
+public class DoctorDirectory {
+
+    /**
+     * Загружает всех врачей из базы данных.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        List<Doctor> load() throws SQLException;
+    }
+
+    /**
+     * Неизменяемый снимок справочника.
+     */
+    private static class Snapshot {
+        private final List<Doctor> doctors;
+        private final Map<Integer, Doctor> byId = new HashMap<>();
+        private final Map<String, Doctor> byName = new HashMap<>();
+        private final Map<String, List<Doctor>> bySpecialty = new HashMap<>();
+
+        Snapshot(List<Doctor> doctors) {
+            this.doctors = Collections.unmodifiableList(new ArrayList<>(doctors));
+            for (Doctor doctor : doctors) {
+                byId.put(doctor.getId(), doctor);
+                if (doctor.getSpecialty() != null) {
+                    bySpecialty.computeIfAbsent(specialtyKey(doctor.getSpecialty()), key -> new ArrayList<>()).add(doctor);
+                }
+                String key = Names.fullNameKey(doctor.getLastName(), doctor.getFirstName(), doctor.getMiddleName());
+                if (key != null) {
+                    byName.putIfAbsent(key, doctor); // Как и запрос к базе, вход находит первого врача с таким ФИО
+                }
+            }
+        }
+    }
+
+    private final Loader loader;
+    private final BooleanSupplier bypassCache;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    // Увеличивается при каждом сбросе; снимок, загруженный до сброса, не публикуется
+    private final AtomicLong generation = new AtomicLong();
+
+    // Метрики
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param loader Загрузчик врачей из базы данных.
+     * @param bypassCache Возвращает true, если текущий поток должен читать из базы в обход кэша.
+     */
+    public DoctorDirectory(Loader loader, BooleanSupplier bypassCache) {
+        this.loader = loader;
+        this.bypassCache = bypassCache;
+    }
+
+    /**
+     * @return Все врачи в порядке ID (неизменяемый список).
+     * @throws SQLException Если справочник не удалось загрузить.
+     */
+    public List<Doctor> getAll() throws SQLException {
+        return current().doctors;
+    }
+
+    /**
+     * @param doctorId ID врача.
+     * @return Врач или null, если не найден.
+     * @throws SQLException Если справочник не удалось загрузить.
+     */
+    public Doctor getById(int doctorId) throws SQLException {
+        return current().byId.get(doctorId);
+    }
+
+    /**
+     * Ищет врача по ФИО без учета регистра.
+     * @return Врач или null, если не найден.
+     * @throws SQLException Если справочник не удалось загрузить.
+     */
+    public Doctor findByName(String lastName, String firstName, String middleName) throws SQLException {
+        String key = Names.fullNameKey(lastName, firstName, middleName);
+        return key != null ? current().byName.get(key) : null;
+    }
+
+    /**
+     * Ищет врачей по специальности без учета регистра.
+     * @return Врачи в порядке ID (пустой список, если таких нет).
+     * @throws SQLException Если справочник не удалось загрузить.
+     */
+    public List<Doctor> findBySpecialty(String specialty) throws SQLException {
+        if (specialty == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(current().bySpecialty.getOrDefault(specialtyKey(specialty), Collections.emptyList()));
+    }
+
+    private static String specialtyKey(String specialty) {
+        return specialty.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Сбрасывает справочник; следующее обращение загрузит его заново.
+     * Вызывается после фиксации любого изменения врачей.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+        invalidations.incrementAndGet();
+    }
+
+    private Snapshot current() throws SQLException {
+        if (bypassCache.getAsBoolean()) {
+            return new Snapshot(loader.load());
+        }
+        Snapshot loaded = snapshot.get();
+        if (loaded != null) {
+            hits.incrementAndGet();
+            return loaded;
+        }
+        misses.incrementAndGet();
+        long before = generation.get();
+        loaded = new Snapshot(loader.load());
+        if (generation.get() == before) {
+            snapshot.compareAndSet(null, loaded);
+            if (generation.get() != before) {
+                snapshot.compareAndSet(loaded, null); // Сброс произошел во время публикации
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @return Снимок метрик справочника.
+     */
+    public String getMetrics() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return "Справочник врачей{попаданий=" + hitCount +
+                ", загрузок=" + misses.get() +
+                ", сбросов=" + invalidations.get() +
+                ", доля попаданий=" + (total == 0 ? 0 : hitCount * 100 / total) + "%" +
+                '}';
+    }
+}
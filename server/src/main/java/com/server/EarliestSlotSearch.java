@@ -0,0 +1,139 @@
+package com.server;
+
+import com.common.model.FreeSlots;
+import com.common.model.SlotGrid;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Поиск ближайших свободных слотов у группы врачей.
+ * Свободные слоты приема каждого врача образуют упорядоченный по времени поток (день за днем, слот за слотом);
+ * очередь с приоритетом хранит по одному текущему слоту на врача и сливает потоки,
+ * выдавая слоты в порядке (дата, время, ID врача). Поиск останавливается, как только найдено
+ * нужное число слотов, поэтому загружаются только дни до последнего найденного слота —
+ * порциями по CHUNK_DAYS дней через индекс занятости.
+ */
+class EarliestSlotSearch {
+    private static final int CHUNK_DAYS = 7; // Дней за одно обращение к индексу занятости
+
+    private final SlotAvailabilityIndex slotIndex;
+    private final WorkingHoursIndex workingHours;
+    private final LocalDate fromDate;
+    private final int horizonDays;
+    private final long firstDayMask; // Слоты первого дня, которые еще не прошли
+    private final List<Map<Integer, Long>> days = new ArrayList<>(); // Загруженные дни от fromDate
+
+    /**
+     * Текущий слот одного врача.
+     */
+    private static class Cursor {
+        final int doctorId;
+        int day; // Номер дня от fromDate
+        long freeMask; // Оставшиеся свободные слоты этого дня; младший бит — текущий слот
+
+        Cursor(int doctorId) {
+            this.doctorId = doctorId;
+        }
+
+        int slot() {
+            return Long.numberOfTrailingZeros(freeMask);
+        }
+    }
+
+    /**
+     * @param slotIndex Индекс занятости слотов.
+     * @param workingHours Часы приема врачей.
+     * @param fromDate Первый день поиска.
+     * @param horizonDays Число дней поиска.
+     * @param firstDayMask Маска слотов, допустимых в первый день (для сегодняшнего дня — еще не прошедших).
+     */
+    EarliestSlotSearch(SlotAvailabilityIndex slotIndex, WorkingHoursIndex workingHours, LocalDate fromDate,
+                       int horizonDays, long firstDayMask) {
+        this.slotIndex = slotIndex;
+        this.workingHours = workingHours;
+        this.fromDate = fromDate;
+        this.horizonDays = horizonDays;
+        this.firstDayMask = firstDayMask;
+    }
+
+    /**
+     * @param doctorIds Врачи, среди которых ищутся слоты.
+     * @param limit Сколько слотов найти.
+     * @return Найденные слоты, сгруппированные по врачу и дню, в порядке первого слота группы.
+     * @throws SQLException Если занятость не удалось загрузить из базы.
+     */
+    List<FreeSlots> find(List<Integer> doctorIds, int limit) throws SQLException {
+        PriorityQueue<Cursor> queue = new PriorityQueue<>((a, b) -> {
+            if (a.day != b.day) {
+                return Integer.compare(a.day, b.day);
+            }
+            if (a.slot() != b.slot()) {
+                return Integer.compare(a.slot(), b.slot());
+            }
+            return Integer.compare(a.doctorId, b.doctorId);
+        });
+        for (int doctorId : doctorIds) {
+            Cursor cursor = new Cursor(doctorId);
+            cursor.day = -1;
+            if (advanceDay(cursor)) {
+                queue.add(cursor);
+            }
+        }
+
+        Map<Long, long[]> groups = new LinkedHashMap<>(); // (день, врач) -> маска найденных слотов
+        int found = 0;
+        while (found < limit && !queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            long key = ((long) cursor.day << 32) | (cursor.doctorId & 0xFFFFFFFFL);
+            groups.computeIfAbsent(key, k -> new long[1])[0] |= Long.lowestOneBit(cursor.freeMask);
+            found++;
+            cursor.freeMask &= cursor.freeMask - 1;
+            if (cursor.freeMask != 0 || advanceDay(cursor)) {
+                queue.add(cursor);
+            }
+        }
+
+        List<FreeSlots> result = new ArrayList<>(groups.size());
+        for (Map.Entry<Long, long[]> group : groups.entrySet()) {
+            long key = group.getKey();
+            result.add(new FreeSlots((int) key, fromDate.plusDays(key >>> 32), group.getValue()[0]));
+        }
+        return result;
+    }
+
+    /**
+     * Переводит курсор на следующий день, в который у врача есть свободные слоты.
+     * @return false, если до конца горизонта свободных слотов нет.
+     */
+    private boolean advanceDay(Cursor cursor) throws SQLException {
+        for (int day = cursor.day + 1; day < horizonDays; day++) {
+            long allowed = day == 0 ? firstDayMask : SlotGrid.ALL_SLOTS;
+            long occupied = day(day).getOrDefault(cursor.doctorId, 0L);
+            long free = allowed & ~occupied & workingHours.getWorkingMask(cursor.doctorId, fromDate.plusDays(day));
+            if (free != 0) {
+                cursor.day = day;
+                cursor.freeMask = free;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Занятость дня; недостающие дни загружаются порцией до CHUNK_DAYS дней.
+     */
+    private Map<Integer, Long> day(int day) throws SQLException {
+        while (days.size() <= day) {
+            LocalDate chunkStart = fromDate.plusDays(days.size());
+            int chunk = Math.min(CHUNK_DAYS, horizonDays - days.size());
+            days.addAll(slotIndex.getOccupiedRange(chunkStart, chunkStart.plusDays(chunk - 1)));
+        }
+        return days.get(day);
+    }
+}
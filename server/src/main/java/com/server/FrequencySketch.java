@@ -0,0 +1,83 @@
+package com.server;
+
+/**
+ * Приблизительный счетчик частоты обращений к ключам (count-min sketch) для допуска в кэш
+ * по схеме TinyLFU. Четыре строки счетчиков по 4 бита, упакованных в long; оценка частоты —
+ * минимум по строкам. После sampleSize обращений все счетчики делятся пополам, поэтому
+ * старая популярность со временем забывается.
+ * Не потокобезопасен: вызывающий код синхронизирует доступ.
+ */
+class FrequencySketch {
+    private static final int MAX_COUNT = 15; // 4-битный счетчик
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x27D4EB2F165667C5L};
+    private static final long RESET_MASK = 0x7777777777777777L; // Сброс старшего бита каждого полубайта при делении
+
+    private final long[] table;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedEntries Ожидаемое число различных ключей (емкость кэша).
+     */
+    FrequencySketch(int expectedEntries) {
+        int size = Integer.highestOneBit(Math.max(16, expectedEntries) - 1) << 1;
+        table = new long[size];
+        sampleSize = 10 * Math.max(16, expectedEntries);
+    }
+
+    /**
+     * @return Оценка частоты ключа (0..15).
+     */
+    int frequency(int key) {
+        int min = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(key, row);
+            int shift = counterShift(key, row);
+            min = Math.min(min, (int) ((table[index] >>> shift) & 0xF));
+        }
+        return min;
+    }
+
+    /**
+     * Учитывает обращение к ключу.
+     */
+    void increment(int key) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(key, row);
+            int shift = counterShift(key, row);
+            if (((table[index] >>> shift) & 0xF) < MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            halve();
+        }
+    }
+
+    private void halve() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int key, int row) {
+        long hash = (key + SEEDS[row]) * SEEDS[row];
+        return (int) (hash >>> 32) & (table.length - 1);
+    }
+
+    /**
+     * Номер полубайта внутри long: для каждой строки свой, чтобы строки не делили счетчики.
+     */
+    private int counterShift(int key, int row) {
+        int nibble = (row << 2) + ((spread(key) >>> (row << 3)) & 3);
+        return nibble << 2;
+    }
+
+    private static int spread(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
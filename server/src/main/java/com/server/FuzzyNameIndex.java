@@ -0,0 +1,215 @@
+package com.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Словарь фамилий для поиска с опечатками.
+ * Фамилии хранятся в отсортированном словаре (после приведения к нижнему регистру и замены «ё» на «е»)
+ * вместе с ID пациентов. Поиск обходит словарь по порядку, вычисляя строки матрицы расстояния
+ * Левенштейна между запросом и каждой фамилией. Соседние фамилии с общим префиксом переиспользуют
+ * уже вычисленные строки, а как только все значения строки превысили допустимое число правок,
+ * весь диапазон фамилий с этим префиксом пропускается одним переходом по словарю —
+ * так словарь обходится как автомат Левенштейна, не перебирая все фамилии.
+ * Перестановка двух соседних букв считается одной правкой.
+ * Класс не потокобезопасен: доступ синхронизирует владелец (PatientSearchIndex).
+ */
+class FuzzyNameIndex {
+    static final int MAX_EDITS = 2; // Больше двух правок дают слишком много ложных совпадений
+
+    private final TreeMap<String, IdList> terms = new TreeMap<>();
+
+    /**
+     * Найденная фамилия и ее расстояние до запроса.
+     */
+    static class Match {
+        final String term;
+        final int distance;
+        final int[] ids; // По возрастанию; массив словаря, действителен только под блокировкой владельца
+        final int idCount;
+
+        Match(String term, int distance, int[] ids, int idCount) {
+            this.term = term;
+            this.distance = distance;
+            this.ids = ids;
+            this.idCount = idCount;
+        }
+    }
+
+    /**
+     * Отсортированный по возрастанию список ID пациентов с одной фамилией.
+     */
+    private static class IdList {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            int position = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                position = -position - 1;
+            } else if (position < size) {
+                return; // Уже есть
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Приводит фамилию к виду, в котором она хранится в словаре.
+     */
+    static String fold(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    void add(String lastName, int patientId) {
+        if (lastName != null && !lastName.isBlank()) {
+            terms.computeIfAbsent(fold(lastName), term -> new IdList()).add(patientId);
+        }
+    }
+
+    void remove(String lastName, int patientId) {
+        if (lastName == null || lastName.isBlank()) {
+            return;
+        }
+        String term = fold(lastName);
+        IdList list = terms.get(term);
+        if (list != null) {
+            list.remove(patientId);
+            if (list.size == 0) {
+                terms.remove(term);
+            }
+        }
+    }
+
+    void clear() {
+        terms.clear();
+    }
+
+    /**
+     * @return Число различных фамилий в словаре.
+     */
+    int termCount() {
+        return terms.size();
+    }
+
+    /**
+     * Ищет фамилии, отличающиеся от запроса не более чем на maxEdits правок.
+     * @param query Фамилия, приведенная через fold().
+     * @param maxEdits Допустимое число правок (от 0 до MAX_EDITS).
+     * @return Совпадения в порядке словаря.
+     */
+    List<Match> search(String query, int maxEdits) {
+        List<Match> matches = new ArrayList<>();
+        int columns = query.length() + 1;
+        // rows[i] — расстояния от первых i букв фамилии до каждого префикса запроса
+        int[][] rows = new int[query.length() + maxEdits + 2][];
+        rows[0] = new int[columns];
+        for (int j = 0; j < columns; j++) {
+            rows[0][j] = j;
+        }
+        String previous = "";
+        int computed = 0; // Сколько строк посчитано для предыдущей фамилии
+
+        Map.Entry<String, IdList> entry = terms.firstEntry();
+        while (entry != null) {
+            String term = entry.getKey();
+            int depth = commonPrefix(previous, term, computed);
+            boolean pruned = false;
+            while (depth < term.length()) {
+                if (depth + 1 >= rows.length) {
+                    pruned = true; // Фамилия длиннее запроса более чем на maxEdits букв
+                    break;
+                }
+                depth++;
+                if (computeRow(rows, depth, term, query) > maxEdits) {
+                    pruned = true;
+                    break;
+                }
+            }
+            previous = term;
+            computed = depth;
+            if (pruned) {
+                // Ни одна фамилия с префиксом term[0..depth) не подходит: переходим за весь этот диапазон
+                String next = successor(term, depth);
+                entry = next != null ? terms.ceilingEntry(next) : null;
+                continue;
+            }
+            int distance = rows[term.length()][query.length()];
+            if (distance <= maxEdits) {
+                IdList list = entry.getValue();
+                matches.add(new Match(term, distance, list.ids, list.size));
+            }
+            entry = terms.higherEntry(term);
+        }
+        return matches;
+    }
+
+    /**
+     * Вычисляет строку i матрицы расстояний по предыдущим строкам.
+     * @return Минимальное значение в строке: если оно больше допустимого, продолжения фамилии не подойдут.
+     */
+    private static int computeRow(int[][] rows, int i, String term, String query) {
+        int columns = query.length() + 1;
+        if (rows[i] == null) {
+            rows[i] = new int[columns];
+        }
+        int[] row = rows[i];
+        int[] above = rows[i - 1];
+        char letter = term.charAt(i - 1);
+        row[0] = i;
+        int min = i;
+        for (int j = 1; j < columns; j++) {
+            int cost = query.charAt(j - 1) == letter ? 0 : 1;
+            int value = Math.min(Math.min(row[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+            if (i > 1 && j > 1 && letter == query.charAt(j - 2) && term.charAt(i - 2) == query.charAt(j - 1)) {
+                value = Math.min(value, rows[i - 2][j - 2] + 1); // Перестановка соседних букв
+            }
+            row[j] = value;
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    private static int commonPrefix(String a, String b, int limit) {
+        int max = Math.min(limit, Math.min(a.length(), b.length()));
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Наименьшая строка, большая всех строк с префиксом term[0..length).
+     * @return null, если такой строки нет (префикс состоит из символов Character.MAX_VALUE).
+     */
+    private static String successor(String term, int length) {
+        char[] prefix = term.substring(0, length).toCharArray();
+        int last = length - 1;
+        while (last >= 0 && prefix[last] == Character.MAX_VALUE) {
+            last--;
+        }
+        if (last < 0) {
+            return null;
+        }
+        prefix[last]++;
+        return new String(prefix, 0, last + 1);
+    }
+}
@@ -0,0 +1,89 @@
+package com.server;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версии списков, которые клиент может запросить условно (список врачей, записи на день,
+ * записи врача на день). Версия меняется после фиксации каждого изменения списка; клиент
+ * присылает версию уже полученного списка, и если она совпадает с текущей, сервер отвечает
+ * NOT_MODIFIED вместо повторной отправки списка.
+ * Версии выдаются одним счетчиком, начальное значение которого зависит от времени запуска
+ * сервера, поэтому версия, полученная клиентом до перезапуска, не совпадет с новой.
+ * Текущую версию нужно читать до чтения списка: тогда список не старше своей версии.
+ */
+public class ListVersions {
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private volatile long doctors;
+    private volatile long allDays; // Нижняя граница версий всех дней (после массового изменения записей)
+    private final Map<LocalDate, Long> days = new ConcurrentHashMap<>();
+    // Ключ — день (старшие 32 бита) и ID врача
+    private final Map<Long, Long> doctorDays = new ConcurrentHashMap<>();
+
+    public ListVersions() {
+        long start = clock.get();
+        this.doctors = start;
+        this.allDays = start;
+    }
+
+    /**
+     * @return Версия списка врачей.
+     */
+    public long doctors() {
+        return doctors;
+    }
+
+    /**
+     * @return Версия записей всех врачей на день.
+     */
+    public long day(LocalDate date) {
+        return Math.max(allDays, days.getOrDefault(date, 0L));
+    }
+
+    /**
+     * @return Версия записей врача на день.
+     */
+    public long doctorDay(int doctorId, LocalDate date) {
+        return Math.max(allDays, doctorDays.getOrDefault(key(doctorId, date), 0L));
+    }
+
+    /**
+     * Список врачей изменился. Вызывается после фиксации.
+     */
+    public void doctorsChanged() {
+        doctors = clock.incrementAndGet();
+    }
+
+    /**
+     * Записи врача на день изменились. Вызывается после фиксации.
+     */
+    public void appointmentsChanged(int doctorId, LocalDate date) {
+        long version = clock.incrementAndGet();
+        // Параллельные изменения могут записать версии не по порядку: остается наибольшая
+        doctorDays.merge(key(doctorId, date), version, Math::max);
+        days.merge(date, version, Math::max);
+    }
+
+    /**
+     * Записи изменились на неизвестные дни (например, каскадное удаление). Вызывается после фиксации.
+     */
+    public void allAppointmentsChanged() {
+        allDays = clock.incrementAndGet();
+    }
+
+    /**
+     * Удаляет версии дней до указанной даты: прошедшие дни получают общую версию allDays.
+     */
+    public void evictBefore(LocalDate date) {
+        long epochDay = date.toEpochDay();
+        days.keySet().removeIf(day -> day.isBefore(date));
+        doctorDays.keySet().removeIf(key -> (key >> 32) < epochDay);
+    }
+
+    private static long key(int doctorId, LocalDate date) {
+        return (date.toEpochDay() << 32) | (doctorId & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,25 @@
+package com.server;
+
+import java.util.Locale;
+
+/**
+ * Нормализация ФИО для поиска без учета регистра в кэшах сервера.
+ */
+final class Names {
+
+    private Names() {
+    }
+
+    /**
+     * Ключ поиска по ФИО в нижнем регистре. Отсутствующая часть ФИО, как NULL в SQL,
+     * ни с чем не совпадает.
+     * @return Ключ или null, если какая-либо часть ФИО отсутствует.
+     */
+    static String fullNameKey(String lastName, String firstName, String middleName) {
+        if (lastName == null || firstName == null || middleName == null) {
+            return null;
+        }
+        return lastName.toLowerCase(Locale.ROOT) + '\u0000' + firstName.toLowerCase(Locale.ROOT) + '\u0000'
+                + middleName.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,245 @@
+package com.server;
+
+import com.common.network.Codecs;
+import com.common.network.Frames;
+import com.common.network.Handshake;
+import com.common.network.MessageCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Состояние одного клиентского соединения в неблокирующем режиме сервера.
+ * Собирает кадры из прочитанных байтов и хранит очередь кадров на отправку.
+ * Простаивающее соединение не держит ни потока, ни буфера чтения.
+ */
+class NioConnection {
+    private final SocketChannel channel;
+    private SelectionKey key;
+
+    // Согласование протокола: codec == null, пока не получено приветствие клиента
+    private byte[] hello;
+    private int helloRead;
+    private MessageCodec codec;
+
+    // Сборка входящего кадра; payload == null, пока читается заголовок
+    private int headerRead;
+    private int frameLength;
+    private byte[] payload;
+    private int payloadRead;
+
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+    // Продолжение потокового ответа, отложенное до освобождения очереди
+    private final AtomicReference<Runnable> continuation = new AtomicReference<>();
+    private volatile boolean closed;
+
+    // Запросы, переданные рабочим потокам и еще не обработанные
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Принятые кадры сверх лимита запросов в обработке; доступны только потоку селектора
+    private final Queue<byte[]> deferredFrames = new ArrayDeque<>();
+    private volatile boolean readPaused;
+
+    private final CancelledRequests cancelledRequests = new CancelledRequests();
+
+    NioConnection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Читает приветствие клиента и выбирает кодек соединения.
+     * @param data Буфер с прочитанными данными (в режиме чтения); байты после приветствия остаются в буфере.
+     * @return true, если приветствие получено полностью и кодек выбран.
+     * @throws IOException Если приветствие некорректно.
+     */
+    boolean readHello(ByteBuffer data) throws IOException {
+        if (hello == null) {
+            hello = new byte[Handshake.HELLO_SIZE];
+        }
+        int chunk = Math.min(data.remaining(), hello.length - helloRead);
+        data.get(hello, helloRead, chunk);
+        helloRead += chunk;
+        if (helloRead < hello.length) {
+            return false;
+        }
+        codec = Codecs.create(Handshake.negotiate(Handshake.parseHello(hello)));
+        hello = null;
+        return true;
+    }
+
+    boolean isHandshakeDone() {
+        return codec != null;
+    }
+
+    MessageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Разбирает прочитанные байты на кадры. Неполный кадр сохраняется до следующего чтения.
+     * @param data Буфер с прочитанными данными (в режиме чтения).
+     * @return Список полностью полученных кадров (может быть пустым).
+     * @throws IOException Если длина кадра некорректна.
+     */
+    List<byte[]> consume(ByteBuffer data) throws IOException {
+        List<byte[]> frames = new ArrayList<>(1);
+        while (data.hasRemaining()) {
+            if (payload == null) {
+                while (headerRead < Frames.HEADER_SIZE && data.hasRemaining()) {
+                    frameLength = (frameLength << 8) | (data.get() & 0xFF);
+                    headerRead++;
+                }
+                if (headerRead < Frames.HEADER_SIZE) {
+                    break;
+                }
+                Frames.checkLength(frameLength);
+                payload = new byte[frameLength];
+                payloadRead = 0;
+            }
+            int chunk = Math.min(data.remaining(), payload.length - payloadRead);
+            data.get(payload, payloadRead, chunk);
+            payloadRead += chunk;
+            if (payloadRead == payload.length) {
+                frames.add(payload);
+                payload = null;
+                headerRead = 0;
+                frameLength = 0;
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Ставит готовый кадр в очередь на отправку. Вызывается из рабочих потоков.
+     * Проверка закрытия и добавление выполняются под одной блокировкой с markClosed(), поэтому
+     * кадр не может попасть в очередь уже после того, как закрывающий ее очистил и вернул буферы в пул.
+     * @param frame Буфер с заголовком и содержимым кадра (в режиме чтения).
+     * @return false, если соединение уже закрыто.
+     */
+    boolean enqueue(ByteBuffer frame) {
+        synchronized (writeQueue) {
+            if (closed) {
+                return false;
+            }
+            queuedFrames.incrementAndGet();
+            writeQueue.offer(frame);
+            return true;
+        }
+    }
+
+    /**
+     * @return Число кадров, ожидающих отправки.
+     */
+    int getQueuedFrames() {
+        return queuedFrames.get();
+    }
+
+    /**
+     * Откладывает принятый кадр до освобождения места среди запросов в обработке. Вызывается потоком селектора.
+     */
+    void deferFrame(byte[] frame) {
+        deferredFrames.offer(frame);
+    }
+
+    boolean hasDeferredFrames() {
+        return !deferredFrames.isEmpty();
+    }
+
+    /**
+     * Забирает следующий отложенный кадр, если число запросов в обработке меньше лимита,
+     * и учитывает его как запрос в обработке. Вызывается потоком селектора.
+     * @return Кадр или null, если кадров нет или лимит достигнут.
+     */
+    byte[] takeFrameWithin(int maxInFlight) {
+        if (deferredFrames.isEmpty() || !hasCapacity(maxInFlight)) {
+            return null;
+        }
+        inFlight.incrementAndGet(); // Увеличивает счетчик только поток селектора
+        return deferredFrames.poll();
+    }
+
+    boolean hasCapacity(int maxInFlight) {
+        return inFlight.get() < maxInFlight;
+    }
+
+    /**
+     * Отмечает завершение обработки запроса. Вызывается из рабочих потоков.
+     * @return true, если чтение соединения приостановлено и поток селектора должен его возобновить.
+     */
+    boolean requestFinished() {
+        inFlight.decrementAndGet();
+        return readPaused;
+    }
+
+    boolean isReadPaused() {
+        return readPaused;
+    }
+
+    void setReadPaused(boolean readPaused) {
+        this.readPaused = readPaused;
+    }
+
+    CancelledRequests getCancelledRequests() {
+        return cancelledRequests;
+    }
+
+    /**
+     * Отмечает отправку кадра из очереди. Вызывается потоком селектора.
+     */
+    void frameWritten() {
+        queuedFrames.decrementAndGet();
+    }
+
+    /**
+     * Откладывает продолжение потокового ответа до освобождения очереди. Вызывается из рабочих потоков.
+     */
+    void setContinuation(Runnable task) {
+        continuation.set(task);
+    }
+
+    /**
+     * @return Отложенное продолжение или null. Продолжение забирается не более одного раза.
+     */
+    Runnable takeContinuation() {
+        return continuation.getAndSet(null);
+    }
+
+    Queue<ByteBuffer> getWriteQueue() {
+        return writeQueue;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Отмечает соединение закрытым. После возврата enqueue() больше не добавляет кадров,
+     * и очередь можно очистить.
+     */
+    void markClosed() {
+        synchronized (writeQueue) {
+            closed = true;
+        }
+    }
+}
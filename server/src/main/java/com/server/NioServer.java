@@ -0,0 +1,383 @@
+package com.server;
+
+import com.common.network.Frames;
+import com.common.network.Handshake;
+import com.common.network.Request;
+import com.common.network.Response;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Неблокирующий режим сервера на основе Selector.
+ * Один поток селектора обслуживает все соединения: принимает подключения, читает и пишет кадры.
+ * Декодированные запросы выполняются небольшим пулом рабочих потоков, поэтому
+ * простаивающие соединения не занимают потоков и сервер выдерживает десятки тысяч подключений.
+ * Ответы отправляются по мере готовности, в том числе не в порядке поступления запросов.
+ * Число запросов одного соединения в обработке ограничено так же, как в блокирующем режиме:
+ * при достижении лимита соединение перестает читаться, пока его запросы не завершатся.
+ * Потоковый ответ медленному клиенту не занимает рабочий поток: он приостанавливается,
+ * и поток селектора передает его продолжение пулу, когда очередь соединения освободится.
+ */
+public class NioServer {
+    private static final int MAX_QUEUED_STREAM_FRAMES = 4; // Неотправленных кадров, после которых потоковый ответ приостанавливается
+    private static final int MAX_QUEUED_EVENT_FRAMES = 64; // Неотправленных кадров, после которых события не ставятся в очередь
+    private final int port;
+    private final ServerConfig config;
+    private final RequestProcessor processor;
+    private final ExecutorService workers;
+    private final BufferPool bufferPool;
+    private final Queue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Queue<NioConnection> pendingReads = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private SelectionKey acceptKey;
+    private int connectionCount;
+
+    public NioServer(int port, ServerConfig config, RequestProcessor processor, ExecutorService workers) {
+        this.port = port;
+        this.config = config;
+        this.processor = processor;
+        this.workers = workers;
+        this.bufferPool = new BufferPool(config.getBufferSize(), config.getMaxPooledBuffers());
+    }
+
+    public void start() {
+        try (Selector selector = Selector.open();
+             ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            this.selector = selector;
+            serverChannel.bind(new InetSocketAddress(port), config.getAcceptBacklog());
+            serverChannel.configureBlocking(false);
+            acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("Сервер (NIO) запущен и прослушивает порт " + port);
+            System.out.println(config);
+
+            // Один буфер чтения на поток селектора: данные сразу разбираются в кадры соединения
+            ByteBuffer readBuffer = bufferPool.acquire();
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+                registerPendingWrites();
+                resumePendingReads();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        acceptConnections(serverChannel);
+                        continue;
+                    }
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            readFrames(connection, readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            writeFrames(connection);
+                        }
+                    } catch (IOException e) {
+                        System.err.println("Клиент отключился или ошибка ввода/вывода: " + e.getMessage());
+                        closeConnection(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка сервера: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            System.out.println("Сервер остановлен.");
+        }
+    }
+
+    /**
+     * Принимает все ожидающие подключения в пределах лимита соединений.
+     * При достижении лимита прием приостанавливается, и клиенты ждут в очереди ОС.
+     */
+    private void acceptConnections(ServerSocketChannel serverChannel) throws IOException {
+        while (connectionCount < config.getMaxConnections()) {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            NioConnection connection = new NioConnection(channel);
+            connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+            connectionCount++;
+        }
+        acceptKey.interestOps(0);
+    }
+
+    private void readFrames(NioConnection connection, ByteBuffer readBuffer) throws IOException {
+        readBuffer.clear();
+        int read = connection.getChannel().read(readBuffer);
+        if (read < 0) {
+            closeConnection(connection);
+            return;
+        }
+        readBuffer.flip();
+        if (!connection.isHandshakeDone()) {
+            if (!connection.readHello(readBuffer)) {
+                return;
+            }
+            // Ответ на приветствие отправляется раньше любых кадров: поток селектора сам включает запись
+            ByteBuffer reply = ByteBuffer.allocate(Handshake.REPLY_SIZE);
+            reply.put(Handshake.PROTOCOL_VERSION).put(connection.getCodec().getId()).flip();
+            connection.enqueue(reply);
+            SelectionKey key = connection.getKey();
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+        List<byte[]> frames = connection.consume(readBuffer);
+        for (byte[] frame : frames) {
+            connection.deferFrame(frame);
+        }
+        dispatchFrames(connection);
+    }
+
+    /**
+     * Передает рабочим потокам принятые кадры соединения в пределах лимита запросов в обработке.
+     * Кадры сверх лимита ждут, а чтение из сокета приостанавливается: клиент, отправляющий запросы
+     * без ожидания ответов, упирается в свой буфер сокета и не занимает весь пул рабочих потоков.
+     * Выполняется только в потоке селектора.
+     */
+    private void dispatchFrames(NioConnection connection) {
+        int maxInFlight = config.getMaxInFlight();
+        SelectionKey key = connection.getKey();
+        while (true) {
+            byte[] frame;
+            while ((frame = connection.takeFrameWithin(maxInFlight)) != null) {
+                byte[] request = frame;
+                try {
+                    workers.execute(() -> handleFrame(connection, request));
+                } catch (RejectedExecutionException e) {
+                    closeConnection(connection);
+                    return;
+                }
+            }
+            if (!connection.hasDeferredFrames()) {
+                if (connection.isReadPaused()) {
+                    connection.setReadPaused(false);
+                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                }
+                return;
+            }
+            if (!connection.isReadPaused()) {
+                connection.setReadPaused(true);
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            // Запрос, завершившийся до установки флага, не вернул соединение в pendingReads: проверяем лимит еще раз
+            if (!connection.hasCapacity(maxInFlight)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Продолжает обработку соединений, чтение которых было приостановлено лимитом запросов.
+     * Выполняется только в потоке селектора.
+     */
+    private void resumePendingReads() {
+        NioConnection connection;
+        while ((connection = pendingReads.poll()) != null) {
+            if (!connection.isClosed()) {
+                dispatchFrames(connection);
+            }
+        }
+    }
+
+    /**
+     * Выполняется в рабочем потоке: декодирует запрос, обрабатывает его и ставит ответы в очередь на отправку.
+     */
+    private void handleFrame(NioConnection connection, byte[] frame) {
+        try {
+            Request request;
+            try {
+                request = connection.getCodec().decodeRequest(frame);
+            } catch (IOException | RuntimeException e) {
+                sendResponse(connection, RequestProcessor.malformedRequest(e));
+                return;
+            }
+            System.out.println("Получен запрос от клиента: " + request.getType());
+            processor.handle(request, sinkFor(connection));
+        } finally {
+            if (connection.requestFinished()) {
+                pendingReads.offer(connection);
+                selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Получатель ответов соединения. События подписок не ждут медленного клиента:
+     * если очередь соединения слишком длинная, событие не отправляется, и рассылка
+     * не задерживается из-за одного отстающего подписчика.
+     */
+    private ResponseSink sinkFor(NioConnection connection) {
+        return new ResponseSink() {
+            @Override
+            public boolean send(Response response) {
+                return sendResponse(connection, response);
+            }
+
+            @Override
+            public boolean offer(Response response) {
+                if (connection.getQueuedFrames() >= MAX_QUEUED_EVENT_FRAMES) {
+                    return false;
+                }
+                try {
+                    return NioServer.this.send(connection, connection.getCodec().encodeResponse(response));
+                } catch (IOException e) {
+                    System.err.println("Ошибка кодирования ответа: " + e.getMessage());
+                    return false;
+                }
+            }
+
+            @Override
+            public boolean isWritable() {
+                return connection.getQueuedFrames() < MAX_QUEUED_STREAM_FRAMES;
+            }
+
+            @Override
+            public void whenWritable(Runnable continuation) {
+                connection.setContinuation(continuation);
+                // Очередь могла освободиться до того, как продолжение было отложено
+                if (isWritable()) {
+                    resumeStream(connection);
+                }
+            }
+
+            @Override
+            public boolean isOpen() {
+                return !connection.isClosed();
+            }
+
+            @Override
+            public void cancel(long requestId) {
+                connection.getCancelledRequests().cancel(requestId);
+            }
+
+            @Override
+            public boolean isCancelled(long requestId) {
+                return connection.getCancelledRequests().isCancelled(requestId);
+            }
+        };
+    }
+
+    /**
+     * Кодирует ответ и ставит его в очередь соединения.
+     * @return false, если соединение закрыто.
+     */
+    private boolean sendResponse(NioConnection connection, Response response) {
+        try {
+            return send(connection, connection.getCodec().encodeResponse(response));
+        } catch (IOException e) {
+            System.err.println("Ошибка кодирования ответа: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Передает пулу отложенное продолжение потокового ответа. Продолжение запускается один раз:
+     * его забирает либо поток селектора после отправки кадров, либо рабочий поток, отложивший его.
+     * Продолжение закрытого соединения не выполняет запросов к БД: отправка сразу вернет false.
+     */
+    private void resumeStream(NioConnection connection) {
+        Runnable continuation = connection.takeContinuation();
+        if (continuation == null || connection.isClosed()) {
+            return;
+        }
+        try {
+            workers.execute(continuation);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Потоковый ответ прерван: сервер останавливается.");
+        }
+    }
+
+    /**
+     * Упаковывает содержимое в кадр и передает его потоку селектора для отправки.
+     * Небольшие кадры собираются в буфере из пула, крупные — в отдельном буфере в куче.
+     */
+    private boolean send(NioConnection connection, byte[] payload) {
+        int frameSize = Frames.HEADER_SIZE + payload.length;
+        ByteBuffer frame = frameSize <= bufferPool.getBufferSize() ? bufferPool.acquire() : ByteBuffer.allocate(frameSize);
+        frame.putInt(payload.length).put(payload).flip();
+        if (!connection.enqueue(frame)) {
+            bufferPool.release(frame);
+            return false;
+        }
+        pendingWrites.offer(connection);
+        selector.wakeup();
+        return true;
+    }
+
+    /**
+     * Включает интерес к записи для соединений, получивших новые кадры от рабочих потоков.
+     * Выполняется только в потоке селектора.
+     */
+    private void registerPendingWrites() {
+        NioConnection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            SelectionKey key = connection.getKey();
+            if (key != null && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void writeFrames(NioConnection connection) throws IOException {
+        Queue<ByteBuffer> queue = connection.getWriteQueue();
+        ByteBuffer frame;
+        while ((frame = queue.peek()) != null) {
+            connection.getChannel().write(frame);
+            if (frame.hasRemaining()) {
+                return; // Буфер сокета заполнен, продолжим при следующей готовности к записи
+            }
+            queue.poll();
+            bufferPool.release(frame);
+            connection.frameWritten();
+            if (connection.getQueuedFrames() < MAX_QUEUED_STREAM_FRAMES) {
+                resumeStream(connection);
+            }
+        }
+        SelectionKey key = connection.getKey();
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        // Кадр мог появиться после проверки очереди: тогда рабочий поток уже добавил соединение в pendingWrites
+    }
+
+    private void closeConnection(NioConnection connection) {
+        if (connection.isClosed()) {
+            return;
+        }
+        connection.markClosed();
+        connection.takeContinuation(); // Приостановленный потоковый ответ больше не продолжится
+        connection.getKey().cancel();
+        try {
+            connection.getChannel().close();
+        } catch (IOException e) {
+            System.err.println("Ошибка при закрытии ресурсов клиента: " + e.getMessage());
+        }
+        ByteBuffer frame;
+        // После markClosed() рабочие потоки больше не добавляют кадров: очередь очищается полностью
+        while ((frame = connection.getWriteQueue().poll()) != null) {
+            bufferPool.release(frame);
+        }
+        connectionCount--;
+        if (acceptKey.isValid() && acceptKey.interestOps() == 0) {
+            acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.server;
+
+import com.common.model.Patient;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ограниченный кэш пациентов по ID и по ФИО.
+ * Вытеснение — LRU, а допуск новых записей — по схеме TinyLFU: когда кэш заполнен, новый
+ * пациент вытесняет самого давнего, только если к нему обращались чаще (по оценке FrequencySketch).
+ * Так разовые обращения не вымывают из кэша пациентов, которых врачи открывают весь день.
+ * Размер ограничен числом записей и приблизительным объемом памяти.
+ */
+public class PatientCache {
+    private static final int ENTRY_OVERHEAD_BYTES = 160; // Объект, заголовки строк, узел карты
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final FrequencySketch sketch;
+
+    private final LinkedHashMap<Integer, Patient> byId = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> idByName = new HashMap<>();
+    private long usedBytes;
+    // Увеличивается при каждом сбросе записи; значение, прочитанное из базы до сброса, не кэшируется
+    private long modifications;
+
+    // Метрики
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * @param maxEntries Максимальное число пациентов в кэше (0 — кэш отключен).
+     * @param maxBytes Максимальный приблизительный объем кэша в байтах.
+     */
+    public PatientCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    /**
+     * @return Метка для последующего put(): позволяет отбросить значение, устаревшее за время чтения из базы.
+     */
+    public synchronized long stamp() {
+        return modifications;
+    }
+
+    public synchronized Patient getById(int patientId) {
+        sketch.increment(patientId);
+        Patient patient = byId.get(patientId);
+        if (patient != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return patient;
+    }
+
+    /**
+     * Ищет пациента по ФИО без учета регистра.
+     */
+    public synchronized Patient getByName(String lastName, String firstName, String middleName) {
+        String key = Names.fullNameKey(lastName, firstName, middleName);
+        Integer patientId = key != null ? idByName.get(key) : null;
+        if (patientId == null) {
+            misses++;
+            return null;
+        }
+        sketch.increment(patientId);
+        hits++;
+        return byId.get(patientId);
+    }
+
+    /**
+     * Добавляет пациента, прочитанного из базы, если кэш с тех пор не изменялся и пациент проходит допуск.
+     * @param patient Пациент.
+     * @param stamp Значение stamp(), полученное до чтения из базы.
+     */
+    public synchronized void put(Patient patient, long stamp) {
+        if (maxEntries <= 0 || stamp != modifications) {
+            return;
+        }
+        int patientId = patient.getId();
+        long size = sizeOf(patient);
+        if (size > maxBytes) {
+            return;
+        }
+        if (!byId.containsKey(patientId) && (byId.size() >= maxEntries || usedBytes + size > maxBytes)) {
+            Map.Entry<Integer, Patient> victim = byId.entrySet().iterator().next();
+            if (sketch.frequency(patientId) <= sketch.frequency(victim.getKey())) {
+                rejections++;
+                return;
+            }
+        }
+        remove(patientId);
+        byId.put(patientId, patient);
+        String key = nameKeyOf(patient);
+        if (key != null) {
+            idByName.put(key, patientId);
+        }
+        usedBytes += size;
+        evictOverflow();
+    }
+
+    /**
+     * Удаляет пациента из кэша. Вызывается после фиксации изменения или удаления пациента.
+     */
+    public synchronized void invalidate(int patientId) {
+        modifications++;
+        remove(patientId);
+    }
+
+    private void remove(int patientId) {
+        Patient removed = byId.remove(patientId);
+        if (removed != null) {
+            forget(removed);
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Patient> iterator = byId.values().iterator();
+        while ((byId.size() > maxEntries || usedBytes > maxBytes) && iterator.hasNext()) {
+            Patient eldest = iterator.next();
+            iterator.remove();
+            forget(eldest);
+            evictions++;
+        }
+    }
+
+    private void forget(Patient patient) {
+        usedBytes -= sizeOf(patient);
+        String key = nameKeyOf(patient);
+        if (key != null) {
+            idByName.remove(key, patient.getId());
+        }
+    }
+
+    private static String nameKeyOf(Patient patient) {
+        return Names.fullNameKey(patient.getLastName(), patient.getFirstName(), patient.getMiddleName());
+    }
+
+    private static long sizeOf(Patient patient) {
+        return ENTRY_OVERHEAD_BYTES + 2L * (length(patient.getLastName()) + length(patient.getFirstName())
+                + length(patient.getMiddleName()) + length(patient.getAddress()) + length(patient.getPhone())
+                + length(patient.getPolicyNumber()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    /**
+     * @return Снимок метрик кэша.
+     */
+    public synchronized String getMetrics() {
+        long total = hits + misses;
+        return "Кэш пациентов{записей=" + byId.size() +
+                ", объем КБ=" + usedBytes / 1024 +
+                ", попаданий=" + hits +
+                ", промахов=" + misses +
+                ", вытеснений=" + evictions +
+                ", отклонено при допуске=" + rejections +
+                ", доля попаданий=" + (total == 0 ? 0 : hits * 100 / total) + "%" +
+                '}';
+    }
+}
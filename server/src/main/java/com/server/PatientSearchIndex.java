@@ -0,0 +1,491 @@
+package com.server;
+
+import com.common.model.Patient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Триграммный индекс пациентов для поиска по подстроке.
+ * Для каждой триграммы (трех подряд идущих символов в нижнем регистре) хранится отсортированный
+ * список ID пациентов, в полях которых она встречается. Поиск пересекает списки триграмм запроса,
+ * начиная с самого короткого, проверяет кандидатов на точное вхождение подстроки и возвращает
+ * лучшие результаты по релевантности. Индекс обновляется при добавлении, изменении и удалении пациентов.
+ * Кроме того, индекс ведет словарь фамилий (FuzzyNameIndex) для поиска с опечатками.
+ */
+public class PatientSearchIndex {
+    public static final int MIN_QUERY_LENGTH = 3; // Более короткие запросы не содержат ни одной триграммы
+
+    // Вес совпадения по полю: фамилия и документы важнее адреса
+    private static final int[] FIELD_WEIGHTS = {6, 4, 3, 5, 5, 1}; // Фамилия, имя, отчество, полис, телефон, адрес
+
+    private final PostingMap postings = new PostingMap();
+    private final Map<Integer, Patient> patients = new HashMap<>();
+    private final FuzzyNameIndex surnames = new FuzzyNameIndex();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Отсортированный по возрастанию список ID пациентов.
+     */
+    private static class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] < id) {
+                append(id); // ID растут, поэтому обычно добавляем в конец
+                return;
+            }
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        private void append(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Хеш-таблица с открытой адресацией: триграмма (long) -> список ID.
+     * Без упаковки ключей в Long, что важно при десятках миллионов вставок при построении индекса.
+     * Опустевшие списки остаются в таблице: набор триграмм почти не меняется.
+     */
+    private static class PostingMap {
+        private long[] keys = new long[1024];
+        private PostingList[] values = new PostingList[1024];
+        private int size;
+
+        PostingList get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        PostingList getOrCreate(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            PostingList list = new PostingList();
+            keys[i] = key;
+            values[i] = list;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return list;
+        }
+
+        void clear() {
+            keys = new long[1024];
+            values = new PostingList[1024];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            PostingList[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new PostingList[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = slot(oldKeys[j], mask);
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 40) & mask;
+        }
+    }
+
+    /**
+     * Заполняет индекс всеми пациентами (при запуске сервера).
+     */
+    public void rebuild(Collection<Patient> allPatients) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            patients.clear();
+            surnames.clear();
+            for (Patient patient : allPatients) {
+                addUnlocked(patient);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет пациента или заменяет его прежнюю версию.
+     */
+    public void put(Patient patient) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(patient.getId());
+            addUnlocked(patient);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int patientId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(patientId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addUnlocked(Patient patient) {
+        patients.put(patient.getId(), patient);
+        surnames.add(patient.getLastName(), patient.getId());
+        for (long trigram : trigramsOf(patient)) {
+            postings.getOrCreate(trigram).add(patient.getId());
+        }
+    }
+
+    private void removeUnlocked(int patientId) {
+        Patient old = patients.remove(patientId);
+        if (old == null) {
+            return;
+        }
+        surnames.remove(old.getLastName(), patientId);
+        for (long trigram : trigramsOf(old)) {
+            PostingList list = postings.get(trigram);
+            if (list != null) {
+                list.remove(patientId);
+            }
+        }
+    }
+
+    /**
+     * Ищет пациентов, у которых запрос входит подстрокой (без учета регистра) в одно из полей.
+     * @param query Запрос длиной не менее MIN_QUERY_LENGTH символов.
+     * @param limit Максимальное число результатов.
+     * @return Найденные пациенты по убыванию релевантности.
+     */
+    public List<Patient> search(String query, int limit) {
+        String normalized = query.toLowerCase(Locale.ROOT);
+        long[] allTrigrams = trigramsOf(normalized);
+        long[] queryTrigrams = distinct(allTrigrams, allTrigrams.length);
+        if (queryTrigrams.length == 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            List<PostingList> lists = new ArrayList<>(queryTrigrams.length);
+            for (long trigram : queryTrigrams) {
+                PostingList list = postings.get(trigram);
+                if (list == null || list.size == 0) {
+                    return new ArrayList<>(); // Триграммы нет ни у одного пациента
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            int[] candidates = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+            int count = candidates.length;
+            for (int i = 1; i < lists.size() && count > 0; i++) {
+                count = intersect(candidates, count, lists.get(i));
+            }
+
+            // Лучшие limit результатов: в куче наверху худший из отобранных
+            PriorityQueue<ScoredPatient> top = new PriorityQueue<>(Comparator
+                    .comparingInt((ScoredPatient scored) -> scored.score)
+                    .thenComparing(scored -> -scored.patient.getId()));
+            for (int i = 0; i < count; i++) {
+                Patient patient = patients.get(candidates[i]);
+                int score = score(patient, normalized);
+                if (score > 0) {
+                    top.offer(new ScoredPatient(patient, score));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+            List<Patient> result = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                result.add(top.poll().patient);
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Постраничный поиск: пациенты, у которых запрос входит подстрокой в одно из полей, по возрастанию ID.
+     * Кандидаты перебираются по самому короткому списку триграмм начиная после afterId и проверяются
+     * по остальным спискам, пока не наберется limit результатов — без промежуточных массивов.
+     * @param query Запрос длиной не менее MIN_QUERY_LENGTH символов.
+     * @param afterId Результаты начинаются с ID, большего afterId.
+     * @param limit Максимальное число результатов.
+     * @return Найденные пациенты по возрастанию ID.
+     */
+    public List<Patient> searchPage(String query, int afterId, int limit) {
+        String normalized = query.toLowerCase(Locale.ROOT);
+        long[] allTrigrams = trigramsOf(normalized);
+        long[] queryTrigrams = distinct(allTrigrams, allTrigrams.length);
+        List<Patient> result = new ArrayList<>();
+        if (queryTrigrams.length == 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            List<PostingList> lists = new ArrayList<>(queryTrigrams.length);
+            for (long trigram : queryTrigrams) {
+                PostingList list = postings.get(trigram);
+                if (list == null || list.size == 0) {
+                    return result;
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            PostingList shortest = lists.get(0);
+            int[] cursors = new int[lists.size()]; // Позиции в остальных списках только растут
+            int start = Arrays.binarySearch(shortest.ids, 0, shortest.size, afterId);
+            start = start >= 0 ? start + 1 : -start - 1;
+            for (int i = start; i < shortest.size && result.size() < limit; i++) {
+                int candidate = shortest.ids[i];
+                if (containsInAll(lists, cursors, candidate)) {
+                    Patient patient = patients.get(candidate);
+                    if (score(patient, normalized) > 0) {
+                        result.add(patient);
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean containsInAll(List<PostingList> lists, int[] cursors, int id) {
+        for (int j = 1; j < lists.size(); j++) {
+            PostingList list = lists.get(j);
+            int position = Arrays.binarySearch(list.ids, cursors[j], list.size, id);
+            if (position < 0) {
+                cursors[j] = -position - 1;
+                return false;
+            }
+            cursors[j] = position + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Ищет пациентов по фамилии с опечатками: первое слово запроса — фамилия, которая может
+     * отличаться от найденной не более чем на maxEdits правок (без учета регистра, «ё» равна «е»);
+     * остальные слова должны быть началом имени или отчества.
+     * @param query Запрос вида «Фамилия [Имя] [Отчество]».
+     * @param maxEdits Допустимое число правок (ограничивается FuzzyNameIndex.MAX_EDITS).
+     * @param limit Максимальное число результатов.
+     * @return Найденные пациенты: сначала более близкие фамилии, затем по ФИО. Если однофамильцев
+     * больше limit, возвращаются первые по ID — запрос уточняется именем.
+     */
+    public List<Patient> searchFuzzy(String query, int maxEdits, int limit) {
+        String[] words = FuzzyNameIndex.fold(query).split("\\s+");
+        if (words[0].isEmpty()) {
+            return new ArrayList<>();
+        }
+        int edits = Math.max(0, Math.min(maxEdits, FuzzyNameIndex.MAX_EDITS));
+        lock.readLock().lock();
+        try {
+            List<FuzzyNameIndex.Match> matches = surnames.search(words[0], edits);
+            matches.sort(Comparator.comparingInt(match -> match.distance)); // Ближайшие фамилии заполняют limit первыми
+            // Однофамильцы просматриваются по возрастанию ID, пока не наберется limit результатов
+            List<Patient> result = new ArrayList<>();
+            Map<Integer, Integer> distances = new HashMap<>();
+            for (FuzzyNameIndex.Match match : matches) {
+                for (int i = 0; i < match.idCount && result.size() < limit; i++) {
+                    Patient patient = patients.get(match.ids[i]);
+                    if (matchesGivenNames(patient, words)) {
+                        result.add(patient);
+                        distances.put(patient.getId(), match.distance);
+                    }
+                }
+            }
+            result.sort(Comparator.comparingInt((Patient patient) -> distances.get(patient.getId()))
+                    .thenComparing(patient -> foldOrEmpty(patient.getLastName()))
+                    .thenComparing(patient -> foldOrEmpty(patient.getFirstName()))
+                    .thenComparing(patient -> foldOrEmpty(patient.getMiddleName()))
+                    .thenComparingInt(Patient::getId));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Проверяет, что каждое слово запроса после фамилии — начало имени или отчества пациента.
+     */
+    private static boolean matchesGivenNames(Patient patient, String[] words) {
+        String firstName = foldOrEmpty(patient.getFirstName());
+        String middleName = foldOrEmpty(patient.getMiddleName());
+        for (int i = 1; i < words.length; i++) {
+            if (!firstName.startsWith(words[i]) && !middleName.startsWith(words[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String foldOrEmpty(String name) {
+        return name != null ? FuzzyNameIndex.fold(name) : "";
+    }
+
+    /**
+     * Оставляет в candidates только ID, присутствующие в list (оба массива отсортированы).
+     * Короткий список кандидатов ищется в длинном двоичным поиском с продвижением вперед.
+     * @return Новое число кандидатов.
+     */
+    private static int intersect(int[] candidates, int count, PostingList list) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < count && from < list.size; i++) {
+            int position = Arrays.binarySearch(list.ids, from, list.size, candidates[i]);
+            if (position >= 0) {
+                candidates[kept++] = candidates[i];
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
+        }
+        return kept;
+    }
+
+    private static class ScoredPatient {
+        private final Patient patient;
+        private final int score;
+
+        ScoredPatient(Patient patient, int score) {
+            this.patient = patient;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Релевантность: сумма весов полей, содержащих запрос; совпадение с начала поля весит вдвое больше.
+     * 0 — запрос не входит ни в одно поле (триграммы совпали в разных местах).
+     */
+    private static int score(Patient patient, String normalizedQuery) {
+        String[] fields = fieldsOf(patient);
+        int score = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == null) {
+                continue;
+            }
+            String field = fields[i].toLowerCase(Locale.ROOT);
+            int position = field.indexOf(normalizedQuery);
+            if (position == 0) {
+                score += 2 * FIELD_WEIGHTS[i];
+            } else if (position > 0) {
+                score += FIELD_WEIGHTS[i];
+            }
+        }
+        return score;
+    }
+
+    private static String[] fieldsOf(Patient patient) {
+        return new String[]{patient.getLastName(), patient.getFirstName(), patient.getMiddleName(),
+                patient.getPolicyNumber(), patient.getPhone(), patient.getAddress()};
+    }
+
+    /**
+     * Различные триграммы всех полей пациента. Триграммы не пересекают границы полей.
+     */
+    private static long[] trigramsOf(Patient patient) {
+        long[] trigrams = new long[16];
+        int count = 0;
+        for (String field : fieldsOf(patient)) {
+            if (field == null || field.length() < 3) {
+                continue;
+            }
+            long[] fieldTrigrams = trigramsOf(field.toLowerCase(Locale.ROOT));
+            if (count + fieldTrigrams.length > trigrams.length) {
+                trigrams = Arrays.copyOf(trigrams, Math.max(trigrams.length * 2, count + fieldTrigrams.length));
+            }
+            System.arraycopy(fieldTrigrams, 0, trigrams, count, fieldTrigrams.length);
+            count += fieldTrigrams.length;
+        }
+        return distinct(trigrams, count);
+    }
+
+    private static long[] trigramsOf(String text) {
+        long[] trigrams = new long[Math.max(0, text.length() - 2)];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return trigrams;
+    }
+
+    /**
+     * Сортирует первые count элементов и возвращает их без повторов.
+     */
+    private static long[] distinct(long[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, unique);
+    }
+
+    /**
+     * @return Число пациентов в индексе.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return patients.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
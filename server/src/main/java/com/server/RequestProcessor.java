@@ -0,0 +1,603 @@
+package com.server;
+
+import com.common.model.Appointment;
+import com.common.model.ChangeSet;
+import com.common.model.Doctor;
+import com.common.model.EarliestSlotsQuery;
+import com.common.model.FreeSlots;
+import com.common.model.FreeSlotsQuery;
+import com.common.model.HistoryPageRequest;
+import com.common.model.Page;
+import com.common.model.Patient;
+import com.common.model.PatientPageRequest;
+import com.common.model.PatientSearchQuery;
+import com.common.model.ScheduleRange;
+import com.common.model.ScheduleView;
+import com.common.model.ScheduleViewQuery;
+import com.common.model.SlotGrid;
+import com.common.model.WorkingHours;
+import com.common.network.BatchRequest;
+import com.common.network.MalformedRequestException;
+import com.common.network.OperationType;
+import com.common.network.Request;
+import com.common.network.Response;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Выполняет запросы клиентов над базой данных.
+ * Общий для блокирующего (ClientHandler) и неблокирующего (NioServer) режимов сервера.
+ */
+public class RequestProcessor {
+    private static final int MAX_FREE_SLOTS_DAYS = 62; // Наибольший диапазон дат в GET_FREE_SLOTS и GET_SCHEDULE_RANGE
+    private static final int MAX_EARLIEST_SLOTS = 50; // Наибольшее число слотов в FIND_EARLIEST_SLOTS
+    private static final int MAX_PAGE_SIZE = 1000; // Наибольшая страница пациентов или истории записей
+
+    private DatabaseManager dbManager;
+    private final int maxBatchSize;
+    // Подписки клиентов на изменения занятости слотов
+    private final ScheduleEventHub scheduleEvents;
+
+    public RequestProcessor(DatabaseManager dbManager, ServerConfig config) {
+        this.dbManager = dbManager;
+        this.maxBatchSize = config.getMaxBatchSize();
+        this.scheduleEvents = new ScheduleEventHub(dbManager::getOccupiedSlots);
+        dbManager.setSlotChangeListener(scheduleEvents::publish);
+    }
+
+    /**
+     * Выполняет запрос и помечает ответ идентификатором запроса,
+     * чтобы клиент мог сопоставить ответы, пришедшие не по порядку.
+     * @param request Объект запроса.
+     * @return Объект ответа.
+     */
+    public Response handle(Request request) {
+        Response response = process(request);
+        response.setRequestId(request.getRequestId());
+        return response;
+    }
+
+    /**
+     * Выполняет запрос и отправляет ответ получателю. Потоковый запрос страниц пациентов
+     * отправляет каждую страницу отдельным частичным ответом по мере чтения из базы,
+     * поэтому память сервера на запрос не зависит от размера таблицы.
+     * Подписка на расписание остается открытой: события приходят частичными ответами
+     * на запрос подписки, пока клиент не отпишется или не отключится.
+     * Запрос, отмененный клиентом до начала выполнения, не выполняется: клиент получает
+     * короткий ответ об отмене. Потоковый запрос прерывается между страницами.
+     * @param request Объект запроса.
+     * @param sink Получатель ответов соединения.
+     */
+    public void handle(Request request, ResponseSink sink) {
+        Object data = request.getData();
+        if (request.getType() == OperationType.CANCEL_REQUEST && data instanceof Long) {
+            sink.cancel((Long) data);
+            Response response = new Response(true, "Запрос отменен.");
+            response.setRequestId(request.getRequestId());
+            sink.send(response);
+        } else if (sink.isCancelled(request.getRequestId())) {
+            sink.send(cancelled(request));
+        } else if (data instanceof PatientPageRequest && ((PatientPageRequest) data).isStream()
+                && (request.getType() == OperationType.GET_ALL_PATIENTS || request.getType() == OperationType.SEARCH_PATIENTS)) {
+            streamPatients(request, (PatientPageRequest) data, sink);
+        } else if (request.getType() == OperationType.SUBSCRIBE_SCHEDULE && data instanceof FreeSlotsQuery) {
+            subscribeSchedule(request, (FreeSlotsQuery) data, sink);
+        } else {
+            sink.send(handle(request));
+        }
+    }
+
+    private void streamPatients(Request request, PatientPageRequest pageRequest, ResponseSink sink) {
+        Response response = validatePage(pageRequest);
+        if (response != null) {
+            response.setRequestId(request.getRequestId());
+            sink.send(response);
+            return;
+        }
+        new PatientStream(request, pageRequest, sink).run();
+    }
+
+    /**
+     * Потоковая передача страниц пациентов. Если клиент не успевает принимать страницы,
+     * передача приостанавливается, не занимая поток, и продолжается, когда получатель
+     * отправит накопленные кадры.
+     */
+    private class PatientStream implements Runnable {
+        private final Request request;
+        private final ResponseSink sink;
+        private PatientPageRequest next;
+        private int sent;
+
+        PatientStream(Request request, PatientPageRequest pageRequest, ResponseSink sink) {
+            this.request = request;
+            this.next = pageRequest;
+            this.sink = sink;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                if (sink.isCancelled(request.getRequestId())) {
+                    sink.send(cancelled(request));
+                    return;
+                }
+                if (!sink.isWritable()) {
+                    sink.whenWritable(this); // Продолжим после отправки накопленных кадров
+                    return;
+                }
+                Page<Patient> page = dbManager.getPatientsPage(next);
+                if (page == null) {
+                    finish(new Response(false, "Не удалось получить пациентов (передано " + sent + ").", sent));
+                    return;
+                }
+                if (!page.getItems().isEmpty()) {
+                    Response chunk = new Response(true, "Часть списка пациентов.", page);
+                    chunk.setRequestId(request.getRequestId());
+                    chunk.setPartial(true);
+                    if (!sink.send(chunk)) {
+                        return; // Клиент отключился
+                    }
+                    sent += page.getItems().size();
+                }
+                if (!page.hasMore()) {
+                    finish(new Response(true, "Передано пациентов: " + sent + ".", sent));
+                    return;
+                }
+                next = next.after(page.getLast().getId());
+            }
+        }
+
+        private void finish(Response response) {
+            response.setRequestId(request.getRequestId());
+            sink.send(response);
+        }
+    }
+
+    private static Response cancelled(Request request) {
+        Response response = new Response(false, "Запрос отменен клиентом.");
+        response.setRequestId(request.getRequestId());
+        return response;
+    }
+
+    private void subscribeSchedule(Request request, FreeSlotsQuery query, ResponseSink sink) {
+        Response error = isValidRange(query)
+                ? scheduleEvents.subscribe(request.getRequestId(), query, sink)
+                : new Response(false, "Некорректный диапазон дат (не более " + MAX_FREE_SLOTS_DAYS + " дней).");
+        if (error != null) {
+            error.setRequestId(request.getRequestId());
+            sink.send(error);
+        }
+    }
+
+    /**
+     * @return Ответ с ошибкой, если размер страницы недопустим, иначе null.
+     */
+    private static Response validatePage(PatientPageRequest pageRequest) {
+        if (pageRequest.getPageSize() <= 0 || pageRequest.getPageSize() > MAX_PAGE_SIZE) {
+            return new Response(false, "Некорректный размер страницы (от 1 до " + MAX_PAGE_SIZE + ").");
+        }
+        return null;
+    }
+
+    /**
+     * @return true, если диапазон дат задан по порядку и не длиннее MAX_FREE_SLOTS_DAYS дней.
+     */
+    private static boolean isValidRange(FreeSlotsQuery query) {
+        return query.getFromDate() != null && query.getToDate() != null
+                && !query.getFromDate().isAfter(query.getToDate())
+                && !query.getFromDate().plusDays(MAX_FREE_SLOTS_DAYS).isBefore(query.getToDate());
+    }
+
+    /**
+     * Проверяет строку часов приема, по которой она сохраняется или удаляется: врача и день недели или дату.
+     * @return Ответ с ошибкой, если строка указана некорректно, иначе null.
+     */
+    private static Response validateWorkingHoursKey(WorkingHours hours) {
+        if (hours == null) {
+            return new Response(false, "Не указаны часы приема.");
+        }
+        if (hours.getDoctorId() <= 0) {
+            return new Response(false, "Некорректный ID врача.");
+        }
+        if ((hours.getDayOfWeek() == null) == (hours.getDate() == null)) {
+            return new Response(false, "Укажите либо день недели, либо дату.");
+        }
+        return null;
+    }
+
+    /**
+     * @return Ответ с ошибкой, если часы приема заданы некорректно, иначе null.
+     */
+    private static Response validateWorkingHours(WorkingHours hours) {
+        Response invalidKey = validateWorkingHoursKey(hours);
+        if (invalidKey != null) {
+            return invalidKey;
+        }
+        if (hours.isDayOff()) {
+            return hours.isException() && hours.getEndTime() == null ? null
+                    : new Response(false, "Выходной задается только исключением на дату.");
+        }
+        if (hours.getEndTime() == null || !hours.getStartTime().isBefore(hours.getEndTime())
+                || hours.getStartTime().isBefore(SlotGrid.WORK_START) || hours.getEndTime().isAfter(SlotGrid.WORK_END)
+                || !SlotGrid.isBoundary(hours.getStartTime()) || !SlotGrid.isBoundary(hours.getEndTime())) {
+            return new Response(false, "Часы приема должны быть в пределах " + SlotGrid.WORK_START + "–" + SlotGrid.WORK_END
+                    + " по границам слотов (" + SlotGrid.SLOT_MINUTES + " мин).");
+        }
+        return null;
+    }
+
+    /**
+     * Обрабатывает полученный запрос от клиента и формирует ответ.
+     * @param request Объект запроса.
+     * @return Объект ответа.
+     */
+    public Response process(Request request) {
+        try {
+            switch (request.getType()) {
+                case ADD_PATIENT:
+                    Patient newPatient = (Patient) request.getData();
+                    Patient addedPatient = dbManager.addPatient(newPatient);
+                    if (addedPatient != null) {
+                        return new Response(true, "Пациент успешно добавлен.", addedPatient);
+                    } else {
+                        return new Response(false, "Не удалось добавить пациента.");
+                    }
+                case GET_ALL_PATIENTS:
+                    if (request.getData() instanceof PatientPageRequest) {
+                        return patientsPage((PatientPageRequest) request.getData());
+                    }
+                    List<Patient> patients = dbManager.getAllPatients();
+                    return new Response(true, "Список пациентов получен.", patients);
+                case UPDATE_PATIENT:
+                    Patient patientToUpdate = (Patient) request.getData();
+                    boolean updated = dbManager.updatePatient(patientToUpdate);
+                    if (updated) {
+                        return new Response(true, "Данные пациента успешно обновлены.");
+                    } else {
+                        return new Response(false, "Не удалось обновить данные пациента.");
+                    }
+                case DELETE_PATIENT:
+                    int patientIdToDelete = (int) request.getData();
+                    boolean deleted = dbManager.deletePatient(patientIdToDelete);
+                    if (deleted) {
+                        return new Response(true, "Пациент успешно удален.");
+                    } else {
+                        return new Response(false, "Не удалось удалить пациента.");
+                    }
+                case SEARCH_PATIENTS:
+                    if (request.getData() instanceof PatientPageRequest) {
+                        return patientsPage((PatientPageRequest) request.getData());
+                    }
+                    // Строка — поиск по подстроке; PatientSearchQuery — поиск с параметрами (в том числе нечеткий)
+                    List<Patient> foundPatients = request.getData() instanceof PatientSearchQuery
+                            ? dbManager.searchPatients((PatientSearchQuery) request.getData())
+                            : dbManager.searchPatients((String) request.getData());
+                    return new Response(true, "Результаты поиска пациентов.", foundPatients);
+                case ADD_DOCTOR:
+                    Doctor newDoctor = (Doctor) request.getData();
+                    Doctor addedDoctor = dbManager.addDoctor(newDoctor);
+                    if (addedDoctor != null) {
+                        return new Response(true, "Врач успешно добавлен.", addedDoctor);
+                    } else {
+                        return new Response(false, "Не удалось добавить врача.");
+                    }
+                case GET_ALL_DOCTORS:
+                    // Версия читается до списка: список не старше версии, с которой он отправлен
+                    long doctorsVersion = dbManager.getListVersions().doctors();
+                    if (request.getKnownVersion() == doctorsVersion) {
+                        return Response.notModified(doctorsVersion);
+                    }
+                    List<Doctor> doctors = dbManager.getAllDoctors();
+                    if (doctors == null) {
+                        return new Response(false, "Не удалось получить список врачей.");
+                    }
+                    return versioned(new Response(true, "Список врачей получен.", doctors), doctorsVersion);
+                case ADD_APPOINTMENT:
+                    Appointment newAppointment = (Appointment) request.getData();
+                    // Проверка занятости и вставка выполняются атомарно
+                    BookingResult booking = dbManager.bookAppointment(newAppointment);
+                    switch (booking.getStatus()) {
+                        case BOOKED:
+                            return new Response(true, "Запись на прием успешно добавлена.", booking.getAppointment());
+                        case SLOT_TAKEN:
+                            return new Response(false, "Выбранное время уже занято.");
+                        case OUTSIDE_WORKING_HOURS:
+                            return new Response(false, "Врач не принимает в выбранное время.");
+                        default:
+                            return new Response(false, "Не удалось добавить запись на прием.");
+                    }
+                case GET_APPOINTMENTS_BY_DOCTOR_DATE:
+                    // Ожидаем массив Object[]: [doctorId (Integer), date (LocalDate)]
+                    Object[] appointmentQueryData = (Object[]) request.getData();
+                    int doctorId = (Integer) appointmentQueryData[0];
+                    LocalDate appointmentDate = (LocalDate) appointmentQueryData[1];
+                    long doctorDayVersion = dbManager.getListVersions().doctorDay(doctorId, appointmentDate);
+                    if (request.getKnownVersion() == doctorDayVersion) {
+                        return Response.notModified(doctorDayVersion);
+                    }
+                    List<Appointment> doctorAppointments = dbManager.getAppointmentsByDoctorAndDate(doctorId, appointmentDate);
+                    if (doctorAppointments == null) {
+                        return new Response(false, "Не удалось получить расписание врача.");
+                    }
+                    return versioned(new Response(true, "Расписание врача получено.", doctorAppointments), doctorDayVersion);
+                case CANCEL_APPOINTMENT:
+                    int appointmentIdToCancel = (int) request.getData();
+                    boolean cancelled = dbManager.cancelAppointment(appointmentIdToCancel);
+                    if (cancelled) {
+                        return new Response(true, "Запись на прием успешно отменена.");
+                    } else {
+                        return new Response(false, "Не удалось отменить запись на прием.");
+                    }
+                case GET_PATIENT_HISTORY:
+                    if (request.getData() instanceof HistoryPageRequest) {
+                        return historyPage((HistoryPageRequest) request.getData());
+                    }
+                    int patientIdForHistory = (int) request.getData();
+                    List<Appointment> patientHistory = dbManager.getPatientAppointmentHistory(patientIdForHistory);
+                    return new Response(true, "История записей пациента получена.", patientHistory);
+                // Новые операции для логина и расписания
+                case LOGIN_PATIENT:
+                    Patient loginPatientData = (Patient) request.getData();
+                    Patient authenticatedPatient = dbManager.loginPatient(
+                            loginPatientData.getLastName(),
+                            loginPatientData.getFirstName(),
+                            loginPatientData.getMiddleName()
+                    );
+                    if (authenticatedPatient != null) {
+                        return new Response(true, "Вход пациента успешен.", authenticatedPatient);
+                    } else {
+                        return new Response(false, "Пациент с указанными ФИО не найден.");
+                    }
+                case LOGIN_DOCTOR:
+                    Doctor loginDoctorData = (Doctor) request.getData();
+                    Doctor authenticatedDoctor = dbManager.loginDoctor(
+                            loginDoctorData.getLastName(),
+                            loginDoctorData.getFirstName(),
+                            loginDoctorData.getMiddleName()
+                    );
+                    if (authenticatedDoctor != null) {
+                        return new Response(true, "Вход врача успешен.", authenticatedDoctor);
+                    } else {
+                        return new Response(false, "Врач с указанными ФИО не найден.");
+                    }
+                case GET_SCHEDULE:
+                    LocalDate scheduleDate = (LocalDate) request.getData();
+                    long dayVersion = dbManager.getListVersions().day(scheduleDate);
+                    if (request.getKnownVersion() == dayVersion) {
+                        return Response.notModified(dayVersion);
+                    }
+                    List<Appointment> fullSchedule = dbManager.getAppointmentsByDate(scheduleDate);
+                    if (fullSchedule == null) {
+                        return new Response(false, "Не удалось получить расписание.");
+                    }
+                    return versioned(new Response(true, "Полное расписание получено.", fullSchedule), dayVersion);
+                case GET_PATIENT_DETAILS:
+                    int patientId = (int) request.getData();
+                    Patient patientDetails = dbManager.getPatientById(patientId);
+                    if (patientDetails != null) {
+                        return new Response(true, "Детали пациента получены.", patientDetails);
+                    } else {
+                        return new Response(false, "Пациент не найден.");
+                    }
+                case GET_DOCTOR_DETAILS:
+                    int docId = (int) request.getData();
+                    Doctor doctorDetails = dbManager.getDoctorById(docId);
+                    if (doctorDetails != null) {
+                        return new Response(true, "Детали врача получены.", doctorDetails);
+                    } else {
+                        return new Response(false, "Врач не найден.");
+                    }
+                case BATCH:
+                    return processBatch((BatchRequest) request.getData());
+                case GET_FREE_SLOTS:
+                    FreeSlotsQuery slotsQuery = (FreeSlotsQuery) request.getData();
+                    if (!isValidRange(slotsQuery)) {
+                        return new Response(false, "Некорректный диапазон дат (не более " + MAX_FREE_SLOTS_DAYS + " дней).");
+                    }
+                    List<FreeSlots> freeSlots = dbManager.getFreeSlots(slotsQuery);
+                    if (freeSlots != null) {
+                        return new Response(true, "Свободные слоты получены.", freeSlots);
+                    } else {
+                        return new Response(false, "Не удалось получить свободные слоты.");
+                    }
+                case GET_SCHEDULE_RANGE:
+                    FreeSlotsQuery rangeQuery = (FreeSlotsQuery) request.getData();
+                    if (!isValidRange(rangeQuery)) {
+                        return new Response(false, "Некорректный диапазон дат (не более " + MAX_FREE_SLOTS_DAYS + " дней).");
+                    }
+                    ScheduleRange range = dbManager.getScheduleRange(rangeQuery);
+                    if (range != null) {
+                        return new Response(true, "Расписание за период получено.", range);
+                    } else {
+                        return new Response(false, "Не удалось получить расписание за период.");
+                    }
+                case FIND_EARLIEST_SLOTS:
+                    EarliestSlotsQuery earliestQuery = (EarliestSlotsQuery) request.getData();
+                    if (earliestQuery.getSpecialty() == null || earliestQuery.getFromDate() == null
+                            || earliestQuery.getHorizonDays() <= 0 || earliestQuery.getHorizonDays() > MAX_FREE_SLOTS_DAYS
+                            || earliestQuery.getLimit() <= 0 || earliestQuery.getLimit() > MAX_EARLIEST_SLOTS) {
+                        return new Response(false, "Некорректный запрос: горизонт от 1 до " + MAX_FREE_SLOTS_DAYS
+                                + " дней, от 1 до " + MAX_EARLIEST_SLOTS + " слотов.");
+                    }
+                    List<FreeSlots> earliestSlots = dbManager.findEarliestSlots(earliestQuery);
+                    if (earliestSlots != null) {
+                        return new Response(true, "Ближайшие свободные слоты найдены.", earliestSlots);
+                    } else {
+                        return new Response(false, "Не удалось найти свободные слоты.");
+                    }
+                case SET_WORKING_HOURS:
+                    WorkingHours newHours = (WorkingHours) request.getData();
+                    Response invalidHours = validateWorkingHours(newHours);
+                    if (invalidHours != null) {
+                        return invalidHours;
+                    }
+                    if (dbManager.setWorkingHours(newHours)) {
+                        return new Response(true, "Часы приема сохранены.");
+                    } else {
+                        return new Response(false, "Не удалось сохранить часы приема.");
+                    }
+                case DELETE_WORKING_HOURS:
+                    WorkingHours deletedHours = (WorkingHours) request.getData();
+                    Response invalidKey = validateWorkingHoursKey(deletedHours);
+                    if (invalidKey != null) {
+                        return invalidKey;
+                    }
+                    if (dbManager.deleteWorkingHours(deletedHours)) {
+                        return new Response(true, "Часы приема удалены.");
+                    } else {
+                        return new Response(false, "Не удалось удалить часы приема.");
+                    }
+                case GET_WORKING_HOURS:
+                    List<WorkingHours> doctorHours = dbManager.getWorkingHours((int) request.getData());
+                    if (doctorHours != null) {
+                        return new Response(true, "Часы приема получены.", doctorHours);
+                    } else {
+                        return new Response(false, "Не удалось получить часы приема.");
+                    }
+                case GET_SCHEDULE_VIEW:
+                    ScheduleView view = dbManager.getScheduleView((ScheduleViewQuery) request.getData());
+                    if (view != null) {
+                        return new Response(true, "Расписание получено.", view);
+                    } else {
+                        return new Response(false, "Не удалось получить расписание.");
+                    }
+                case SUBSCRIBE_SCHEDULE:
+                    // Подписке нужно соединение для событий: в пакете или без данных запроса она невозможна
+                    return new Response(false, "Подписка на расписание оформляется отдельным запросом.");
+                case UNSUBSCRIBE_SCHEDULE:
+                    if (scheduleEvents.unsubscribe((long) request.getData())) {
+                        return new Response(true, "Подписка на расписание завершена.");
+                    } else {
+                        return new Response(false, "Подписка на расписание не найдена.");
+                    }
+                case CANCEL_REQUEST:
+                    // Отмена относится к запросам соединения и в пакете невозможна
+                    return new Response(false, "Отмена запроса оформляется отдельным запросом.");
+                case GET_CHANGES_SINCE:
+                    long sinceVersion = (long) request.getData();
+                    if (sinceVersion < 0) {
+                        return new Response(false, "Некорректная версия данных.");
+                    }
+                    ChangeSet changeSet = dbManager.getChangesSince(sinceVersion);
+                    if (changeSet != null) {
+                        return new Response(true, "Изменения получены.", changeSet);
+                    } else {
+                        return new Response(false, "Не удалось получить изменения.");
+                    }
+                default:
+                    return new Response(false, "Неизвестный тип операции.");
+            }
+        } catch (ClassCastException e) {
+            System.err.println("Ошибка приведения типов в запросе: " + e.getMessage());
+            return new Response(false, "Неверный формат данных для запрошенной операции.");
+        } catch (Exception e) {
+            System.err.println("Ошибка обработки запроса: " + e.getMessage());
+            e.printStackTrace();
+            return new Response(false, "Внутренняя ошибка сервера: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ответ на кадр, который не удалось декодировать. Если заголовок прочитан, ответ получает
+     * идентификатор запроса, и клиент узнает об ошибке сразу, а не по таймауту.
+     * @param e Ошибка декодирования (IOException или непредвиденное RuntimeException).
+     */
+    public static Response malformedRequest(Exception e) {
+        System.err.println("Ошибка декодирования запроса: " + e.getMessage());
+        Response response = new Response(false, "Неверный формат запроса.");
+        if (e instanceof MalformedRequestException) {
+            response.setRequestId(((MalformedRequestException) e).getRequestId());
+        }
+        return response;
+    }
+
+    /**
+     * Ответ со списком, который клиент может сохранить и запросить условно с этой версией.
+     */
+    private static Response versioned(Response response, long version) {
+        response.setVersion(version);
+        return response;
+    }
+
+    /**
+     * Одна страница пациентов (в пакете и без потокового режима).
+     */
+    private Response patientsPage(PatientPageRequest pageRequest) {
+        Response invalid = validatePage(pageRequest);
+        if (invalid != null) {
+            return invalid;
+        }
+        Page<Patient> page = dbManager.getPatientsPage(pageRequest);
+        if (page != null) {
+            return new Response(true, "Страница пациентов получена.", page);
+        } else {
+            return new Response(false, "Не удалось получить страницу пациентов.");
+        }
+    }
+
+    /**
+     * Одна страница истории записей пациента.
+     */
+    private Response historyPage(HistoryPageRequest pageRequest) {
+        if (pageRequest.getLimit() <= 0 || pageRequest.getLimit() > MAX_PAGE_SIZE) {
+            return new Response(false, "Некорректный размер страницы (от 1 до " + MAX_PAGE_SIZE + ").");
+        }
+        Page<Appointment> page = dbManager.getPatientHistoryPage(pageRequest);
+        if (page != null) {
+            return new Response(true, "Страница истории записей пациента получена.", page);
+        } else {
+            return new Response(false, "Не удалось получить историю записей пациента.");
+        }
+    }
+
+    /**
+     * Выполняет пакет подзапросов на одном соединении с БД.
+     * В транзакционном пакете первый неуспешный подзапрос отменяет весь пакет.
+     * @param batch Пакет подзапросов.
+     * @return Ответ со списком ответов на подзапросы в исходном порядке.
+     */
+    private Response processBatch(BatchRequest batch) throws SQLException {
+        // Транзакция пакета держит соединение и блокировки, пока не выполнены все запросы
+        if (batch.getRequests().size() > maxBatchSize) {
+            return new Response(false, "Слишком большой пакет (не более " + maxBatchSize + " запросов).");
+        }
+        List<Response> results = new ArrayList<>(batch.getRequests().size());
+        if (!batch.isTransactional()) {
+            dbManager.withSharedConnection(() -> runBatchItems(batch, results, false));
+            return new Response(true, "Пакет запросов выполнен.", results);
+        }
+        try {
+            dbManager.inTransaction(() -> runBatchItems(batch, results, true));
+            return new Response(true, "Пакет запросов выполнен в одной транзакции.", results);
+        } catch (BatchAbortedException e) {
+            return new Response(false, "Пакет отменен: " + e.getMessage(), results);
+        }
+    }
+
+    private Void runBatchItems(BatchRequest batch, List<Response> results, boolean stopOnFailure) {
+        for (Request item : batch.getRequests()) {
+            Response itemResponse = item.getType() == OperationType.BATCH
+                    ? new Response(false, "Вложенные пакеты не поддерживаются.")
+                    : process(item);
+            results.add(itemResponse);
+            if (stopOnFailure && !itemResponse.isSuccess()) {
+                throw new BatchAbortedException(itemResponse.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Прерывает транзакционный пакет, чтобы откатить его изменения.
+     */
+    private static class BatchAbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L; // Для сериализации
+
+        BatchAbortedException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
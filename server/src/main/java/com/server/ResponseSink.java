@@ -0,0 +1,63 @@
+package com.server;
+
+import com.common.network.Response;
+
+/**
+ * Получатель ответов на запрос: отправляет их клиенту по соединению, на котором пришел запрос.
+ * Потоковый запрос передает в него несколько частичных ответов и один итоговый.
+ * Блокирующий получатель сдерживает поток записью в сокет, неблокирующий — откладывает его продолжение.
+ */
+@FunctionalInterface
+public interface ResponseSink {
+    /**
+     * Отправляет ответ. Может ждать, пока клиент примет ранее отправленные данные.
+     * @param response Ответ с уже назначенным идентификатором запроса.
+     * @return false, если соединение закрыто и дальнейшие ответы отправлять бессмысленно.
+     */
+    boolean send(Response response);
+
+    /**
+     * Отправляет ответ, не дожидаясь медленного клиента (рассылка событий подписчикам).
+     * @param response Ответ с уже назначенным идентификатором запроса.
+     * @return false, если соединение закрыто или клиент не успевает принимать данные.
+     */
+    default boolean offer(Response response) {
+        return send(response);
+    }
+
+    /**
+     * @return true, если очередной частичный ответ можно отправить, не дожидаясь клиента.
+     */
+    default boolean isWritable() {
+        return true;
+    }
+
+    /**
+     * Продолжает потоковый ответ, когда клиент примет ранее отправленные данные.
+     * Вызывается, если isWritable() вернул false; вызвавший поток сразу освобождается.
+     * @param continuation Продолжение потокового ответа.
+     */
+    default void whenWritable(Runnable continuation) {
+        continuation.run();
+    }
+
+    /**
+     * @return false, если соединение уже закрыто.
+     */
+    default boolean isOpen() {
+        return true;
+    }
+
+    /**
+     * Отмечает запрос соединения отмененным клиентом (CANCEL_REQUEST).
+     */
+    default void cancel(long requestId) {
+    }
+
+    /**
+     * @return true, если клиент отменил запрос: его можно не выполнять или прервать.
+     */
+    default boolean isCancelled(long requestId) {
+        return false;
+    }
+}
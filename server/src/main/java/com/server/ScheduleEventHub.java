@@ -0,0 +1,245 @@
+package com.server;
+
+import com.common.model.FreeSlotsQuery;
+import com.common.model.SlotChange;
+import com.common.network.Response;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Рассылка изменений занятости слотов подписчикам SUBSCRIBE_SCHEDULE.
+ * Подписка не занимает потока: она хранит получателя ответов соединения и индексируется
+ * по ID врача, поэтому изменение у одного врача затрагивает только его подписчиков
+ * (и подписчиков на всех врачей). Изменения, зафиксированные за короткое окно, собираются
+ * в один пакет: для каждого дня врача отправляется итоговая маска занятости из индекса,
+ * а каждый подписчик получает один частичный ответ со всеми своими изменениями.
+ * Рассылка идет в отдельном потоке и не задерживает запись на прием; подписчик, который
+ * не успевает принимать события, отключается от рассылки и должен перезагрузить расписание.
+ */
+class ScheduleEventHub {
+    static final int MAX_SUBSCRIPTIONS = 100_000;
+    private static final long COALESCE_MILLIS = 20; // Окно, за которое изменения собираются в один пакет
+    private static final long PURGE_INTERVAL_SECONDS = 60; // Проверка закрытых соединений и прошедших дат
+
+    /**
+     * Подписка одного клиента на врачей и диапазон дат.
+     */
+    private static class Subscription {
+        final long id;
+        final long requestId; // Идентификатор запроса SUBSCRIBE_SCHEDULE: с ним приходят события
+        final ResponseSink sink;
+        final Set<Integer> doctorIds; // Пустое множество — все врачи
+        final LocalDate fromDate;
+        final LocalDate toDate;
+
+        Subscription(long id, long requestId, ResponseSink sink, Set<Integer> doctorIds, LocalDate fromDate, LocalDate toDate) {
+            this.id = id;
+            this.requestId = requestId;
+            this.sink = sink;
+            this.doctorIds = doctorIds;
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+        }
+
+        boolean covers(LocalDate date) {
+            return !date.isBefore(fromDate) && !date.isAfter(toDate);
+        }
+    }
+
+    private final Function<LocalDate, Map<Integer, Long>> occupancy;
+    private final ScheduledExecutorService dispatcher;
+
+    // Индекс подписок; изменяется и читается под блокировкой this
+    private final Map<Long, Subscription> subscriptions = new HashMap<>();
+    private final Map<Integer, Set<Subscription>> byDoctor = new HashMap<>();
+    private final Set<Subscription> allDoctors = new HashSet<>();
+    private long nextId;
+
+    // Измененные дни врачей, ожидающие рассылки: ключ — день (старшие 32 бита) и ID врача
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
+    /**
+     * @param occupancy Маски занятых слотов всех врачей на день (null, если день не удалось прочитать).
+     */
+    ScheduleEventHub(Function<LocalDate, Map<Integer, Long>> occupancy) {
+        this.occupancy = occupancy;
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "schedule-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(this::purge, PURGE_INTERVAL_SECONDS, PURGE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Регистрирует подписку и отправляет клиенту частичный ответ с ее ID.
+     * @param requestId Идентификатор запроса SUBSCRIBE_SCHEDULE.
+     * @param query Врачи (пустой список — все врачи) и диапазон дат.
+     * @param sink Получатель ответов соединения.
+     * @return Ответ с ошибкой, если подписку зарегистрировать нельзя, иначе null.
+     */
+    Response subscribe(long requestId, FreeSlotsQuery query, ResponseSink sink) {
+        Subscription subscription;
+        synchronized (this) {
+            if (subscriptions.size() >= MAX_SUBSCRIPTIONS) {
+                return new Response(false, "Превышено число подписок на расписание.");
+            }
+            subscription = new Subscription(++nextId, requestId, sink, new HashSet<>(query.getDoctorIds()),
+                    query.getFromDate(), query.getToDate());
+            subscriptions.put(subscription.id, subscription);
+            if (subscription.doctorIds.isEmpty()) {
+                allDoctors.add(subscription);
+            } else {
+                for (Integer doctorId : subscription.doctorIds) {
+                    byDoctor.computeIfAbsent(doctorId, id -> new HashSet<>()).add(subscription);
+                }
+            }
+        }
+        Response ack = new Response(true, "Подписка на расписание оформлена.", subscription.id);
+        ack.setRequestId(requestId);
+        ack.setPartial(true);
+        if (!sink.send(ack)) {
+            remove(subscription.id);
+        }
+        return null;
+    }
+
+    /**
+     * Завершает подписку: поток событий закрывается итоговым ответом на запрос подписки.
+     * @return false, если подписки с таким ID нет.
+     */
+    boolean unsubscribe(long subscriptionId) {
+        Subscription subscription = remove(subscriptionId);
+        if (subscription == null) {
+            return false;
+        }
+        finish(subscription, new Response(true, "Подписка на расписание завершена."));
+        return true;
+    }
+
+    /**
+     * Сообщает об изменении занятости слотов врача на день. Вызывается после фиксации;
+     * рассылка выполняется в потоке событий.
+     */
+    void publish(int doctorId, LocalDate date) {
+        pending.add((date.toEpochDay() << 32) | (doctorId & 0xFFFFFFFFL));
+        if (dispatchScheduled.compareAndSet(false, true)) {
+            dispatcher.schedule(this::dispatch, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized int size() {
+        return subscriptions.size();
+    }
+
+    private void dispatch() {
+        dispatchScheduled.set(false); // Изменения, пришедшие во время рассылки, запланируют следующую
+        Map<LocalDate, List<Integer>> changedDays = new HashMap<>();
+        Iterator<Long> keys = pending.iterator();
+        while (keys.hasNext()) {
+            long key = keys.next();
+            keys.remove();
+            changedDays.computeIfAbsent(LocalDate.ofEpochDay(key >> 32), day -> new ArrayList<>()).add((int) key);
+        }
+        Map<Subscription, List<SlotChange>> batches = new IdentityHashMap<>();
+        for (Map.Entry<LocalDate, List<Integer>> entry : changedDays.entrySet()) {
+            LocalDate date = entry.getKey();
+            Map<Integer, Long> occupied;
+            try {
+                occupied = occupancy.apply(date);
+            } catch (RuntimeException e) {
+                occupied = null;
+            }
+            if (occupied == null) {
+                System.err.println("Не удалось разослать изменения расписания на " + date);
+                continue;
+            }
+            synchronized (this) {
+                for (Integer doctorId : entry.getValue()) {
+                    SlotChange change = new SlotChange(doctorId, date, occupied.getOrDefault(doctorId, 0L));
+                    addToBatches(batches, byDoctor.get(doctorId), change);
+                    addToBatches(batches, allDoctors, change);
+                }
+            }
+        }
+        for (Map.Entry<Subscription, List<SlotChange>> batch : batches.entrySet()) {
+            Subscription subscription = batch.getKey();
+            Response event = new Response(true, "Изменения расписания.", batch.getValue());
+            event.setRequestId(subscription.requestId);
+            event.setPartial(true);
+            if (!subscription.sink.offer(event) && remove(subscription.id) != null) {
+                // Соединение закрыто или клиент отстал: события пропущены, клиент должен перезагрузить расписание
+                finish(subscription, new Response(false, "Подписка на расписание прервана: клиент не успевает получать изменения."));
+            }
+        }
+    }
+
+    private static void addToBatches(Map<Subscription, List<SlotChange>> batches, Set<Subscription> candidates, SlotChange change) {
+        if (candidates == null) {
+            return;
+        }
+        for (Subscription subscription : candidates) {
+            if (subscription.covers(change.getDate())) {
+                batches.computeIfAbsent(subscription, s -> new ArrayList<>()).add(change);
+            }
+        }
+    }
+
+    /**
+     * Удаляет подписки закрытых соединений и подписки, все даты которых прошли.
+     */
+    private void purge() {
+        LocalDate today = LocalDate.now();
+        List<Subscription> stale = new ArrayList<>();
+        synchronized (this) {
+            for (Subscription subscription : subscriptions.values()) {
+                if (!subscription.sink.isOpen() || subscription.toDate.isBefore(today)) {
+                    stale.add(subscription);
+                }
+            }
+        }
+        for (Subscription subscription : stale) {
+            if (remove(subscription.id) != null && subscription.sink.isOpen()) {
+                finish(subscription, new Response(true, "Подписка на расписание завершена: даты прошли."));
+            }
+        }
+    }
+
+    private synchronized Subscription remove(long subscriptionId) {
+        Subscription subscription = subscriptions.remove(subscriptionId);
+        if (subscription == null) {
+            return null;
+        }
+        if (subscription.doctorIds.isEmpty()) {
+            allDoctors.remove(subscription);
+        } else {
+            for (Integer doctorId : subscription.doctorIds) {
+                Set<Subscription> doctorSubscriptions = byDoctor.get(doctorId);
+                if (doctorSubscriptions != null && doctorSubscriptions.remove(subscription) && doctorSubscriptions.isEmpty()) {
+                    byDoctor.remove(doctorId);
+                }
+            }
+        }
+        return subscription;
+    }
+
+    private static void finish(Subscription subscription, Response response) {
+        response.setRequestId(subscription.requestId);
+        subscription.sink.send(response);
+    }
+}
@@ -0,0 +1,203 @@
+package com.server;
+
+import com.common.model.Appointment;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Версионные миграции схемы базы данных.
+ * Номер последней примененной миграции хранится в таблице schema_version; при запуске
+ * применяются по порядку только новые миграции. Новая миграция добавляется в конец списка
+ * со следующим номером, уже выпущенные миграции не изменяются.
+ * DDL в H2 фиксируется сразу, поэтому каждая миграция написана так, чтобы ее можно было
+ * безопасно повторить (IF NOT EXISTS), если сервер остановился посреди нее.
+ */
+public class SchemaMigrator {
+
+    /**
+     * Шаг миграции, выполняемый на соединении с базой данных.
+     */
+    @FunctionalInterface
+    interface MigrationStep {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final MigrationStep step;
+
+        Migration(int version, String description, MigrationStep step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaMigrator() {
+        add(1, "Таблицы пациентов, врачей и записей на прием", stmt -> {
+            stmt.execute("CREATE TABLE IF NOT EXISTS Patients (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY," +
+                    "lastName VARCHAR(255) NOT NULL," +
+                    "firstName VARCHAR(255) NOT NULL," +
+                    "middleName VARCHAR(255)," +
+                    "dateOfBirth DATE," +
+                    "address VARCHAR(255)," +
+                    "phone VARCHAR(20)," +
+                    "policyNumber VARCHAR(50) UNIQUE NOT NULL" +
+                    ")");
+            stmt.execute("CREATE TABLE IF NOT EXISTS Doctors (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY," +
+                    "lastName VARCHAR(255) NOT NULL," +
+                    "firstName VARCHAR(255) NOT NULL," +
+                    "middleName VARCHAR(255)," +
+                    "specialty VARCHAR(100) NOT NULL," +
+                    "officeNumber VARCHAR(10)" +
+                    ")");
+            stmt.execute("CREATE TABLE IF NOT EXISTS Appointments (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY," +
+                    "patientId INT NOT NULL," +
+                    "doctorId INT NOT NULL," +
+                    "appointmentDate DATE NOT NULL," +
+                    "appointmentTime TIME NOT NULL," +
+                    "status VARCHAR(50) DEFAULT 'Запланировано'," +
+                    "FOREIGN KEY (patientId) REFERENCES Patients(id) ON DELETE CASCADE," +
+                    "FOREIGN KEY (doctorId) REFERENCES Doctors(id) ON DELETE CASCADE," +
+                    "UNIQUE (doctorId, appointmentDate, appointmentTime)" + // Запрет на дублирование записей
+                    ")");
+        });
+        add(2, "Индексы записей и нормализованные ФИО для входа", stmt -> {
+            // История пациента и расписание на дату
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_appointments_patient ON Appointments(patientId)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_appointments_date ON Appointments(appointmentDate)");
+            // ФИО в нижнем регистре вычисляются самой базой и индексируются для поиска при входе
+            for (String table : new String[]{"Patients", "Doctors"}) {
+                stmt.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS lastNameNorm VARCHAR(255) GENERATED ALWAYS AS (LOWER(lastName))");
+                stmt.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS firstNameNorm VARCHAR(255) GENERATED ALWAYS AS (LOWER(firstName))");
+                stmt.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS middleNameNorm VARCHAR(255) GENERATED ALWAYS AS (LOWER(middleName))");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + table.toLowerCase() + "_name_norm ON " + table +
+                        "(lastNameNorm, firstNameNorm, middleNameNorm)");
+            }
+        });
+        add(3, "Уникальность только для действующих записей", stmt -> {
+            // У отмененной записи activeDoctorId = NULL, а NULL не участвует в проверке уникальности
+            stmt.execute("ALTER TABLE Appointments ADD COLUMN IF NOT EXISTS activeDoctorId INT GENERATED ALWAYS AS " +
+                    "(CASE WHEN status = '" + Appointment.STATUS_CANCELLED + "' THEN NULL ELSE doctorId END)");
+            stmt.execute("ALTER TABLE Appointments ADD CONSTRAINT IF NOT EXISTS uq_appointments_active_slot " +
+                    "UNIQUE (activeDoctorId, appointmentDate, appointmentTime)");
+            // Старое ограничение UNIQUE (doctorId, appointmentDate, appointmentTime) создано без имени
+            List<String> oldConstraints = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS " +
+                    "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'APPOINTMENTS' AND CONSTRAINT_TYPE = 'UNIQUE' " +
+                    "AND CONSTRAINT_NAME <> 'UQ_APPOINTMENTS_ACTIVE_SLOT'")) {
+                while (rs.next()) {
+                    oldConstraints.add(rs.getString(1));
+                }
+            }
+            for (String constraint : oldConstraints) {
+                stmt.execute("ALTER TABLE Appointments DROP CONSTRAINT IF EXISTS \"" + constraint + "\"");
+            }
+        });
+        add(4, "Составной индекс истории записей пациента", stmt -> {
+            // Порядок ключа совпадает с порядком истории: страница читается из индекса без сортировки
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_appointments_patient_history ON Appointments" +
+                    "(patientId, appointmentDate DESC, appointmentTime DESC, id DESC)");
+            // idx_appointments_patient остается: H2 использует его для внешнего ключа на Patients
+        });
+        add(5, "Индекс занятости слотов по датам", stmt -> {
+            // Диапазон дат читается одним проходом по индексу, без обращения к строкам таблицы
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_appointments_date_doctor ON Appointments" +
+                    "(appointmentDate, activeDoctorId, appointmentTime)");
+            // Новый индекс начинается с appointmentDate и заменяет собой индекс по одной дате
+            stmt.execute("DROP INDEX IF EXISTS idx_appointments_date");
+        });
+        add(6, "Шаблоны часов приема врачей и исключения", stmt -> {
+            // Недельный шаблон: одна строка на день недели (1 — понедельник); дни без строки — выходные
+            stmt.execute("CREATE TABLE IF NOT EXISTS DoctorWorkingHours (" +
+                    "doctorId INT NOT NULL," +
+                    "dayOfWeek INT NOT NULL CHECK (dayOfWeek BETWEEN 1 AND 7)," +
+                    "startTime TIME NOT NULL," +
+                    "endTime TIME NOT NULL," +
+                    "PRIMARY KEY (doctorId, dayOfWeek)," +
+                    "FOREIGN KEY (doctorId) REFERENCES Doctors(id) ON DELETE CASCADE" +
+                    ")");
+            // Исключение заменяет шаблон на дату; NULL вместо времени — врач не принимает
+            stmt.execute("CREATE TABLE IF NOT EXISTS DoctorScheduleExceptions (" +
+                    "doctorId INT NOT NULL," +
+                    "exceptionDate DATE NOT NULL," +
+                    "startTime TIME," +
+                    "endTime TIME," +
+                    "PRIMARY KEY (doctorId, exceptionDate)," +
+                    "FOREIGN KEY (doctorId) REFERENCES Doctors(id) ON DELETE CASCADE" +
+                    ")");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_schedule_exceptions_date ON DoctorScheduleExceptions(exceptionDate)");
+        });
+        add(7, "Журнал изменений строк для синхронизации клиентов", stmt -> {
+            // Последняя выданная версия и граница усечения журнала. Строки, измененные до появления
+            // журнала, в нем отсутствуют, поэтому версия 1 считается уже усеченной
+            stmt.execute("CREATE TABLE IF NOT EXISTS ChangeVersion (" +
+                    "id INT PRIMARY KEY CHECK (id = 1)," +
+                    "version BIGINT NOT NULL," +
+                    "truncatedThrough BIGINT NOT NULL" +
+                    ")");
+            stmt.execute("INSERT INTO ChangeVersion (id, version, truncatedThrough) " +
+                    "SELECT 1, 1, 1 WHERE NOT EXISTS (SELECT 1 FROM ChangeVersion)");
+            // entityType: 1 — пациент, 2 — врач, 3 — запись; changeType: I, U, C (отмена), D
+            stmt.execute("CREATE TABLE IF NOT EXISTS ChangeLog (" +
+                    "version BIGINT PRIMARY KEY," +
+                    "entityType TINYINT NOT NULL," +
+                    "entityId INT NOT NULL," +
+                    "changeType CHAR(1) NOT NULL," +
+                    "changedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+        });
+    }
+
+    private void add(int version, String description, MigrationStep step) {
+        migrations.add(new Migration(version, description, step));
+    }
+
+    /**
+     * Применяет к базе все миграции, номер которых больше текущей версии схемы.
+     * @param conn Соединение с базой данных.
+     * @throws SQLException Если миграция завершилась ошибкой; следующие миграции не применяются.
+     */
+    public void migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY," +
+                    "description VARCHAR(255) NOT NULL," +
+                    "appliedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+            int current = currentVersion(stmt);
+            for (Migration migration : migrations) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                System.out.println("Применение миграции схемы V" + migration.version + ": " + migration.description);
+                migration.step.apply(stmt);
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                    pstmt.setInt(1, migration.version);
+                    pstmt.setString(2, migration.description);
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private int currentVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -4,33 +4,90 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Главный класс сервера "Регистратура поликлиники".
  * Отвечает за запуск сервера, прослушивание входящих соединений
- * и создание потоков для обработки клиентов.
+ * и передачу их обработчикам через ConnectionExecutor.
+ * Режим ввода/вывода (блокирующий или NIO) выбирается свойством -Dpolyclinic.server.io.
  */
 public class Server {
     private int port;
+    private ServerConfig config;
     private DatabaseManager dbManager;
+    private RequestProcessor processor;
 
     public Server(int port) {
+        this(port, ServerConfig.fromSystemProperties());
+    }
+
+    public Server(int port, ServerConfig config) {
         this.port = port;
-        dbManager = new DatabaseManager(); // Инициализация менеджера БД
+        this.config = config;
+        dbManager = new DatabaseManager(config); // Инициализация менеджера БД
+        processor = new RequestProcessor(dbManager, config);
     }
 
     public void start() {
-        try (ServerSocket serverSocket = new ServerSocket(port)) { // Используем введенный порт
+        ExecutorService requestWorkers = createRequestWorkers(config.getWorkerThreads());
+        try {
+            if (config.getIoMode() == ServerConfig.IoMode.NIO) {
+                new NioServer(port, config, processor, requestWorkers).start();
+            } else {
+                acceptBlocking(requestWorkers);
+            }
+        } finally {
+            requestWorkers.shutdownNow();
+            System.out.println(dbManager.getPoolMetrics());
+            System.out.println(dbManager.getDoctorDirectoryMetrics());
+            System.out.println(dbManager.getPatientCacheMetrics());
+            dbManager.close();
+        }
+    }
+
+    /**
+     * Пул потоков, выполняющих запросы клиентов в режиме NIO и при пуле обработчиков соединений.
+     * Общий для всех соединений, поэтому медленный запрос одного клиента не задерживает быстрые запросы на том же соединении.
+     */
+    private static ExecutorService createRequestWorkers(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "request-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void acceptBlocking(ExecutorService requestWorkers) {
+        ConnectionExecutor connectionExecutor = new ConnectionExecutor(config);
+        ExecutorService handlerRequests = connectionExecutor.requestExecutor(requestWorkers);
+        try (ServerSocket serverSocket = new ServerSocket(port, config.getAcceptBacklog())) { // Используем введенный порт
             System.out.println("Сервер запущен и прослушивает порт " + port);
+            System.out.println(config + ", режим потоков: " + connectionExecutor.getMode());
 
             while (true) {
-                Socket clientSocket = serverSocket.accept(); // Ожидание нового клиента
-                new Thread(new ClientHandler(clientSocket, dbManager)).start();
+                // Ждем свободное место до accept(): сверх лимита клиенты ожидают в очереди ОС
+                connectionExecutor.acquireSlot();
+                Socket clientSocket;
+                try {
+                    clientSocket = serverSocket.accept(); // Ожидание нового клиента
+                } catch (IOException e) {
+                    connectionExecutor.releaseSlot();
+                    throw e;
+                }
+                connectionExecutor.execute(new ClientHandler(clientSocket, processor, handlerRequests, config.getMaxInFlight()));
             }
         } catch (IOException e) {
             System.err.println("Ошибка сервера: " + e.getMessage());
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Ожидание подключений прервано.");
         } finally {
+            connectionExecutor.shutdown();
             System.out.println("Сервер остановлен.");
         }
     }
@@ -0,0 +1,263 @@
+package com.server;
+
+/**
+ * Параметры запуска сервера.
+ * Значения читаются из системных свойств (-Dpolyclinic.server.*), для отсутствующих используются значения по умолчанию.
+ */
+public class ServerConfig {
+    private static final String PREFIX = "polyclinic.server.";
+
+    /**
+     * Режим сетевого ввода/вывода сервера.
+     */
+    public enum IoMode {
+        BLOCKING, // Поток (виртуальный или из пула) на каждое соединение
+        NIO       // Один поток селектора и небольшой пул рабочих потоков
+    }
+
+    private IoMode ioMode = IoMode.BLOCKING;
+    private ConnectionExecutor.Mode executorMode = ConnectionExecutor.Mode.VIRTUAL;
+    private int maxConnections = 1000; // Максимум одновременно обслуживаемых клиентов (в режиме POOLED не больше poolSize)
+    private int poolSize = 64; // Размер пула потоков в режиме POOLED
+    private int acceptBacklog = 512; // Очередь ожидающих accept() соединений на уровне ОС
+    private int workerThreads = Runtime.getRuntime().availableProcessors(); // Потоки выполнения запросов
+    private int maxInFlight = 32; // Максимум одновременно выполняемых запросов одного соединения
+    private int bufferSize = 64 * 1024; // Размер прямого буфера в режиме NIO
+    private int maxPooledBuffers = 256; // Сколько свободных буферов держит пул
+    private String dbUrl = "jdbc:h2:./polyclinic_registry_db"; // Адрес базы данных H2
+    private int dbPoolSize = 16; // Размер пула соединений с БД
+    private int dbMaxLifetimeSeconds = 30 * 60; // Время жизни соединения с БД
+    private int dbAcquireTimeoutMillis = 5000; // Ожидание свободного соединения
+    private int dbValidationIdleMillis = 30_000; // Проверять соединения, простаивавшие дольше
+    private int dbStatementCacheSize = 64; // Подготовленных запросов в кэше одного соединения
+    private int patientCacheMaxEntries = 10_000; // Пациентов в кэше сервера
+    private int patientCacheMaxMb = 16; // Приблизительный объем кэша пациентов
+    private int changeLogRetention = 100_000; // Сколько последних версий хранит журнал изменений
+    private int slotIndexDays = 366; // На сколько дней вперед от сегодняшнего занятость слотов хранится в памяти
+    private int maxBatchSize = 1000; // Максимум запросов в одном пакете BATCH
+
+    /**
+     * Создает конфигурацию из системных свойств.
+     * @return Объект ServerConfig.
+     */
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig config = new ServerConfig();
+        String io = System.getProperty(PREFIX + "io");
+        if (io != null) {
+            config.ioMode = IoMode.valueOf(io.trim().toUpperCase());
+        }
+        String mode = System.getProperty(PREFIX + "executor");
+        if (mode != null) {
+            config.executorMode = ConnectionExecutor.Mode.valueOf(mode.trim().toUpperCase());
+        }
+        config.maxConnections = intProperty("maxConnections", config.maxConnections);
+        config.poolSize = intProperty("poolSize", config.poolSize);
+        config.acceptBacklog = intProperty("acceptBacklog", config.acceptBacklog);
+        config.workerThreads = intProperty("workers", config.workerThreads);
+        config.maxInFlight = intProperty("maxInFlight", config.maxInFlight);
+        config.bufferSize = intProperty("bufferSize", config.bufferSize);
+        config.maxPooledBuffers = intProperty("maxPooledBuffers", config.maxPooledBuffers);
+        String dbUrl = System.getProperty(PREFIX + "dbUrl");
+        if (dbUrl != null) {
+            config.dbUrl = dbUrl.trim();
+        }
+        config.dbPoolSize = intProperty("dbPoolSize", config.dbPoolSize);
+        config.dbMaxLifetimeSeconds = intProperty("dbMaxLifetimeSeconds", config.dbMaxLifetimeSeconds);
+        config.dbAcquireTimeoutMillis = intProperty("dbAcquireTimeoutMillis", config.dbAcquireTimeoutMillis);
+        config.dbValidationIdleMillis = intProperty("dbValidationIdleMillis", config.dbValidationIdleMillis);
+        config.dbStatementCacheSize = intProperty("dbStatementCacheSize", config.dbStatementCacheSize);
+        config.patientCacheMaxEntries = intProperty("patientCacheMaxEntries", config.patientCacheMaxEntries);
+        config.patientCacheMaxMb = intProperty("patientCacheMaxMb", config.patientCacheMaxMb);
+        config.changeLogRetention = intProperty("changeLogRetention", config.changeLogRetention);
+        config.slotIndexDays = intProperty("slotIndexDays", config.slotIndexDays);
+        config.maxBatchSize = intProperty("maxBatchSize", config.maxBatchSize);
+        return config;
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : defaultValue;
+        } catch (NumberFormatException e) {
+            System.err.println("Некорректное значение свойства " + PREFIX + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public IoMode getIoMode() {
+        return ioMode;
+    }
+
+    public void setIoMode(IoMode ioMode) {
+        this.ioMode = ioMode;
+    }
+
+    public ConnectionExecutor.Mode getExecutorMode() {
+        return executorMode;
+    }
+
+    public void setExecutorMode(ConnectionExecutor.Mode executorMode) {
+        this.executorMode = executorMode;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+
+    public void setAcceptBacklog(int acceptBacklog) {
+        this.acceptBacklog = acceptBacklog;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getMaxPooledBuffers() {
+        return maxPooledBuffers;
+    }
+
+    public void setMaxPooledBuffers(int maxPooledBuffers) {
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    public String getDbUrl() {
+        return dbUrl;
+    }
+
+    public void setDbUrl(String dbUrl) {
+        this.dbUrl = dbUrl;
+    }
+
+    public int getDbPoolSize() {
+        return dbPoolSize;
+    }
+
+    public void setDbPoolSize(int dbPoolSize) {
+        this.dbPoolSize = dbPoolSize;
+    }
+
+    public int getDbMaxLifetimeSeconds() {
+        return dbMaxLifetimeSeconds;
+    }
+
+    public void setDbMaxLifetimeSeconds(int dbMaxLifetimeSeconds) {
+        this.dbMaxLifetimeSeconds = dbMaxLifetimeSeconds;
+    }
+
+    public int getDbAcquireTimeoutMillis() {
+        return dbAcquireTimeoutMillis;
+    }
+
+    public void setDbAcquireTimeoutMillis(int dbAcquireTimeoutMillis) {
+        this.dbAcquireTimeoutMillis = dbAcquireTimeoutMillis;
+    }
+
+    public int getDbValidationIdleMillis() {
+        return dbValidationIdleMillis;
+    }
+
+    public void setDbValidationIdleMillis(int dbValidationIdleMillis) {
+        this.dbValidationIdleMillis = dbValidationIdleMillis;
+    }
+
+    public int getDbStatementCacheSize() {
+        return dbStatementCacheSize;
+    }
+
+    public void setDbStatementCacheSize(int dbStatementCacheSize) {
+        this.dbStatementCacheSize = dbStatementCacheSize;
+    }
+
+    public int getPatientCacheMaxEntries() {
+        return patientCacheMaxEntries;
+    }
+
+    public void setPatientCacheMaxEntries(int patientCacheMaxEntries) {
+        this.patientCacheMaxEntries = patientCacheMaxEntries;
+    }
+
+    public int getPatientCacheMaxMb() {
+        return patientCacheMaxMb;
+    }
+
+    public void setPatientCacheMaxMb(int patientCacheMaxMb) {
+        this.patientCacheMaxMb = patientCacheMaxMb;
+    }
+
+    public int getChangeLogRetention() {
+        return changeLogRetention;
+    }
+
+    public void setChangeLogRetention(int changeLogRetention) {
+        this.changeLogRetention = changeLogRetention;
+    }
+
+    public int getSlotIndexDays() {
+        return slotIndexDays;
+    }
+
+    public void setSlotIndexDays(int slotIndexDays) {
+        this.slotIndexDays = slotIndexDays;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "Конфигурация{" +
+                "ввод/вывод=" + ioMode +
+                ", исполнитель=" + executorMode +
+                ", макс. соединений=" + maxConnections +
+                ", размер пула=" + poolSize +
+                ", очередь accept=" + acceptBacklog +
+                ", потоков запросов=" + workerThreads +
+                ", соединений с БД=" + dbPoolSize +
+                '}';
+    }
+}
@@ -0,0 +1,178 @@
+package com.server;
+
+import com.common.model.SlotGrid;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Индекс занятости слотов в памяти: для каждого дня хранится битовая маска занятых слотов
+ * каждого врача (бит i — слот i сетки SlotGrid).
+ * Дни загружаются из базы при первом обращении — все недостающие дни диапазона одним запросом,
+ * а затем поддерживаются в актуальном состоянии при записи на прием и отмене записи.
+ * Хранятся только дни от сегодняшнего на заданное число дней вперед: более далекие и прошедшие даты,
+ * которые может запросить клиент, читаются из базы при каждом обращении и не занимают память.
+ */
+public class SlotAvailabilityIndex {
+
+    /**
+     * Загружает занятые слоты за диапазон дат из базы данных.
+     */
+    @FunctionalInterface
+    public interface RangeLoader {
+        /**
+         * @param fromDate Первый день диапазона.
+         * @param toDate Последний день диапазона (включительно).
+         * @return Маски занятых слотов по дням и ID врача (дни и врачи без записей могут отсутствовать).
+         * @throws SQLException Если не удалось прочитать записи; дни не кэшируются.
+         */
+        Map<LocalDate, Map<Integer, Long>> load(LocalDate fromDate, LocalDate toDate) throws SQLException;
+    }
+
+    private final RangeLoader loader;
+    private final int horizonDays;
+    // Первый хранимый день; сдвигается при удалении прошедших дней
+    private volatile LocalDate firstCachedDay = LocalDate.now();
+    private final Map<LocalDate, Map<Integer, Long>> days = new ConcurrentHashMap<>();
+    // Увеличивается при каждом изменении; загрузка, пересекшаяся с изменением, не кэшируется
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * @param loader Загрузчик занятых слотов из базы.
+     * @param horizonDays Сколько дней, начиная с сегодняшнего, хранится в памяти.
+     */
+    public SlotAvailabilityIndex(RangeLoader loader, int horizonDays) {
+        this.loader = loader;
+        this.horizonDays = horizonDays;
+    }
+
+    /**
+     * Возвращает маски занятых слотов всех врачей на день.
+     * @param date Дата.
+     * @return Маски по ID врача; врачи без записей в карте отсутствуют.
+     * @throws SQLException Если день не удалось загрузить из базы.
+     */
+    public Map<Integer, Long> getOccupied(LocalDate date) throws SQLException {
+        Map<Integer, Long> day = days.get(date);
+        if (day != null) {
+            return day;
+        }
+        return getOccupiedRange(date, date).get(0);
+    }
+
+    /**
+     * Возвращает маски занятых слотов всех врачей за диапазон дат. Недостающие дни
+     * загружаются одним запросом к базе — от первого до последнего незагруженного дня.
+     * @param fromDate Первый день диапазона.
+     * @param toDate Последний день диапазона (включительно).
+     * @return Маски по ID врача для каждого дня диапазона по порядку.
+     * @throws SQLException Если дни не удалось загрузить из базы.
+     */
+    public List<Map<Integer, Long>> getOccupiedRange(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        List<Map<Integer, Long>> result = new ArrayList<>();
+        LocalDate firstMissing = null;
+        LocalDate lastMissing = null;
+        for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+            Map<Integer, Long> day = days.get(date);
+            if (day == null) {
+                if (firstMissing == null) {
+                    firstMissing = date;
+                }
+                lastMissing = date;
+            }
+            result.add(day);
+        }
+        if (firstMissing == null) {
+            return result;
+        }
+
+        long before = modifications.get();
+        Map<LocalDate, Map<Integer, Long>> loaded = loader.load(firstMissing, lastMissing);
+        boolean cacheable = modifications.get() == before;
+        Map<LocalDate, Map<Integer, Long>> cached = new HashMap<>();
+        int index = 0;
+        for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1), index++) {
+            if (result.get(index) != null) {
+                continue;
+            }
+            Map<Integer, Long> day = new ConcurrentHashMap<>(loaded.getOrDefault(date, Map.of()));
+            if (cacheable && isWithinHorizon(date)) {
+                Map<Integer, Long> existing = days.putIfAbsent(date, day);
+                if (existing != null) {
+                    day = existing;
+                } else {
+                    cached.put(date, day);
+                }
+            }
+            result.set(index, day);
+        }
+        if (modifications.get() != before) {
+            cached.forEach(days::remove); // Изменение успело пройти мимо загружаемых дней
+        }
+        return result;
+    }
+
+    private boolean isWithinHorizon(LocalDate date) {
+        LocalDate first = firstCachedDay;
+        return !date.isBefore(first) && date.isBefore(first.plusDays(horizonDays));
+    }
+
+    /**
+     * Возвращает маску свободных слотов врача на день.
+     * @param doctorId ID врача.
+     * @param date Дата.
+     * @return Маска свободных слотов.
+     * @throws SQLException Если день не удалось загрузить из базы.
+     */
+    public long getFreeMask(int doctorId, LocalDate date) throws SQLException {
+        return SlotGrid.ALL_SLOTS & ~getOccupied(date).getOrDefault(doctorId, 0L);
+    }
+
+    /**
+     * Отмечает слот занятым. Вызывается после фиксации записи в базе.
+     */
+    public void markOccupied(int doctorId, LocalDate date, LocalTime time) {
+        update(doctorId, date, time, true);
+    }
+
+    /**
+     * Отмечает слот свободным. Вызывается после фиксации отмены записи в базе.
+     */
+    public void markFree(int doctorId, LocalDate date, LocalTime time) {
+        update(doctorId, date, time, false);
+    }
+
+    private void update(int doctorId, LocalDate date, LocalTime time, boolean occupied) {
+        modifications.incrementAndGet();
+        int slot = SlotGrid.indexOf(time);
+        Map<Integer, Long> day = days.get(date);
+        if (slot < 0 || day == null) {
+            return; // День еще не загружен: при загрузке изменение будет прочитано из базы
+        }
+        long bit = 1L << slot;
+        day.merge(doctorId, occupied ? bit : 0L, (mask, ignored) -> occupied ? mask | bit : mask & ~bit);
+    }
+
+    /**
+     * Сбрасывает индекс целиком (например, после каскадного удаления записей).
+     */
+    public void invalidateAll() {
+        modifications.incrementAndGet();
+        days.clear();
+    }
+
+    /**
+     * Удаляет из индекса прошедшие дни и сдвигает хранимый период так, чтобы он начинался с указанного дня.
+     */
+    public void evictBefore(LocalDate date) {
+        firstCachedDay = date;
+        days.keySet().removeIf(day -> day.isBefore(date));
+    }
+}
@@ -0,0 +1,32 @@
+package com.server;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Набор блокировок, между которыми распределяются ключи по хешу.
+ * Операции с разными ключами обычно не мешают друг другу, а число блокировок
+ * не растет вместе с числом ключей.
+ */
+class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    /**
+     * @param stripes Число блокировок (округляется вверх до степени двойки).
+     */
+    StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @param hash Хеш ключа.
+     * @return Блокировка, отвечающая за ключ.
+     */
+    ReentrantLock forHash(int hash) {
+        int spread = hash ^ (hash >>> 16); // Старшие биты тоже влияют на выбор блокировки
+        return locks[spread & (locks.length - 1)];
+    }
+}
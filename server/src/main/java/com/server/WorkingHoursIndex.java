@@ -0,0 +1,112 @@
+package com.server;
+
+import com.common.model.SlotGrid;
+
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Часы приема врачей по неделям в памяти: для каждого врача и недели хранятся заранее
+ * вычисленные маски слотов приема на семь дней (шаблон недели с наложенными исключениями).
+ * Неделя загружается для всех врачей сразу при первом обращении. Изменение шаблона сбрасывает
+ * все недели, изменение исключения — только неделю с этой датой.
+ * Внутри транзакции часы приема читаются из базы в обход кэша, как и справочник врачей.
+ */
+public class WorkingHoursIndex {
+
+    /**
+     * Вычисляет часы приема врачей на неделю по данным базы.
+     */
+    @FunctionalInterface
+    public interface WeekLoader {
+        /**
+         * @param monday Понедельник недели.
+         * @return Маски слотов приема по ID врача, по дням с понедельника; врачи без шаблона
+         * и исключений в эту неделю могут отсутствовать.
+         * @throws SQLException Если часы приема не удалось прочитать; неделя не кэшируется.
+         */
+        Map<Integer, long[]> load(LocalDate monday) throws SQLException;
+    }
+
+    private final WeekLoader loader;
+    private final BooleanSupplier bypassCache;
+    private final Map<LocalDate, Map<Integer, long[]>> weeks = new ConcurrentHashMap<>();
+    // Увеличивается при каждом сбросе; неделя, загруженная до сброса, не кэшируется
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * @param loader Загрузчик недели из базы данных.
+     * @param bypassCache Возвращает true, если текущий поток должен читать из базы в обход кэша.
+     */
+    public WorkingHoursIndex(WeekLoader loader, BooleanSupplier bypassCache) {
+        this.loader = loader;
+        this.bypassCache = bypassCache;
+    }
+
+    /**
+     * @param doctorId ID врача.
+     * @param date Дата.
+     * @return Маска слотов, в которые врач принимает в этот день.
+     * @throws SQLException Если неделю не удалось загрузить из базы.
+     */
+    public long getWorkingMask(int doctorId, LocalDate date) throws SQLException {
+        long[] days = week(mondayOf(date)).get(doctorId);
+        return days != null ? days[date.getDayOfWeek().getValue() - 1] : SlotGrid.ALL_SLOTS;
+    }
+
+    private Map<Integer, long[]> week(LocalDate monday) throws SQLException {
+        if (bypassCache.getAsBoolean()) {
+            return loader.load(monday);
+        }
+        Map<Integer, long[]> week = weeks.get(monday);
+        if (week != null) {
+            return week;
+        }
+        long before = modifications.get();
+        Map<Integer, long[]> loaded = loader.load(monday);
+        if (modifications.get() == before) {
+            Map<Integer, long[]> existing = weeks.putIfAbsent(monday, loaded);
+            if (existing != null) {
+                return existing;
+            }
+            if (modifications.get() != before) {
+                weeks.remove(monday, loaded); // Сброс произошел во время публикации
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Сбрасывает все недели. Вызывается после фиксации изменения шаблона.
+     */
+    public void invalidateAll() {
+        modifications.incrementAndGet();
+        weeks.clear();
+    }
+
+    /**
+     * Сбрасывает неделю с указанной датой. Вызывается после фиксации изменения исключения.
+     */
+    public void invalidateWeek(LocalDate date) {
+        modifications.incrementAndGet();
+        weeks.remove(mondayOf(date));
+    }
+
+    /**
+     * Удаляет из кэша недели, закончившиеся до указанной даты.
+     */
+    public void evictBefore(LocalDate date) {
+        LocalDate monday = mondayOf(date);
+        weeks.keySet().removeIf(week -> week.isBefore(monday));
+    }
+
+    static LocalDate mondayOf(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+}
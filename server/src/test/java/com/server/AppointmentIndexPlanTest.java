@@ -0,0 +1,97 @@
+package com.server;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Планы запросов входа по ФИО и записей по пациенту и по дате: поиск идет по индексам из миграций схемы,
+ * а не полным перебором таблицы. Запросы берутся из DatabaseManager, поэтому тест не дает
+ * ни следующей миграции удалить индекс, ни изменению запроса незаметно перестать его использовать.
+ */
+class AppointmentIndexPlanTest {
+    private static final String DB_URL = "jdbc:h2:mem:plans";
+    private static final Date DATE = Date.valueOf("2030-01-01");
+
+    private static DatabaseManager dbManager;
+    private static Connection conn;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        ServerConfig config = new ServerConfig();
+        config.setDbUrl(DB_URL);
+        dbManager = new DatabaseManager(config); // Применяет все миграции
+        conn = DriverManager.getConnection(DB_URL, "sa", "");
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        conn.close();
+        dbManager.close();
+    }
+
+    @Test
+    void patientLoginUsesNameIndex() throws SQLException {
+        assertPlanUses("IDX_PATIENTS_NAME_NORM", DatabaseManager.PATIENT_BY_NAME_SQL, "Иванов", "Иван", "Иванович");
+    }
+
+    @Test
+    void doctorLoginUsesNameIndex() throws SQLException {
+        assertPlanUses("IDX_DOCTORS_NAME_NORM", DatabaseManager.DOCTOR_BY_NAME_SQL, "Сидоров", "Петр", "Алексеевич");
+    }
+
+    @Test
+    void patientAppointmentsUseIndex() throws SQLException {
+        // H2 выбирает между idx_appointments_patient и индексом внешнего ключа по тому же столбцу
+        assertPlanSeeks(DatabaseManager.PATIENT_APPOINTMENT_DAYS_SQL, 1);
+        assertPlanSeeks(DatabaseManager.PATIENT_APPOINTMENTS_SQL, 1);
+    }
+
+    @Test
+    void patientHistoryPageUsesHistoryIndex() throws SQLException {
+        assertPlanUses("IDX_APPOINTMENTS_PATIENT_HISTORY", DatabaseManager.historyPageSql(true), 1, 21);
+        assertPlanUses("IDX_APPOINTMENTS_PATIENT_HISTORY", DatabaseManager.historyPageSql(false),
+                1, DATE, Time.valueOf("10:00:00"), 100, 21);
+    }
+
+    @Test
+    void dateLookupsUseDateDoctorIndex() throws SQLException {
+        assertPlanUses("IDX_APPOINTMENTS_DATE_DOCTOR", DatabaseManager.APPOINTMENTS_BY_DATE_SQL, DATE);
+        assertPlanUses("IDX_APPOINTMENTS_DATE_DOCTOR", DatabaseManager.OCCUPIED_SLOTS_SQL,
+                DATE, Date.valueOf("2030-01-31"));
+    }
+
+    private static void assertPlanUses(String index, String sql, Object... parameters) throws SQLException {
+        String plan = explain(sql, parameters).toUpperCase();
+        assertTrue(plan.contains("PUBLIC." + index + ":") || plan.contains("PUBLIC." + index + " "),
+                "Ожидался индекс " + index + " в плане:\n" + plan);
+    }
+
+    private static void assertPlanSeeks(String sql, Object... parameters) throws SQLException {
+        String plan = explain(sql, parameters);
+        assertFalse(plan.contains(".tableScan"), "Ожидался поиск по индексу, а не перебор таблицы:\n" + plan);
+    }
+
+    private static String explain(String sql, Object... parameters) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                stmt.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.server;
+
+import com.common.model.Appointment;
+import com.common.model.SlotGrid;
+import com.common.model.WorkingHours;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Одновременная запись на один слот: из сотен попыток проходит ровно одна,
+ * остальные получают SLOT_TAKEN, в том числе после отмены записи на этот слот.
+ */
+class BookingConcurrencyTest {
+    private static final int THREADS = 200;
+    private static final AtomicInteger DATABASE_NUMBER = new AtomicInteger();
+
+    private DatabaseManager dbManager;
+    private int doctorId;
+    private int patientId;
+    private LocalDate date;
+
+    @BeforeEach
+    void setUp() {
+        ServerConfig config = new ServerConfig();
+        // Отдельная база в памяти на тест; она удаляется, когда пул закрывает последнее соединение
+        config.setDbUrl("jdbc:h2:mem:booking" + DATABASE_NUMBER.incrementAndGet());
+        dbManager = new DatabaseManager(config);
+        doctorId = dbManager.getAllDoctors().get(0).getId();
+        patientId = dbManager.getAllPatients().get(0).getId();
+        date = LocalDate.now().plusDays(1).with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+        assertTrue(dbManager.setWorkingHours(WorkingHours.weekly(doctorId, DayOfWeek.MONDAY,
+                SlotGrid.WORK_START, SlotGrid.WORK_END)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dbManager.close();
+    }
+
+    @Test
+    void concurrentBookingsOfOneSlotBookItOnce() throws Exception {
+        LocalTime time = LocalTime.of(10, 0);
+
+        Map<BookingResult.Status, Integer> results = bookConcurrently(time);
+
+        assertEquals(1, results.getOrDefault(BookingResult.Status.BOOKED, 0), results.toString());
+        assertEquals(THREADS - 1, results.getOrDefault(BookingResult.Status.SLOT_TAKEN, 0), results.toString());
+        assertEquals(1, activeAppointmentsAt(time));
+    }
+
+    @Test
+    void cancelledSlotIsRebookedOnce() throws Exception {
+        LocalTime time = LocalTime.of(11, 30);
+        BookingResult first = dbManager.bookAppointment(newAppointment(time));
+        assertEquals(BookingResult.Status.BOOKED, first.getStatus());
+        assertTrue(dbManager.cancelAppointment(first.getAppointment().getId()));
+
+        Map<BookingResult.Status, Integer> results = bookConcurrently(time);
+
+        assertEquals(1, results.getOrDefault(BookingResult.Status.BOOKED, 0), results.toString());
+        assertEquals(THREADS - 1, results.getOrDefault(BookingResult.Status.SLOT_TAKEN, 0), results.toString());
+        assertEquals(1, activeAppointmentsAt(time));
+    }
+
+    /**
+     * Запускает THREADS одновременных записей на один слот и считает результаты по статусам.
+     */
+    private Map<BookingResult.Status, Integer> bookConcurrently(LocalTime time) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<BookingResult>> futures = new ArrayList<>(THREADS);
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await(); // Все потоки начинают запись одновременно
+                    return dbManager.bookAppointment(newAppointment(time));
+                }));
+            }
+            start.countDown();
+            Map<BookingResult.Status, Integer> results = new EnumMap<>(BookingResult.Status.class);
+            for (Future<BookingResult> future : futures) {
+                results.merge(future.get(30, TimeUnit.SECONDS).getStatus(), 1, Integer::sum);
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Appointment newAppointment(LocalTime time) {
+        return new Appointment(patientId, doctorId, date, time, Appointment.STATUS_SCHEDULED);
+    }
+
+    private long activeAppointmentsAt(LocalTime time) {
+        return dbManager.getAppointmentsByDoctorAndDate(doctorId, date).stream()
+                .filter(appointment -> appointment.getAppointmentTime().equals(time))
+                .count();
+    }
+}
@@ -0,0 +1,183 @@
+package com.server;
+
+import com.common.network.BinaryCodec;
+import com.common.network.Codecs;
+import com.common.network.Frames;
+import com.common.network.Handshake;
+import com.common.network.MessageCodec;
+import com.common.network.OperationType;
+import com.common.network.Request;
+import com.common.network.Response;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Нагрузочный прогон модели соединений: число потоков, RSS процесса и задержки запросов
+ * при тысячах одновременно подключенных клиентов (сначала простаивающих, затем активных).
+ * Запускается вручную, не входит в тесты сборки:
+ * <pre>
+ * java -cp ... -Dpolyclinic.server.io=BLOCKING -Dpolyclinic.server.executor=VIRTUAL com.server.ConnectionBenchmark 5000
+ * </pre>
+ * Сервер и клиенты работают в одном процессе, поэтому потоки считаются относительно
+ * замера до подключения клиентов, а RSS включает сокеты клиентской стороны.
+ */
+public class ConnectionBenchmark {
+    private static final int PORT = 12399;
+    private static final int DRIVER_THREADS = 64; // Потоки, отправляющие запросы активных клиентов
+    private static final int REQUESTS_PER_CLIENT = 4;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        System.setProperty("polyclinic.server.maxConnections", String.valueOf(clients + 100));
+        System.setProperty("polyclinic.server.acceptBacklog", String.valueOf(clients));
+        if (System.getProperty("polyclinic.server.poolSize") == null) {
+            // В режиме POOLED соединений обслуживается не больше, чем потоков в пуле
+            System.setProperty("polyclinic.server.poolSize", String.valueOf(clients + 100));
+        }
+        if (System.getProperty("polyclinic.server.dbUrl") == null) {
+            System.setProperty("polyclinic.server.dbUrl", "jdbc:h2:mem:bench");
+        }
+        Thread serverThread = new Thread(() -> new Server(PORT).start(), "benchmark-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        Thread.sleep(3000);
+
+        ThreadPoolExecutor drivers = (ThreadPoolExecutor) Executors.newFixedThreadPool(DRIVER_THREADS);
+        drivers.prestartAllCoreThreads(); // Потоки клиентов не попадают в прирост потоков сервера
+        int baseThreads = threadCount();
+        long baseRss = rssKb();
+
+        List<ClientConnection> connections = new ArrayList<>(clients);
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            connections.add(new ClientConnection());
+        }
+        long connectMillis = (System.nanoTime() - connectStart) / 1_000_000;
+        Thread.sleep(2000); // Обработчики соединений успевают запуститься
+        report("простаивающих клиентов: " + clients + ", подключение за " + connectMillis + " мс",
+                baseThreads, baseRss, null);
+
+        long[] latencies = new long[clients * REQUESTS_PER_CLIENT];
+        List<Future<?>> futures = new ArrayList<>();
+        int perDriver = (clients + DRIVER_THREADS - 1) / DRIVER_THREADS;
+        long activeStart = System.nanoTime();
+        for (int d = 0; d < DRIVER_THREADS; d++) {
+            int from = d * perDriver;
+            int to = Math.min(clients, from + perDriver);
+            futures.add(drivers.submit(() -> {
+                for (int round = 0; round < REQUESTS_PER_CLIENT; round++) {
+                    for (int i = from; i < to; i++) {
+                        latencies[round * clients + i] = connections.get(i).roundTrip();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long activeMillis = (System.nanoTime() - activeStart) / 1_000_000;
+        report("активных клиентов: " + clients + ", " + latencies.length + " запросов за " + activeMillis + " мс",
+                baseThreads, baseRss, latencies);
+
+        for (ClientConnection connection : connections) {
+            connection.close();
+        }
+        drivers.shutdownNow();
+        System.exit(0);
+    }
+
+    private static void report(String phase, int baseThreads, long baseRss, long[] latencies) {
+        StringBuilder line = new StringBuilder(phase)
+                .append(": потоков +").append(threadCount() - baseThreads)
+                .append(", RSS +").append((rssKb() - baseRss) / 1024).append(" МБ");
+        if (latencies != null) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            line.append(", p50 ").append(sorted[sorted.length / 2] / 1000).append(" мкс")
+                    .append(", p99 ").append(sorted[(int) (sorted.length * 0.99)] / 1000).append(" мкс");
+        }
+        System.out.println("BENCH " + line);
+    }
+
+    /**
+     * @return Число потоков ОС процесса: виртуальные потоки в нем не учитываются, их потоки-носители — да.
+     */
+    private static int threadCount() {
+        return (int) procStatus("Threads:");
+    }
+
+    private static long rssKb() {
+        return procStatus("VmRSS:");
+    }
+
+    /**
+     * @return Числовое поле /proc/self/status или 0, если /proc недоступен (не Linux).
+     */
+    private static long procStatus(String field) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException e) {
+            // Поле не измеряется
+        }
+        return 0;
+    }
+
+    /**
+     * Соединение клиента, отправляющее по одному запросу и ждущее ответа.
+     */
+    private static class ClientConnection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final MessageCodec codec = new BinaryCodec();
+        private long nextRequestId;
+
+        ClientConnection() throws IOException {
+            socket = new Socket("localhost", PORT);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Handshake.writeHello(out, Codecs.BINARY);
+            Handshake.readReply(in);
+        }
+
+        /**
+         * @return Задержка запроса в наносекундах.
+         */
+        long roundTrip() throws IOException {
+            Request request = new Request(OperationType.GET_DOCTOR_DETAILS, 1);
+            request.setRequestId(++nextRequestId);
+            long start = System.nanoTime();
+            Frames.write(out, codec.encodeRequest(request));
+            out.flush();
+            Response response = codec.decodeResponse(Frames.read(in));
+            long elapsed = System.nanoTime() - start;
+            if (!response.isSuccess()) {
+                throw new IOException("Запрос не выполнен: " + response.getMessage());
+            }
+            return elapsed;
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.server;
+
+import com.common.model.Patient;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Пропускная способность getPatientById при 64 одновременных вызывающих потоках:
+ * прежний путь (новое соединение DriverManager на каждый вызов) против пула соединений.
+ * База — файл H2 во временном каталоге, как у сервера. Запускается вручную:
+ * <pre>
+ * java -cp ... com.server.PatientLookupBenchmark [потоков] [секунд на замер]
+ * </pre>
+ */
+public class PatientLookupBenchmark {
+    private static final int PATIENTS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path dir = Files.createTempDirectory("polyclinic-bench");
+        String url = "jdbc:h2:" + dir.resolve("bench").toAbsolutePath();
+
+        ServerConfig config = new ServerConfig();
+        config.setDbUrl(url);
+        config.setPatientCacheMaxEntries(1); // Случайные ID почти всегда мимо кэша: измеряется путь к базе
+        DatabaseManager dbManager = new DatabaseManager(config);
+        dbManager.inTransaction(() -> {
+            for (int i = 0; i < PATIENTS; i++) {
+                dbManager.addPatient(new Patient("Нагрузка", "Пациент" + i, "Тестович", LocalDate.of(1980, 1, 1),
+                        "ул. Тестовая, д." + i, "+7900" + i, "POL-BENCH-" + i));
+            }
+            return null;
+        });
+        List<Integer> ids = new ArrayList<>();
+        for (Patient patient : dbManager.getAllPatients()) {
+            ids.add(patient.getId());
+        }
+
+        // Прогрев JIT для обоих путей
+        measure("прогрев", threads, 1, ids, id -> openAndQuery(url, id));
+        measure("прогрев", threads, 1, ids, dbManager::getPatientById);
+
+        measure("без пула (DriverManager на вызов)", threads, seconds, ids, id -> openAndQuery(url, id));
+        measure("пул соединений", threads, seconds, ids, dbManager::getPatientById);
+        System.out.println("BENCH " + dbManager.getPoolMetrics());
+        dbManager.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+        System.exit(0);
+    }
+
+    @FunctionalInterface
+    private interface Lookup {
+        Patient find(int id) throws SQLException;
+    }
+
+    private static void measure(String name, int threads, int seconds, List<Integer> ids, Lookup lookup)
+            throws InterruptedException {
+        LongAdder calls = new LongAdder();
+        LongAdder misses = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (System.nanoTime() < deadline) {
+                        if (lookup.find(ids.get(random.nextInt(ids.size()))) == null) {
+                            misses.increment();
+                        }
+                        calls.increment();
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Ошибка запроса: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        done.await();
+        if (!name.equals("прогрев")) {
+            System.out.println("BENCH " + name + ": " + calls.sum() / seconds + " вызовов/с"
+                    + (misses.sum() > 0 ? ", не найдено " + misses.sum() : ""));
+        }
+    }
+
+    /**
+     * Прежняя реализация getPatientById: соединение с файлом базы открывается на каждый вызов.
+     */
+    private static Patient openAndQuery(String url, int id) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM Patients WHERE id = ?")) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new Patient(rs.getInt("id"), rs.getString("lastName"), rs.getString("firstName"),
+                            rs.getString("middleName"), rs.getDate("dateOfBirth").toLocalDate(), rs.getString("address"),
+                            rs.getString("phone"), rs.getString("policyNumber"));
+                }
+            }
+        }
+        return null;
+    }
+}
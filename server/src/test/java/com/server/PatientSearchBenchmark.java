@@ -0,0 +1,121 @@
+package com.server;
+
+import com.common.model.Patient;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * SEARCH_PATIENTS на сгенерированной базе (по умолчанию 500 тысяч пациентов): триграммный индекс
+ * в памяти против прежнего поиска LIKE по всем полям в базе. Внутри транзакции DatabaseManager
+ * ищет в базе, поэтому оба пути измеряются через один и тот же searchPatients. Запускается вручную:
+ * <pre>
+ * java -Xmx2g -cp ... com.server.PatientSearchBenchmark [пациентов]
+ * </pre>
+ */
+public class PatientSearchBenchmark {
+    private static final String[] LAST_NAMES = {"Иванов", "Петров", "Сидоров", "Смирнов", "Кузнецов", "Попов",
+            "Васильев", "Соколов", "Михайлов", "Новиков", "Федоров", "Морозов", "Волков", "Алексеев", "Лебедев",
+            "Семенов", "Егоров", "Павлов", "Козлов", "Степанов", "Николаев", "Орлов", "Андреев", "Макаров"};
+    private static final String[] FIRST_NAMES = {"Иван", "Петр", "Алексей", "Дмитрий", "Сергей", "Андрей",
+            "Михаил", "Николай", "Павел", "Олег"};
+    private static final String[] MIDDLE_NAMES = {"Иванович", "Петрович", "Алексеевич", "Дмитриевич",
+            "Сергеевич", "Андреевич", "Михайлович", "Николаевич"};
+    private static final String[] STREETS = {"Пушкина", "Ленина", "Гагарина", "Цветочная", "Садовая", "Мира"};
+    private static final String[] QUERIES = {"Иванов", "ова", "Кузнецова", "POL0000123", "Гагарина, д.17", "+7901000042"};
+    private static final int INDEX_RUNS = 50;
+    private static final int SQL_RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int patients = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        Path dir = Files.createTempDirectory("polyclinic-search");
+        String url = "jdbc:h2:" + dir.resolve("bench").toAbsolutePath();
+        ServerConfig config = new ServerConfig();
+        config.setDbUrl(url);
+
+        new DatabaseManager(config).close(); // Создает схему
+        long start = System.nanoTime();
+        generatePatients(url, patients);
+        System.out.println("BENCH сгенерировано пациентов: " + patients + " за " + (System.nanoTime() - start) / 1_000_000 + " мс");
+
+        DatabaseManager dbManager = new DatabaseManager(config); // Строит индекс при запуске
+        for (String query : QUERIES) {
+            dbManager.searchPatients(query); // Прогрев
+            long indexNanos = time(INDEX_RUNS, () -> dbManager.searchPatients(query));
+            long sqlNanos = time(SQL_RUNS, () -> dbManager.inTransaction(() -> dbManager.searchPatients(query)));
+            int indexFound = dbManager.searchPatients(query).size();
+            int sqlFound = dbManager.inTransaction(() -> dbManager.searchPatients(query)).size();
+            System.out.printf("BENCH \"%s\": индекс %.2f мс (%d), SQL LIKE %.1f мс (%d), ускорение x%d%n",
+                    query, indexNanos / 1e6, indexFound, sqlNanos / 1e6, sqlFound, sqlNanos / Math.max(1, indexNanos));
+        }
+        dbManager.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+        System.exit(0);
+    }
+
+    @FunctionalInterface
+    private interface Search {
+        List<Patient> run() throws SQLException;
+    }
+
+    /**
+     * @return Среднее время одного поиска в наносекундах.
+     */
+    private static long time(int runs, Search search) throws SQLException {
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            search.run();
+        }
+        return (System.nanoTime() - start) / runs;
+    }
+
+    /**
+     * Вставляет пациентов напрямую пакетами JDBC: через addPatient генерация заняла бы слишком много времени
+     * из-за журнала изменений и индекса, которые здесь не измеряются.
+     */
+    private static void generatePatients(String url, int count) throws SQLException {
+        Random random = new Random(42);
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             PreparedStatement pstmt = conn.prepareStatement("INSERT INTO Patients " +
+                     "(lastName, firstName, middleName, dateOfBirth, address, phone, policyNumber) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < count; i++) {
+                boolean female = random.nextBoolean();
+                String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)] + (female ? "а" : "");
+                String firstName = female ? "Ольга" : FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String middleName = MIDDLE_NAMES[random.nextInt(MIDDLE_NAMES.length)];
+                if (female) {
+                    middleName = middleName.substring(0, middleName.length() - 2) + "на";
+                }
+                pstmt.setString(1, lastName);
+                pstmt.setString(2, firstName);
+                pstmt.setString(3, middleName);
+                pstmt.setDate(4, Date.valueOf(LocalDate.of(1940, 1, 1).plusDays(random.nextInt(30_000))));
+                pstmt.setString(5, "ул. " + STREETS[random.nextInt(STREETS.length)] + ", д." + (1 + random.nextInt(200)));
+                pstmt.setString(6, String.format("+7901%07d", i));
+                pstmt.setString(7, String.format("POL%010d", i));
+                pstmt.addBatch();
+                if (i % 10_000 == 9_999) {
+                    pstmt.executeBatch();
+                    conn.commit();
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        }
+    }
+}